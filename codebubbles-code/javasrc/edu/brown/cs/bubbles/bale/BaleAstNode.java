@@ -192,6 +192,95 @@ BaleAstNode(List<BaleAstNode> nodes)
 
 
 
+/**
+ *	Copy a node tree, adjusting its positions for the given edits.  Each
+ *	edit starts with { offset, removed length, inserted length } and the
+ *	edits are in the order they were made, each offset being relative to
+ *	the text after the earlier edits.
+ **/
+
+BaleAstNode(BaleAstNode orig,List<int []> edits)
+{
+   for_document = orig.for_document;
+   parent_node = null;
+   node_type = orig.node_type;
+   id_type = orig.id_type;
+   is_error = orig.is_error;
+   elide_priority = orig.elide_priority;
+   full_name = orig.full_name;
+   start_position = shiftPosition(orig.start_position,edits,false);
+   end_position = shiftPosition(orig.end_position,edits,true);
+   if (end_position < start_position) end_position = start_position;
+
+   child_nodes = null;
+   if (orig.child_nodes != null) {
+      child_nodes = new ArrayList<BaleAstNode>(orig.child_nodes.size());
+      for (BaleAstNode c : orig.child_nodes) {
+	 BaleAstNode nn = new BaleAstNode(c,edits);
+	 child_nodes.add(nn);
+	 nn.parent_node = this;
+       }
+    }
+}
+
+
+
+private static int shiftPosition(int pos,List<int []> edits,boolean end)
+{
+   for (int [] ed : edits) {
+      int off = ed[0];
+      int len = ed[1];
+      int rlen = ed[2];
+      if (pos < off || (pos == off && !end)) continue;
+      if (pos >= off + len) pos += rlen - len;
+      else if (end) pos = off + rlen;
+      else pos = off;
+    }
+   return pos;
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Incremental update methods						*/
+/*										*/
+/********************************************************************************/
+
+/**
+ *	Replace the portion of the tree covered by nn with nn.	The node is
+ *	placed under the innermost node that contains it; any nodes at that
+ *	level overlapping it (generally its old version) are removed.
+ **/
+
+static void spliceNode(List<BaleAstNode> nodes,BaleAstNode par,BaleAstNode nn)
+{
+   for (BaleAstNode bn : nodes) {
+      if (bn.start_position > nn.start_position || bn.end_position < nn.end_position) continue;
+      if (bn.start_position == nn.start_position && bn.end_position == nn.end_position &&
+	     bn.node_type == nn.node_type)
+	 break;
+      if (bn.child_nodes == null) bn.child_nodes = new ArrayList<BaleAstNode>(4);
+      spliceNode(bn.child_nodes,bn,nn);
+      return;
+    }
+
+   int idx = nodes.size();
+   for (int i = nodes.size()-1; i >= 0; --i) {
+      BaleAstNode bn = nodes.get(i);
+      if (bn.end_position > nn.start_position && bn.start_position < nn.end_position) {
+	 nodes.remove(i);
+	 idx = i;
+       }
+      else if (bn.start_position >= nn.end_position) idx = i;
+    }
+
+   nodes.add(idx,nn);
+   nn.parent_node = par;
+}
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Access methods								*/
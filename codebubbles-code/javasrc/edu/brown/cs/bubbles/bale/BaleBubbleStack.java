@@ -189,6 +189,15 @@ private void setupStack(BudaLinkStyle link)
 
    title_width = DEFAULT_TITLE_WIDTH;
 
+   BaleFactory bf = BaleFactory.getFactory();
+   Map<File,String> files = new HashMap<File,String>();
+   for (List<BumpLocation> locs : location_set.values()) {
+      if (files.size() > MAX_ENTRIES) break;
+      BumpLocation loc0 = locs.get(0);
+      files.put(loc0.getFile(),loc0.getSymbolProject());
+    }
+   bf.preloadFiles(files);
+
    for (List<BumpLocation> locs : location_set.values()) {
       BumpLocation loc0 = locs.get(0);
       if (entries.size() > MAX_ENTRIES) continue;
@@ -230,6 +239,8 @@ private void setupStack(BudaLinkStyle link)
        }
     }
 
+   bf.endPreload();
+
    contentwidth = DEFAULT_CONTENT_WIDTH;
    for(BussEntry entry : entries){
       BaleCompactFragment component = (BaleCompactFragment) entry.getCompactComponent();
@@ -79,7 +79,11 @@ private EditMouser	edit_mouser;
 private EditKeyer	edit_keyer;
 private EditFocus	edit_focus;
 private CompletionPanel the_panel;
+private CompletionIndex item_index;
+private String		last_filter;
+private List<CompletionItem> last_items;
 private static Map<String,Boolean> package_names;
+private static Map<String,CompletionSet> completion_cache;
 
 private static boolean	       case_insensitive;
 
@@ -89,11 +93,13 @@ private static final int	SHOW_ITEMS = 8;
 private static final int	X_DELTA = 0;
 private static final int	Y_DELTA = 0;
 private static final Pattern	ID_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z_0-9]*");
+private static final int	COMPLETION_CACHE_SIZE = 16;
 
 static {
    completion_delay = BALE_PROPERTIES.getLong(BALE_AUTOCOMPLETE_DELAY,0);
    case_insensitive = BALE_PROPERTIES.getBoolean("Bale.autocomplete.nocase");
    package_names = new ConcurrentHashMap<String,Boolean>();
+   completion_cache = new CompletionCache();
 }
 
 
@@ -111,6 +117,9 @@ BaleCompletionContext(BaleEditorPane edt,int soff,char ch)
    cur_menu = null;
    the_panel = null;
    found_items = null;
+   item_index = null;
+   last_filter = null;
+   last_items = null;
 
    try {
       start_position = (BalePosition) for_document.createPosition(soff);
@@ -338,6 +347,9 @@ private synchronized void handleShow()
 	citm = new CompletionItemBump(bc);
       found_items.add(citm);
     }
+   item_index = new CompletionIndex(found_items);
+   last_filter = null;
+   last_items = null;
    restrictOptions();
 
    if (for_editor == null) return;
@@ -405,13 +417,30 @@ private synchronized void restrictOptions()
 	 return;
        }
 
-      List<CompletionItem> rslt = new ArrayList<CompletionItem>();
-      if (text1 == null || text1.length() == 0) rslt.addAll(found_items);
-      else {
-	 for (CompletionItem ci : found_items) {
-	    if (ci.canStartWith(text1)) rslt.add(ci);
+      // matching is monotone in the typed text, so extending the text only
+      // needs to look at the items that matched the previous text
+      List<CompletionItem> rslt;
+      if (text1 == null || text1.length() == 0) {
+	 rslt = new ArrayList<CompletionItem>(found_items);
+       }
+      else if (last_filter != null && last_items != null && text1.startsWith(last_filter)) {
+	 rslt = new ArrayList<CompletionItem>();
+	 for (CompletionItem ci : last_items) {
+	    if (ci.matches(text1)) rslt.add(ci);
 	  }
        }
+      else {
+	 rslt = item_index.findItems(text1);
+       }
+      if (text1 != null && text1.length() > 0) {
+	 last_filter = text1;
+	 last_items = new ArrayList<CompletionItem>(rslt);
+       }
+      else {
+	 last_filter = null;
+	 last_items = null;
+       }
+
       if (rslt.size() == 0) {
 	 CompletionItem ci = getNewItem(text1);
 	 if (ci != null) rslt.add(ci);
@@ -486,6 +515,41 @@ private boolean isPackage(String proj,String pnm)
 
 
 
+/**
+ *	Check if the typed text matches the word starting at the given offset
+ *	by camel case humps, e.g. gAN for getAllNames.  Lower case characters
+ *	must continue the current hump; an upper case character may skip to
+ *	the next hump starting with it.
+ **/
+
+private static boolean matchCamelCase(String word,int start,String text)
+{
+   int j = start;
+   int ln = word.length();
+   if (j >= ln || word.charAt(j) != text.charAt(0)) return false;
+   ++j;
+
+   for (int i = 1; i < text.length(); ++i) {
+      char c = text.charAt(i);
+      if (j < ln && word.charAt(j) == c) {
+	 ++j;
+	 continue;
+       }
+      if (!Character.isUpperCase(c)) return false;
+      while (j < ln && word.charAt(j) != c) {
+	 char w = word.charAt(j);
+	 if (!Character.isJavaIdentifierPart(w)) return false;
+	 ++j;
+       }
+      if (j >= ln) return false;
+      ++j;
+    }
+
+   return true;
+}
+
+
+
 private static boolean isValidId(String text)
 {
    if (text == null) return false;
@@ -512,6 +576,16 @@ private class CompletionGetter implements Runnable {
       Collection<BumpCompletion> completions = null;
    
       int ctr = for_document.getEditCounter();
+      String key = for_document.getFile().getPath() + "@" + ctr + "@" + spos;
+      CompletionSet cset = null;
+      synchronized (completion_cache) {
+	 cset = completion_cache.get(key);
+       }
+      if (cset != null) {
+	 handleFound(cset.getCompletions(),cset.isCalls());
+         return;
+       }
+   
       BumpClient bcc = BumpClient.getBump();
       completions = bcc.getCompletions(for_document.getProjectName(),
         				  for_document.getFile(),
@@ -547,12 +621,14 @@ private class CompletionGetter implements Runnable {
        }
    
       if (completions.size() == 0 && callcomps != null) {
+	 cacheCompletions(key,callcomps,true);
          handleFound(callcomps,true);
        }
       else  if (completions.size() == 0) {
          removeContext();
       }
       else {
+	 cacheCompletions(key,completions,false);
          handleFound(completions,false);
        }
     }
@@ -569,6 +645,48 @@ private class CompletionGetter implements Runnable {
 
 
 
+private static void cacheCompletions(String key,Collection<BumpCompletion> comps,boolean calls)
+{
+   synchronized (completion_cache) {
+      completion_cache.put(key,new CompletionSet(comps,calls));
+    }
+}
+
+
+
+private static class CompletionSet {
+
+   private Collection<BumpCompletion> set_completions;
+   private boolean is_calls;
+
+   CompletionSet(Collection<BumpCompletion> comps,boolean calls) {
+      set_completions = Collections.unmodifiableCollection(new ArrayList<BumpCompletion>(comps));
+      is_calls = calls;
+    }
+
+   Collection<BumpCompletion> getCompletions()	{ return set_completions; }
+   boolean isCalls()				{ return is_calls; }
+
+}	// end of inner class CompletionSet
+
+
+
+private static class CompletionCache extends LinkedHashMap<String,CompletionSet> {
+
+   private static final long serialVersionUID = 1;
+
+   CompletionCache() {
+      super(COMPLETION_CACHE_SIZE,0.75f,true);
+    }
+
+   @Override protected boolean removeEldestEntry(Map.Entry<String,CompletionSet> e) {
+      return size() > COMPLETION_CACHE_SIZE;
+    }
+
+}	// end of inner class CompletionCache
+
+
+
 private class CompletionShower implements ActionListener {
 
    @Override public void actionPerformed(ActionEvent e) {
@@ -759,6 +877,50 @@ private static class CompletionListCellRenderer extends DefaultListCellRenderer
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Index for filtering the completion items				*/
+/*										*/
+/********************************************************************************/
+
+private static class CompletionIndex {
+
+   private List<CompletionItem> all_items;
+   private Map<Character,List<Integer>> word_starts;
+
+   CompletionIndex(Collection<CompletionItem> items) {
+      all_items = new ArrayList<CompletionItem>(items);
+      word_starts = new HashMap<Character,List<Integer>>();
+      for (int i = 0; i < all_items.size(); ++i) {
+	 Set<Character> done = new HashSet<Character>();
+	 for (Character c : all_items.get(i).getWordStarts()) {
+	    Character k = Character.toLowerCase(c);
+	    if (!done.add(k)) continue;
+	    List<Integer> idx = word_starts.get(k);
+	    if (idx == null) {
+	       idx = new ArrayList<Integer>();
+	       word_starts.put(k,idx);
+	     }
+	    idx.add(i);
+	  }
+       }
+    }
+
+   List<CompletionItem> findItems(String text) {
+      List<CompletionItem> rslt = new ArrayList<CompletionItem>();
+      List<Integer> idx = word_starts.get(Character.toLowerCase(text.charAt(0)));
+      if (idx == null) return rslt;
+      for (Integer i : idx) {
+	 CompletionItem ci = all_items.get(i);
+	 if (ci.matches(text)) rslt.add(ci);
+       }
+      return rslt;
+    }
+
+}	// end of inner class CompletionIndex
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Item management 							*/
@@ -776,6 +938,14 @@ private static abstract class CompletionItem {
    abstract boolean canStartWith(String text);
    Icon getIcon()					{ return null; }
 
+   boolean matches(String text) {
+      return canStartWith(text);
+    }
+
+   Collection<Character> getWordStarts() {
+      return Collections.emptyList();
+    }
+
    void accepted(BaleEditorPane editor) 		{ }
 
    protected void getSignatureObjects(String sgn) {
@@ -923,6 +1093,29 @@ private static class CompletionItemBump extends CompletionItem {
       return false;
     }
 
+   @Override boolean matches(String txt) {
+      if (canStartWith(txt)) return true;
+      String compl = bump_completion.getCompletion();
+      if (matchCamelCase(compl,0,txt)) return true;
+      if (bump_completion.getType() == CompletionType.PACKAGE_REF) return false;
+      for (int i = compl.indexOf('.'); i >= 0; i = compl.indexOf('.',i+1)) {
+	 if (matchCamelCase(compl,i+1,txt)) return true;
+       }
+      return false;
+    }
+
+   @Override Collection<Character> getWordStarts() {
+      String compl = bump_completion.getCompletion();
+      List<Character> rslt = new ArrayList<Character>();
+      if (compl == null || compl.length() == 0) return rslt;
+      rslt.add(compl.charAt(0));
+      if (bump_completion.getType() == CompletionType.PACKAGE_REF) return rslt;
+      for (int i = compl.indexOf('.'); i >= 0 && i+1 < compl.length(); i = compl.indexOf('.',i+1)) {
+	 rslt.add(compl.charAt(i+1));
+       }
+      return rslt;
+    }
+
    String getCompletionText() {
       String toreturn = bump_completion.getCompletion();
       if (toreturn == null) return null;
@@ -40,12 +40,14 @@ import javax.swing.text.BadLocationException;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 
 class BaleConfigurator implements BaleConstants, BudaConstants.BubbleConfigurator,
-	BudaConstants.PortConfigurator
+	BudaConstants.PortConfigurator, BudaConstants.BubblePreloader
 {
 
 
@@ -149,6 +151,53 @@ class BaleConfigurator implements BaleConstants, BudaConstants.BubbleConfigurato
    return false;
 }
 
+/********************************************************************************/
+/*										*/
+/*	Bubble preloading methods						*/
+/*										*/
+/********************************************************************************/
+
+@Override public void preloadBubbles(BudaBubbleArea bba,List<Element> xmls)
+{
+   Map<String,List<String>> methods = new HashMap<String,List<String>>();
+   Map<File,String> files = new HashMap<File,String>();
+
+   for (Element xml : xmls) {
+      Element cnt = IvyXml.getChild(xml,"CONTENT");
+      String typ = IvyXml.getAttrString(cnt,"TYPE");
+      if (typ == null || !typ.equals("FRAGMENT")) continue;
+      BaleFragmentType ftyp = IvyXml.getAttrEnum(cnt,"FRAGTYPE",BaleFragmentType.NONE);
+      String proj = IvyXml.getAttrString(cnt,"PROJECT");
+      String name = IvyXml.getAttrString(cnt,"NAME");
+      String filn = IvyXml.getAttrString(cnt,"FILE");
+      if (ftyp == BaleFragmentType.METHOD && name != null && name.length() > 0 &&
+	     !name.contains(".<clinit>()")) {
+	 List<String> names = methods.get(proj);
+	 if (names == null) {
+	    names = new ArrayList<String>();
+	    methods.put(proj,names);
+	  }
+	 names.add(name);
+       }
+      if (filn != null && ftyp != BaleFragmentType.ROFILE) files.put(new File(filn),proj);
+    }
+
+   BaleFactory bf = BaleFactory.getFactory();
+   for (Map.Entry<String,List<String>> ent : methods.entrySet()) {
+      bf.preloadMethods(ent.getKey(),ent.getValue());
+    }
+   bf.preloadFiles(files);
+}
+
+
+
+@Override public void endPreload()
+{
+   BaleFactory.getFactory().endPreload();
+}
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Port creation methods							*/
@@ -0,0 +1,257 @@
+/********************************************************************************/
+/*										*/
+/*		BaleContentTest.java						*/
+/*										*/
+/*	Bubble Annotated Language Editor rope content differential test 	*/
+/*										*/
+/********************************************************************************/
+/*	Copyright 2009 Brown University -- Steven P. Reiss		      */
+/*********************************************************************************
+ *  Copyright 2011, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+/* RCS: $Header$ */
+
+/*********************************************************************************
+ *
+ * $Log$
+ *
+ ********************************************************************************/
+
+
+package edu.brown.cs.bubbles.bale;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.GapContent;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ *	Apply the same random edits to a BaleRopeContent and a GapContent and
+ *	check that the text and all positions agree after each one.  Arguments
+ *	are the random seed and the number of edits.
+ **/
+
+public class BaleContentTest implements BaleConstants
+{
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Main program								*/
+/*										*/
+/********************************************************************************/
+
+public static void main(String [] args)
+{
+   BaleContentTest bt = new BaleContentTest(args);
+
+   boolean fg = bt.runTest();
+
+   System.exit(fg ? 0 : 1);
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Private storage 							*/
+/*										*/
+/********************************************************************************/
+
+private Random		random_gen;
+private long		random_seed;
+private int		num_edits;
+private BaleRopeContent rope_content;
+private GapContent	gap_content;
+private List<Position>	rope_positions;
+private List<Position>	gap_positions;
+
+private static final int	MAX_POSITIONS = 500;
+private static final int	MAX_LENGTH = 50000;
+private static final String	TEXT_CHARS = "abcdefghij \t\n{}();";
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Constructors								*/
+/*										*/
+/********************************************************************************/
+
+private BaleContentTest(String [] args)
+{
+   random_seed = System.currentTimeMillis();
+   num_edits = 100000;
+
+   if (args.length > 0) random_seed = Long.parseLong(args[0]);
+   if (args.length > 1) num_edits = Integer.parseInt(args[1]);
+
+   random_gen = new Random(random_seed);
+   rope_content = new BaleRopeContent(1024);
+   gap_content = new GapContent(1024);
+   rope_positions = new ArrayList<Position>();
+   gap_positions = new ArrayList<Position>();
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Testing methods 							*/
+/*										*/
+/********************************************************************************/
+
+private boolean runTest()
+{
+   System.err.println("BALECONTENTTEST: Seed " + random_seed + ", " + num_edits + " edits");
+
+   try {
+      for (int i = 0; i < num_edits; ++i) {
+	 String what = randomEdit();
+	 String err = compare();
+	 if (err != null) {
+	    System.err.println("BALECONTENTTEST: Edit " + i + " (" + what + "): " + err);
+	    return false;
+	  }
+       }
+    }
+   catch (BadLocationException e) {
+      System.err.println("BALECONTENTTEST: Bad location: " + e);
+      return false;
+    }
+
+   System.err.println("BALECONTENTTEST: Contents match, length " + gap_content.length());
+
+   return true;
+}
+
+
+
+private String randomEdit() throws BadLocationException
+{
+   int len = gap_content.length();
+   int r = random_gen.nextInt(10);
+
+   if (len < 2 || (r < 5 && len < MAX_LENGTH)) {
+      int off = random_gen.nextInt(len);
+      String s = randomText();
+      rope_content.insertString(off,s);
+      gap_content.insertString(off,s);
+      return "insert " + off + " " + s.length();
+    }
+   else if (r < 8) {
+      int off = random_gen.nextInt(len-1);
+      int max = len - 1 - off;
+      int n = 1 + random_gen.nextInt(Math.min(max,randomSize()));
+      rope_content.remove(off,n);
+      gap_content.remove(off,n);
+      return "remove " + off + " " + n;
+    }
+   else if (r < 9 || len >= MAX_LENGTH) {
+      if (rope_positions.size() >= MAX_POSITIONS) {
+	 int idx = random_gen.nextInt(rope_positions.size());
+	 rope_positions.remove(idx);
+	 gap_positions.remove(idx);
+       }
+      int off = random_gen.nextInt(len+1);
+      rope_positions.add(rope_content.createPosition(off));
+      gap_positions.add(gap_content.createPosition(off));
+      return "position " + off;
+    }
+   else {
+      String s = randomText();
+      int off = random_gen.nextInt(len-1);
+      int n = 1 + random_gen.nextInt(Math.min(len - 1 - off,s.length()));
+      rope_content.remove(off,n);
+      rope_content.insertString(off,s);
+      gap_content.remove(off,n);
+      gap_content.insertString(off,s);
+      return "replace " + off + " " + n + " " + s.length();
+    }
+}
+
+
+
+private String randomText()
+{
+   int n = 1 + random_gen.nextInt(randomSize());
+
+   StringBuilder buf = new StringBuilder();
+   for (int i = 0; i < n; ++i) {
+      buf.append(TEXT_CHARS.charAt(random_gen.nextInt(TEXT_CHARS.length())));
+    }
+
+   return buf.toString();
+}
+
+
+
+private int randomSize()
+{
+   // mostly small edits, with some large enough to split or merge chunks
+   return random_gen.nextInt(20) == 0 ? 6000 : 12;
+}
+
+
+
+private String compare() throws BadLocationException
+{
+   int len = gap_content.length();
+   if (rope_content.length() != len) {
+      return "Length " + rope_content.length() + " rather than " + len;
+    }
+
+   String gtxt = gap_content.getString(0,len);
+   if (!rope_content.getString(0,len).equals(gtxt)) return "Text differs";
+
+   int off = random_gen.nextInt(len);
+   int n = random_gen.nextInt(len - off + 1);
+   if (!rope_content.getString(off,n).equals(gtxt.substring(off,off+n))) {
+      return "Text at " + off + " " + n + " differs";
+    }
+
+   Segment seg = new Segment();
+   seg.setPartialReturn(true);
+   int pos = off;
+   while (pos < off + n) {
+      rope_content.getChars(pos,off + n - pos,seg);
+      if (seg.count <= 0) return "Empty partial segment at " + pos;
+      if (!seg.toString().equals(gtxt.substring(pos,pos+seg.count))) {
+	 return "Partial segment at " + pos + " differs";
+       }
+      pos += seg.count;
+    }
+
+   for (int i = 0; i < gap_positions.size(); ++i) {
+      int goff = gap_positions.get(i).getOffset();
+      int roff = rope_positions.get(i).getOffset();
+      if (goff != roff) return "Position " + i + " at " + roff + " rather than " + goff;
+    }
+
+   return null;
+}
+
+
+
+}	// end of class BaleContentTest
+
+
+
+
+/* end of BaleContentTest.java */
@@ -36,6 +36,7 @@ import edu.brown.cs.bubbles.bump.BumpClient;
 import edu.brown.cs.bubbles.bump.BumpLocation;
 import edu.brown.cs.bubbles.burp.BurpConstants.BurpEditorDocument;
 
+import javax.swing.SwingUtilities;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.UndoableEditEvent;
 import javax.swing.text.*;
@@ -411,25 +412,66 @@ public void handleAstUpdated(List<BaleAstNode> nodes)
 
    // BoardLog.logD("BALE","Update AST for " + nodes);
    BaleAstNode oast = null;
+   BaleElementBuilder bld = null;
+   int ctr = 0;
 
-   baleWriteLock();
+   // build the new tree under the read lock so painting can continue
+   baleReadLock();
    try {
       BaleElement be = (BaleElement) getDefaultRootElement();
       oast = be.getAstNode();
-      BaleElementEvent ee = element_buffer.updateAst(nodes);
-      if (ee != null) reportEvent(this,0,getLength(),DocumentEvent.EventType.CHANGE,null,ee);
+      ctr = getEditCounter();
+      bld = element_buffer.prepareAst(nodes);
     }
-   finally { baleWriteUnlock(); }
+   finally { baleReadUnlock(); }
+
+   if (bld == null) return;
 
-   if (oast == null) {
-      synchronized (this) {		// notify that AST is now ready
-	 notifyAll();
+   AstCommitter ac = new AstCommitter(bld,ctr);
+   if (oast == null || SwingUtilities.isEventDispatchThread()) {
+      // the first AST is installed here since waitForAst may be blocking the EDT
+      ac.run();
+      if (oast == null) {
+	 synchronized (this) {		// notify that AST is now ready
+	    notifyAll();
+	  }
        }
     }
+   else {
+      SwingUtilities.invokeLater(ac);
+    }
 }
 
 
 
+private class AstCommitter implements Runnable {
+
+   private BaleElementBuilder element_builder;
+   private int edit_counter;
+
+   AstCommitter(BaleElementBuilder bld,int ctr) {
+      element_builder = bld;
+      edit_counter = ctr;
+    }
+
+   @Override public void run() {
+      baleWriteLock();
+      try {
+	 if (getEditCounter() != edit_counter) {
+	    // the back end will send a new AST for the edited text
+	    BoardLog.logD("BALE","Drop AST update for old version " + edit_counter);
+	    return;
+	  }
+	 BaleElementEvent ee = element_buffer.commitAst(element_builder);
+	 if (ee != null) reportEvent(BaleDocument.this,0,getLength(),DocumentEvent.EventType.CHANGE,null,ee);
+       }
+      finally { baleWriteUnlock(); }
+    }
+
+}	// end of inner class AstCommitter
+
+
+
 void handleElisionChange()
 {
    if (element_buffer == null) return;
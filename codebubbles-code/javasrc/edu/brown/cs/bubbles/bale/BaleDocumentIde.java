@@ -89,6 +89,9 @@ private BaleLineOffsetsNew	line_offsets;
 private Set<BumpProblem>	problem_set;
 
 private List<BaleAstNode>	ast_nodes;
+private List<int []>		ast_edits;		// local edits (with edit id) since ast_nodes
+private boolean 		ast_valid;		// ast_nodes usable for deltas
+private int			ast_id; 		// edit id of ast_nodes
 private Queue<RemoteEdit>	remote_edits;
 
 private static final long serialVersionUID = 1;
@@ -123,6 +126,9 @@ BaleDocumentIde()
    doing_remote = false;
    doing_eload = false;
    ast_nodes = null;
+   ast_edits = new ArrayList<int []>();
+   ast_valid = false;
+   ast_id = -1;
    problem_set = new HashSet<BumpProblem>();
    is_dirty = false;
    checkpoint_counter = -1;
@@ -220,7 +226,9 @@ private void setFile(String proj,File file)
    // TODO: check out the file for write using current version manager
 
    try {
-      Element xml = bump_client.startFile(project_name,file_name,false,nextEditCounter());
+      Element xml = BaleFactory.getFactory().getPreloadedFile(file_name);
+      if (xml != null) nextEditCounter();
+      else xml = bump_client.startFile(project_name,file_name,false,nextEditCounter());
       if (xml == null) return;
       byte [] data = IvyXml.getBytesElement(xml,"CONTENTS");
       if (data != null) cnts = new String(data);
@@ -471,19 +479,6 @@ void removeFragment(BaleFragment owner)
 
 
 
-void setFragmentElisionRegions(BaleFragment owner,Map<BaleRegion,Double> priors)
-{
-   synchronized (fragment_map) {
-      FragmentData fd = fragment_map.get(owner);
-      if (fd == null) return;
-
-      fd.setPriorityRegions(priors);
-      // fixupElision();
-    }
-}
-
-
-
 void redoElision()
 {
    synchronized (fragment_map) {
@@ -542,18 +537,40 @@ private void fixupElision()
 {
    if (!f.equals(file_name)) return;
 
-   if (id != getEditCounter()) return;
-
    // BoardLog.logD("BALE","ELISION ID = " + id + " " + getEditCounter() + " " + IvyXml.convertXmlToString(d));
 
-   List<BaleAstNode> nodes = new ArrayList<BaleAstNode>();
-   for (Element e : IvyXml.children(d,"ELIDE")) {
-      BaleAstNode n = new BaleAstNode(e,this);
-      nodes.add(n);
+   boolean delta = IvyXml.getAttrBool(d,"DELTA");
+   boolean redo = false;
+
+   synchronized (ast_edits) {
+      // A reply for an older edit still becomes the base for the back end's
+      // next delta.  Apply it using the edits up to its id and keep the later
+      // ones; only the reply for the latest edit is shown.
+      if (id < ast_id) return;
+      int nedit = 0;
+      while (nedit < ast_edits.size() && ast_edits.get(nedit)[3] <= id) ++nedit;
+      List<int []> done = ast_edits.subList(0,nedit);
+      if (!delta) {
+	 List<BaleAstNode> nodes = new ArrayList<BaleAstNode>();
+	 for (Element e : IvyXml.children(d,"ELIDE")) {
+	    BaleAstNode n = new BaleAstNode(e,this);
+	    nodes.add(n);
+	  }
+	 ast_nodes = nodes;
+	 ast_valid = true;
+       }
+      else if (ast_nodes == null || !ast_valid) redo = true;
+      else ast_nodes = applyElisionDelta(d,done);
+      if (!redo) ast_id = id;
+      done.clear();
+    }
+
+   if (redo) {
+      if (id == getEditCounter()) BoardThreadPool.start(new ElisionRedoer());
+      return;
     }
 
    if (id != getEditCounter()) return;
-   ast_nodes = nodes;
 
    List<FragmentElisionUpdater> runs = new ArrayList<FragmentElisionUpdater>();
 
@@ -592,6 +609,71 @@ private void fixupElision()
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Incremental elision methods						*/
+/*										*/
+/********************************************************************************/
+
+/**
+ *	Update the current ast nodes with a delta from the back end.  The
+ *	delta contains the changed subtrees only; everything else is kept from
+ *	the prior data after being adjusted for the edits made since.
+ **/
+
+private List<BaleAstNode> applyElisionDelta(Element d,List<int []> edits)
+{
+   List<BaleAstNode> nodes = new ArrayList<BaleAstNode>();
+   for (BaleAstNode bn : ast_nodes) {
+      nodes.add(new BaleAstNode(bn,edits));
+    }
+
+   int ct = 0;
+   for (Element e : IvyXml.children(d,"ELIDE")) {
+      BaleAstNode n = new BaleAstNode(e,this);
+      BaleAstNode.spliceNode(nodes,null,n);
+      ++ct;
+    }
+
+   if (BoardLog.isLogging(LogLevel.DEBUG)) {
+      BoardLog.logD("BALE","Elision delta for " + file_name + ": " + ct + " subtrees after " +
+		       edits.size() + " edits");
+    }
+
+   return nodes;
+}
+
+
+
+private void noteAstEdit(int off,int len,int rlen,int id)
+{
+   synchronized (ast_edits) {
+      if (ast_nodes == null) return;
+      ast_edits.add(new int [] { off, len, rlen, id });
+    }
+}
+
+
+
+private void invalidateAstBase()
+{
+   synchronized (ast_edits) {
+      ast_valid = false;
+    }
+}
+
+
+
+private class ElisionRedoer implements Runnable {
+
+   @Override public void run() {
+      redoElision();
+    }
+
+}	// end of inner class ElisionRedoer
+
+
+
 private class FragmentElisionUpdater implements Runnable {
 
    private BaleFragment for_fragment;
@@ -628,6 +710,13 @@ private class FragmentElisionUpdater implements Runnable {
 
    RemoteEdit re = new RemoteEdit(len,loff,txt);
 
+   addRemoteEdit(re);
+}
+
+
+
+private void addRemoteEdit(RemoteEdit re)
+{
    synchronized (remote_edits) {
       boolean newrq = remote_edits.isEmpty();
       remote_edits.add(re);
@@ -654,9 +743,21 @@ private class RemoteEditor implements Runnable {
 
    @Override public void run() {
       synchronized (remote_edits) {
-	 while (!remote_edits.isEmpty()) {
-	    RemoteEdit re = remote_edits.remove();
-	    re.run();
+	 List<RemoteEdit> batch = new ArrayList<RemoteEdit>(remote_edits);
+	 remote_edits.clear();
+	 int i = 0;
+	 while (i < batch.size()) {
+	    RemoteEdit re = batch.get(i);
+	    if (re.isReload()) {
+	       re.run();
+	       ++i;
+	       continue;
+	     }
+	    int j = i+1;
+	    while (j < batch.size() && !batch.get(j).isReload()) ++j;
+	    if (j == i+1) re.run();
+	    else applyRemoteEdits(batch.subList(i,j));
+	    i = j;
 	  }
        }
     }
@@ -665,6 +766,144 @@ private class RemoteEditor implements Runnable {
 
 
 
+/**
+ *	Apply a sequence of remote edits (as from formatting or organizing imports)
+ *	together.  Edits that touch or overlap the text changed by the previous
+ *	ones are merged into a single replacement, and elision is only redone once
+ *	for the whole sequence.
+ **/
+
+private void applyRemoteEdits(List<RemoteEdit> edits)
+{
+   BoardLog.logD("BALE","Remote edit batch of " + edits.size());
+
+   boolean reload = false;
+
+   writeLock();
+   try {
+      doing_remote = true;
+      RemoteEditGroup grp = null;
+      int ngrp = 0;
+      for (RemoteEdit re : edits) {
+	 if (grp != null && !grp.addEdit(re)) {
+	    grp.apply();
+	    grp = null;
+	  }
+	 if (grp == null) {
+	    grp = new RemoteEditGroup(re);
+	    ++ngrp;
+	  }
+       }
+      if (grp != null) grp.apply();
+      BoardLog.logD("BALE","Done remote edit batch as " + ngrp + " edits");
+    }
+   catch (BadLocationException e) {
+      // part of the batch may have been applied; get back in sync with the back end
+      BoardLog.logE("BALE","Bad location for remote edit batch; reloading " + file_name,e);
+      reload = true;
+    }
+   finally {
+      doing_remote = false;
+      writeUnlock();
+    }
+
+   if (reload) BoardThreadPool.start(new FileReloader());
+   else fixupElision();
+}
+
+
+
+/**
+ *	Get the back end's current contents of the file and queue them as a
+ *	full reload.
+ **/
+
+private class FileReloader implements Runnable {
+
+   @Override public void run() {
+      String cnts = null;
+      try {
+	 Element xml = bump_client.startFile(project_name,file_name,true,-1);
+	 byte [] data = IvyXml.getBytesElement(xml,"CONTENTS");
+	 if (data != null) cnts = new String(data);
+       }
+      catch (BumpException e) {
+	 BoardLog.logE("BALE","Problem getting contents to reload " + file_name + ": " + e);
+       }
+      if (cnts == null) return;
+
+      addRemoteEdit(new RemoteEdit(-1,0,cnts));
+    }
+
+}	// end of inner class FileReloader
+
+
+
+private class RemoteEditGroup {
+
+   private int group_start;		// same in the document and the edited text
+   private int old_end;			// end of the replaced text in the document
+   private int new_end;			// end of the replacement in the edited text
+   private StringBuilder group_text;
+
+   RemoteEditGroup(RemoteEdit re) throws BadLocationException {
+      group_start = Math.min(Math.max(re.getEditOffset(),0),getLength());
+      old_end = group_start;
+      new_end = group_start;
+      group_text = new StringBuilder();
+      addEdit(re);
+    }
+
+   boolean addEdit(RemoteEdit re) throws BadLocationException {
+      int off = re.getEditOffset();
+      int len = Math.max(re.getEditLength(),0);
+      int curlen = getLength() + new_end - old_end;
+      if (off < 0 || off > curlen) return false;
+      if (off + len > curlen) len = curlen - off;
+      if (off > new_end || off + len < group_start) return false;
+
+      if (off < group_start) {
+	 group_text.insert(0,getText(off,group_start-off));
+	 group_start = off;
+       }
+      if (off + len > new_end) {
+	 int extra = off + len - new_end;
+	 group_text.append(getText(old_end,extra));
+	 old_end += extra;
+	 new_end += extra;
+       }
+
+      String ins = re.getEditText();
+      if (ins == null) ins = "";
+      group_text.replace(off-group_start,off-group_start+len,ins);
+      new_end += ins.length() - len;
+
+      return true;
+    }
+
+   void apply() throws BadLocationException {
+      String otxt = getText(group_start,old_end-group_start);
+      String ntxt = group_text.toString();
+
+      // only replace what actually differs so positions outside survive
+      int mx = Math.min(otxt.length(),ntxt.length());
+      int pfx = 0;
+      while (pfx < mx && otxt.charAt(pfx) == ntxt.charAt(pfx)) ++pfx;
+      int sfx = 0;
+      while (sfx < mx-pfx &&
+		otxt.charAt(otxt.length()-1-sfx) == ntxt.charAt(ntxt.length()-1-sfx)) ++sfx;
+
+      int off = group_start + pfx;
+      int len = otxt.length() - pfx - sfx;
+      String ins = ntxt.substring(pfx,ntxt.length()-sfx);
+      if (len > 0) remove(off,len);
+      if (ins.length() > 0) insertString(off,ins,null);
+    }
+
+}	// end of inner class RemoteEditGroup
+
+
+
 
 private class RemoteEdit implements Runnable {
 
@@ -678,6 +917,11 @@ private class RemoteEdit implements Runnable {
       edit_text = txt;
     }
 
+   int getEditOffset()			{ return edit_offset; }
+   int getEditLength()			{ return edit_len; }
+   String getEditText()			{ return edit_text; }
+   boolean isReload()				{ return edit_offset == 0 && edit_len < 0; }
+
    @Override public void run() {
       BoardLog.logD("BALE","Remote edit update " + edit_offset + " " + edit_len);
       if (edit_offset == 0 && edit_len < 0)
@@ -1135,20 +1379,13 @@ private class LineOffsetListener implements DocumentListener {
 private static class FragmentData {
 
    private List<BaleRegion> active_regions;
-   private Map<BaleRegion,Double> priority_regions;
    private boolean problems_changed;
 
    FragmentData(Collection<BaleRegion> regions) {
       active_regions = new ArrayList<BaleRegion>(regions);
-      priority_regions = new HashMap<BaleRegion,Double>();
       problems_changed = false;
     }
 
-   void setPriorityRegions(Map<BaleRegion,Double> rgns) {
-      priority_regions.clear();
-      if (rgns != null) priority_regions.putAll(rgns);
-    }
-
    void dumpRegions(BaleDocument bd,IvyXmlWriter xw) {
       for (BaleRegion br : active_regions) {
 	 xw.begin("REGION");
@@ -1156,15 +1393,6 @@ private static class FragmentData {
 	 xw.field("END",bd.mapOffsetToEclipse(br.getEnd()));
 	 xw.end("REGION");
        }
-      for (Map.Entry<BaleRegion,Double> ent : priority_regions.entrySet()) {
-	 BaleRegion br = ent.getKey();
-	 double p = ent.getValue();
-	 xw.begin("REGION");
-	 xw.field("START",bd.mapOffsetToEclipse(br.getStart()));
-	 xw.field("END",bd.mapOffsetToEclipse(br.getEnd()));
-	 xw.field("PRIORITY",p);
-	 xw.end("REGION");
-       }
     }
 
    Collection<BaleRegion> getRegions()		{ return active_regions; }
@@ -1201,10 +1429,13 @@ private class EclipseUpdater implements DocumentListener {
 	 try {
 	    String txt = getText(off,len);
 	    int eoff = mapOffsetToEclipse(off);
-	    bump_client.editFile(project_name,file_name,nextEditCounter(),eoff,eoff,txt);
+	    int ctr = nextEditCounter();
+	    noteAstEdit(off,0,len,ctr);
+	    bump_client.editFile(project_name,file_name,ctr,eoff,eoff,txt);
 	  }
 	 catch (BadLocationException ex) { }
        }
+      else invalidateAstBase();
     }
 
    @Override public void removeUpdate(DocumentEvent e) {
@@ -1217,8 +1448,11 @@ private class EclipseUpdater implements DocumentListener {
 	 // were deleted.  This is now handled inside bedrock
 	 int eoff1 = mapOffsetToEclipse(off);
 	 int eoff2 = eoff1+len;
-	 bump_client.editFile(project_name,file_name,nextEditCounter(),eoff1,eoff2,null);
+	 int ctr = nextEditCounter();
+	 noteAstEdit(off,len,0,ctr);
+	 bump_client.editFile(project_name,file_name,ctr,eoff1,eoff2,null);
        }
+      else invalidateAstBase();
     }
 
 }	// end of inner class EclipseUpdater
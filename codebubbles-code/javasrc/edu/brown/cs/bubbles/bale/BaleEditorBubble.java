@@ -43,6 +43,7 @@ import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 
 
@@ -477,17 +478,27 @@ private class Hoverer extends BudaHover {
 
    private BudaBubble preview_bubble;
    private BaleEditorPane editor_pane;
+   private int hover_count;
 
    Hoverer(BaleFragmentEditor bfe) {
       super(bfe.getEditor());
       preview_bubble = null;
       editor_pane = bfe.getEditor();
+      hover_count = 0;
     }
 
    @Override public void handleHover(MouseEvent e) {
       if (!BALE_PROPERTIES.getBoolean(BALE_PREVIEW_ENABLE)) return;
 
-      preview_bubble = editor_pane.getHoverBubble(e);
+      int id = ++hover_count;
+      editor_pane.findHoverMethod(e).whenComplete(new HoverShower(this,e,id));
+    }
+
+   void showPreview(MouseEvent e,int id,String fullnm) {
+      // ignore replies for hovers that have ended
+      if (id != hover_count) return;
+
+      preview_bubble = editor_pane.getHoverBubble(e,fullnm);
 
       if (preview_bubble != null && editor_pane.isShowing()) {
 	 Component c0 = (Component) e.getSource();
@@ -504,6 +515,7 @@ private class Hoverer extends BudaHover {
     }
 
    @Override public void endHover(MouseEvent e) {
+      ++hover_count;
       if (preview_bubble != null){
 	 preview_bubble.setVisible(false);
 	 preview_bubble.disposeBubble();
@@ -515,6 +527,34 @@ private class Hoverer extends BudaHover {
 
 
 
+private static class HoverShower implements BiConsumer<String,Throwable>, Runnable {
+
+   private Hoverer for_hoverer;
+   private MouseEvent for_event;
+   private int hover_id;
+   private String full_name;
+
+   HoverShower(Hoverer h,MouseEvent e,int id) {
+      for_hoverer = h;
+      for_event = e;
+      hover_id = id;
+      full_name = null;
+    }
+
+   @Override public void accept(String nm,Throwable t) {
+      full_name = nm;
+      if (SwingUtilities.isEventDispatchThread()) run();
+      else SwingUtilities.invokeLater(this);
+    }
+
+   @Override public void run() {
+      for_hoverer.showPreview(for_event,hover_id,full_name);
+    }
+
+}	// end of inner class HoverShower
+
+
+
 
 /********************************************************************************/
 /*										*/
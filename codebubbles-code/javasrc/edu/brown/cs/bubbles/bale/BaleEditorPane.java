@@ -50,6 +50,8 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 
 
@@ -77,6 +79,9 @@ private Map<BaleHighlightType,HighlightData> hilite_map;
 
 private Collection<ActiveRegion>	active_regions;
 
+private BaleElement		hover_element;
+private String			hover_name;
+
 private static final long serialVersionUID = 1;
 
 
@@ -119,6 +124,9 @@ protected BaleEditorPane()
 
    active_regions = new ArrayList<ActiveRegion>();
 
+   hover_element = null;
+   hover_name = null;
+
    setBackground(new Color(0, true));
 
    addMouseMotionListener(new ActiveMouser());
@@ -960,12 +968,18 @@ private String getHoverText(MouseEvent e)
     }
 
    if (txt == null && be != null && be.isIdentifier() && be.getName().contains("FieldId")) {
-      BumpClient bc = BumpClient.getBump();
-      String fullnm = null;
-      fullnm  = bc.getFullyQualifiedName(bd.getProjectName(),bd.getFile(),
-					    bd.mapOffsetToEclipse(loc),
-					    bd.mapOffsetToEclipse(loc));
-      if (fullnm != null) txt = fullnm;
+      // the name is found in the background and shown on a later request
+      if (be == hover_element) txt = hover_name;
+      else {
+	 hover_element = be;
+	 hover_name = null;
+	 BumpClient bc = BumpClient.getBump();
+	 CompletableFuture<String> fut;
+	 fut = bc.getFullyQualifiedNameAsync(bd.getProjectName(),bd.getFile(),
+						bd.mapOffsetToEclipse(loc),
+						bd.mapOffsetToEclipse(loc));
+	 fut.thenAccept(new HoverNamer(be));
+       }
     }
 
    return txt;
@@ -973,28 +987,45 @@ private String getHoverText(MouseEvent e)
 
 
 
+/**
+ * This method starts finding the method for a hover.  If the hover is over a
+ * method call, the future is completed with its full name once the back end
+ * replies; otherwise it is completed with null.
+ **/
+
+CompletableFuture<String> findHoverMethod(MouseEvent e)
+{
+   BaleElement be = getHoverElement(e);
+
+   if (be != null && be.isIdentifier() && be.getName().contains("CallId")) {
+      int loc = viewToModel(e.getPoint());
+      BaleDocument bd = getBaleDocument();
+      BumpClient bc = BumpClient.getBump();
+      return bc.getFullyQualifiedNameAsync(bd.getProjectName(),bd.getFile(),
+						bd.mapOffsetToEclipse(loc),
+						bd.mapOffsetToEclipse(loc));
+    }
+
+   return CompletableFuture.completedFuture(null);
+}
+
+
+
 /**
  * This method returns a corresponding bubble if hover text is a method or function,
- * otherwise, returns null.
+ * otherwise, returns null.  The method name is the one found by findHoverMethod.
  **/
 
-BudaBubble getHoverBubble(MouseEvent e)
+BudaBubble getHoverBubble(MouseEvent e,String fullnm)
 {
    BaleElement be = getHoverElement(e);
    int loc = viewToModel(e.getPoint());
    BaleDocument bd = getBaleDocument();
    BudaBubble bb = null;
 
-   if (be != null && be.isIdentifier() && be.getName().contains("CallId")) {
-      BumpClient bc = BumpClient.getBump();
-      String fullnm = null;
-      fullnm  = bc.getFullyQualifiedName(bd.getProjectName(),bd.getFile(),
-					    bd.mapOffsetToEclipse(loc),
-					    bd.mapOffsetToEclipse(loc));
-      if (fullnm != null) {
-	 BaleFactory bf = BaleFactory.getFactory();
-	 bb = bf.createMethodBubble(bd.getProjectName(),fullnm);
-       }
+   if (fullnm != null) {
+      BaleFactory bf = BaleFactory.getFactory();
+      bb = bf.createMethodBubble(bd.getProjectName(),fullnm);
     }
 
    if (bb == null) {
@@ -1025,6 +1056,29 @@ BaleElement getHoverElement(MouseEvent e)
 
 
 
+private class HoverNamer implements Consumer<String>, Runnable {
+
+   private BaleElement for_element;
+   private String full_name;
+
+   HoverNamer(BaleElement be) {
+      for_element = be;
+      full_name = null;
+    }
+
+   @Override public void accept(String nm) {
+      full_name = nm;
+      SwingUtilities.invokeLater(this);
+    }
+
+   @Override public void run() {
+      if (hover_element == for_element) hover_name = full_name;
+    }
+
+}	// end of inner class HoverNamer
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Active region management						*/
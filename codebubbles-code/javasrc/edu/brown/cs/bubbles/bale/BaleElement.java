@@ -722,6 +722,21 @@ static class Branch extends BaleElement {
       clearChildPositions();
     }
 
+   void replace(List<BaleElement> old,List<BaleElement> rep) {
+      for (int i = 1; i < old.size(); ++i) {
+	 BaleElement be = old.get(i);
+	 for (int j = 0; j < num_children; ++j) {
+	    if (children_elts[j] == be) {
+	       remove(j,j);
+	       be.parent_element = null;
+	       be.clearCache();
+	       break;
+	     }
+	  }
+       }
+      replace(old.get(0),rep);
+    }
+
    void remove(int frm,int to) {
       int nsz = to - frm + 1;
       for (int i = frm; i < num_children - nsz; ++i) {
@@ -747,6 +762,15 @@ static class Branch extends BaleElement {
       clearChildPositions();
     }
 
+   void addUnlinked(BaleElement e) {
+      // the caller is responsible for calling fixParents later
+      if (num_children >= children_elts.length) {
+	 children_elts = Arrays.copyOf(children_elts,children_elts.length*2);
+       }
+      children_elts[num_children++] = e;
+      clearChildPositions();
+    }
+
    protected Position getStartPosition() {
       if (num_children == 0) return null;
       if (start_pos == null) {
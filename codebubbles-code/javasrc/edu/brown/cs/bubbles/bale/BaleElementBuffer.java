@@ -50,6 +50,8 @@ private BaleElement.Branch		root_element;
 private Map<BumpProblem,ProblemData>	problem_map;
 private BaleDocument			base_document;
 private Map<BaleRegion,BaleElement>	elide_regions;
+private Segment 			text_segment;
+private BaleTokenizer.TokenBuffer	token_buffer;
 
 
 
@@ -65,6 +67,8 @@ BaleElementBuffer(BaleElement.Branch root,BaleDocument doc)
    problem_map = new HashMap<BumpProblem,ProblemData>();
    base_document = doc;
    elide_regions = null;
+   text_segment = new Segment();
+   token_buffer = new BaleTokenizer.TokenBuffer();
 }
 
 
@@ -181,10 +185,24 @@ private boolean isInElided(BaleElement be)
 
 synchronized BaleElementEvent updateAst(List<BaleAstNode> nodes)
 {
-   if (root_element == null) return null;
+   BaleElementBuilder b = prepareAst(nodes);
+   if (b == null) return null;
 
-   clearProblems();
-   saveElisions();
+   return commitAst(b);
+}
+
+
+
+/**
+ *	Build the element tree for a new AST without changing the current tree.
+ *	This only needs the document read lock.  The result is installed by
+ *	commitAst, which should be called under the write lock only if the
+ *	document has not been edited in between.
+ **/
+
+synchronized BaleElementBuilder prepareAst(List<BaleAstNode> nodes)
+{
+   if (root_element == null) return null;
 
    BaleAstNode bn = null;
    if (nodes.size() == 1) {
@@ -195,6 +213,20 @@ synchronized BaleElementEvent updateAst(List<BaleAstNode> nodes)
 
    BaleElementBuilder b = new BaleElementBuilder(root_element,bn);
    b.addChild(root_element);
+   b.finish();
+
+   return b;
+}
+
+
+
+synchronized BaleElementEvent commitAst(BaleElementBuilder b)
+{
+   if (root_element == null) return null;
+
+   clearProblems();
+   saveElisions();
+
    BaleElementEvent ee = b.fixup();
 
    updateProblems();
@@ -428,45 +460,67 @@ BaleElement shouldBeElided(BaleElement be)
 
 synchronized private BaleElementEvent replaceParent(BaleElement.Branch par,boolean elide)
 {
-   int soff,eoff;
-   String text;
-   BaleDocument doc = par.getBaleDocument();
-   BaleTokenState sstate = par.getStartTokenState();
-   BaleTokenState estate = par.getEndTokenState();
+   // Lines cache the token state at their start.  Rescan from the damaged
+   // region and continue over following siblings until the lexer state
+   // converges with the state cached on the next unchanged line.
 
-   if (par == root_element) {
-      soff = 0;
-      eoff = doc.getLength();
-    }
-   else {
-      soff = par.getStartOffset();
-      eoff = par.getEndOffset();
+   BaleDocument doc = par.getBaleDocument();
+   boolean top = (par == root_element);
+   BaleElement.Branch npar = (top ? null : (BaleElement.Branch) par.getParentElement());
+   int idx = 0;
+   if (!top) {
+      while (idx < npar.getElementCount() && npar.getBaleElement(idx) != par) ++idx;
     }
 
-   try {
-      text = doc.getText(soff,eoff-soff);
-    }
-   catch (BadLocationException e) {
-      BoardLog.logE("BALE","Problem getting parent text for elements: " + e);
-      return null;
-    }
+   List<BaleElement> olds = new ArrayList<BaleElement>();
+   List<BaleElement> reps = new ArrayList<BaleElement>();
+   IdentifierMap idmap = new IdentifierMap(par);
+   BaleElement cpar = par;
+   BaleTokenState state = par.getStartTokenState();
+
+   for ( ; ; ) {
+      int soff,eoff;
+      if (top) {
+	 soff = 0;
+	 eoff = doc.getLength();
+       }
+      else {
+	 soff = cpar.getStartOffset();
+	 eoff = cpar.getEndOffset();
+       }
 
-   clearProblems();
+      try {
+	 doc.getText(soff,eoff-soff,text_segment);
+       }
+      catch (BadLocationException e) {
+	 BoardLog.logE("BALE","Problem getting parent text for elements: " + e);
+	 if (!olds.isEmpty()) updateProblems();
+	 return null;
+       }
 
-   if (elide) saveElisions();
-   else elide_regions = null;
-   IdentifierMap idmap = new IdentifierMap(par);
+      if (olds.isEmpty()) {
+	 clearProblems();
+	 if (elide) saveElisions();
+	 else elide_regions = null;
+       }
+      else idmap.addElements(cpar);
 
-   List<BaleElement> reps = scanText(text,soff,sstate,estate,idmap,(par == root_element));
-   if (reps == null) {
-      return replaceParent(root_element,elide);
+      olds.add(cpar);
+      state = scanText(text_segment,soff,state,idmap,reps);
+      if (top || state == getLineEndState(cpar)) break;
+
+      int nidx = idx + olds.size();
+      if (!endsLine(reps) || nidx >= npar.getElementCount()) {
+	 return replaceParent(npar,elide);
+       }
+      cpar = npar.getBaleElement(nidx);
     }
 
    fixupElisions(reps);
 
    BaleElementEvent ee = null;
 
-   if (par == root_element) {
+   if (top) {
       // BoardLog.logD("BALE","ELEMENT REPLACE ROOT " + root_element.getChildCount() + " " + reps.size());
 
       ee = new BaleElementEvent(root_element,reps);
@@ -474,13 +528,16 @@ synchronized private BaleElementEvent replaceParent(BaleElement.Branch par,boole
       for (BaleElement r : reps) root_element.add(r);
       // BoardLog.logD("BALE","Result: " + root_element);
     }
-   else {
+   else if (olds.size() == 1) {
       // BoardLog.logD("BALE","ELEMENT REPLACE " + par.getName() + " " + reps.size() + " " + par + " " + reps.get(0));
-      BaleElement.Branch npar = (BaleElement.Branch) par.getParentElement();
       ee = new BaleElementEvent(npar,par,reps);
       npar.replace(par,reps);
       // BoardLog.logD("BALE","Result: " + root_element);
     }
+   else {
+      ee = new BaleElementEvent(npar,olds,reps);
+      npar.replace(olds,reps);
+    }
 
    updateProblems();
 
@@ -489,15 +546,37 @@ synchronized private BaleElementEvent replaceParent(BaleElement.Branch par,boole
 
 
 
-private List<BaleElement> scanText(String text,int baseoffset,
-				      BaleTokenState sstate,BaleTokenState estate,
-				      IdentifierMap idmap,
-				      boolean top)
+private BaleTokenState getLineEndState(BaleElement be)
+{
+   // only line elements record their end state; use the last line of a group
+
+   for (BaleElement c = be; c != null && !c.isLeaf(); ) {
+      if (c.isLineElement() || c.isUnknown()) return c.getEndTokenState();
+      int n = c.getChildCount();
+      if (n == 0) break;
+      c = c.getBaleElement(n-1);
+    }
+
+   return be.getEndTokenState();
+}
+
+
+
+private boolean endsLine(List<BaleElement> reps)
+{
+   if (reps.isEmpty()) return true;
+
+   return reps.get(reps.size()-1).isEndOfLine();
+}
+
+
+
+private BaleTokenState scanText(CharSequence text,int baseoffset,BaleTokenState sstate,
+				   IdentifierMap idmap,List<BaleElement> rslt)
 {
    BaleTokenizer toks = BaleTokenizer.create(text,sstate,base_document.getLanguage());
    BaleDocument doc = root_element.getBaleDocument();
 
-   List<BaleElement> rslt = new ArrayList<BaleElement>();
    BaleElement.UnknownNode cur = new BaleElement.UnknownNode(doc,root_element);
    cur.setStartTokenState(sstate);
    rslt.add(cur);
@@ -505,12 +584,16 @@ private List<BaleElement> scanText(String text,int baseoffset,
    BaleTokenState nstate = sstate;
    BaleElement xelt = null;
 
-   for (BaleToken bt : toks.scan()) {
-      int soff = bt.getStartOffset() + baseoffset;
-      int eoff = soff + bt.getLength();
+   BaleTokenizer.TokenBuffer tbuf = toks.scan(token_buffer);
+   int ntok = tbuf.size();
+
+   for (int i = 0; i < ntok; ++i) {
+      BaleTokenType btt = tbuf.getType(i);
+      int soff = tbuf.getStartOffset(i) + baseoffset;
+      int eoff = soff + tbuf.getLength(i);
       BaleElement nelt = null;
       nstate = BaleTokenState.NORMAL;
-      switch (bt.getType()) {
+      switch (btt) {
 	 case EOL :
 	    nelt = new BaleElement.Eol(doc,cur,soff,eoff);
 	    break;
@@ -524,18 +607,18 @@ private List<BaleElement> scanText(String text,int baseoffset,
 	    nelt = new BaleElement.LineComment(doc,cur,soff,eoff);
 	    break;
 	 case EOLFORMALCOMMENT :
-	    nelt = new BaleElement.JavaDocComment(doc,cur,soff,eoff,true,bt.getType());
+	    nelt = new BaleElement.JavaDocComment(doc,cur,soff,eoff,true,btt);
 	    nstate = BaleTokenState.IN_FORMAL_COMMENT;
 	    break;
 	 case ENDFORMALCOMMENT :
-	    nelt = new BaleElement.JavaDocComment(doc,cur,soff,eoff,false,bt.getType());
+	    nelt = new BaleElement.JavaDocComment(doc,cur,soff,eoff,false,btt);
 	    break;
 	 case EOLCOMMENT :
-	    nelt = new BaleElement.Comment(doc,cur,soff,eoff,true,bt.getType());
+	    nelt = new BaleElement.Comment(doc,cur,soff,eoff,true,btt);
 	    nstate = BaleTokenState.IN_COMMENT;
 	    break;
 	 case ENDCOMMENT :
-	    nelt = new BaleElement.Comment(doc,cur,soff,eoff,false,bt.getType());
+	    nelt = new BaleElement.Comment(doc,cur,soff,eoff,false,btt);
 	    break;
 	 case KEYWORD :
 	 case IF :
@@ -563,7 +646,7 @@ private List<BaleElement> scanText(String text,int baseoffset,
 	 case RAISE :
          case IMPORT :
          case PACKAGE :
-	    nelt = new BaleElement.Keyword(doc,cur,soff,eoff,bt.getType());
+	    nelt = new BaleElement.Keyword(doc,cur,soff,eoff,btt);
 	    break;
 	 case RETURN :
 	    nelt = new BaleElement.Return(doc,cur,soff,eoff);
@@ -577,7 +660,7 @@ private List<BaleElement> scanText(String text,int baseoffset,
 	 case CHARLITERAL :
 	 case STRING :
 	 case LONGSTRING :
-	    nelt = new BaleElement.Literal(doc,cur,soff,eoff,bt.getType());
+	    nelt = new BaleElement.Literal(doc,cur,soff,eoff,btt);
 	    break;
 	 case IDENTIFIER :
 	    nelt = idmap.getElement(soff);
@@ -603,15 +686,15 @@ private List<BaleElement> scanText(String text,int baseoffset,
 	 case RANGLE :
 	 case OTHER :
 	 case BACKSLASH :
-	    nelt = new BaleElement.Token(doc,cur,soff,eoff,bt.getType());
+	    nelt = new BaleElement.Token(doc,cur,soff,eoff,btt);
 	    break;
 	 case LBRACE :
 	 case RBRACE :
-	    nelt = new BaleElement.Brace(doc,cur,soff,eoff,bt.getType());
+	    nelt = new BaleElement.Brace(doc,cur,soff,eoff,btt);
 	    break;
 	 default :
-	    BoardLog.logW("BALE","Unknown token returned: " + bt.getType() + " " + soff + " " +
-			     eoff + " " + text.substring(soff-baseoffset,eoff-baseoffset));
+	    BoardLog.logW("BALE","Unknown token returned: " + btt + " " + soff + " " +
+			     eoff + " " + text.subSequence(soff-baseoffset,eoff-baseoffset));
        }
 
       if (nelt != null) {
@@ -634,9 +717,7 @@ private List<BaleElement> scanText(String text,int baseoffset,
 
    if (ctr == 0) rslt.remove(cur);
 
-   if (!top && nstate != estate) return null;
-
-   return rslt;
+   return nstate;
 }
 
 
@@ -934,6 +1015,10 @@ private static class IdentifierMap {
        }
     }
 
+   void addElements(BaleElement be) {
+      setupMap(be);
+    }
+
    BaleElement getElement(int off) {
       BaleElement be = id_map.get(off);
       if (be == null) return null;
@@ -57,6 +57,9 @@ private BaleAstNode cur_ast;
 private BaleElement.Branch cur_parent;
 private BaleTokenState token_state;
 private int		num_blank;
+private BaleAstNode	root_ast;
+private List<BaleElement> leaf_elements;
+private List<BaleAstNode> leaf_asts;
 
 
 private static boolean inside_elements = false;
@@ -73,7 +76,7 @@ BaleElementBuilder(BaleElement.Branch be,BaleAstNode ast)
 {
    for_document = be.getBaleDocument();
    root_element = be;
-   root_element.setAstNode(ast);
+   root_ast = ast;
    new_children = new ArrayList<BaleElement>();
    cur_parent = root_element;
    cur_ast = ast;
@@ -81,6 +84,8 @@ BaleElementBuilder(BaleElement.Branch be,BaleAstNode ast)
    token_state = BaleTokenState.NORMAL;
    line_elements = new ArrayList<BaleElement>();
    num_blank = 0;
+   leaf_elements = new ArrayList<BaleElement>();
+   leaf_asts = new ArrayList<BaleAstNode>();
 }
 
 
@@ -116,15 +121,33 @@ void addChild(BaleElement be)
 /*										*/
 /*	Methods to finish up scanning and update the element tree		*/
 /*										*/
+/*	Building only creates new branches; the existing leaves are not given	*/
+/*	their new parents or AST nodes until fixup, so the current tree can	*/
+/*	still be read while the new one is being built. 			*/
+/*										*/
 /********************************************************************************/
 
-BaleElementEvent fixup()
+void finish()
 {
    if (line_elements.size() > 0) addLine();
+   line_elements.clear();
+}
+
+
+
+BaleElementEvent fixup()
+{
+   finish();
 
+   root_element.setAstNode(root_ast);
    BaleElementEvent ee = new BaleElementEvent(root_element,new_children);
    root_element.clear();
    for (BaleElement be : new_children) root_element.add(be);
+   root_element.fixParents();
+   root_element.clearCache();
+   for (int i = 0; i < leaf_elements.size(); ++i) {
+      leaf_elements.get(i).setAstNode(leaf_asts.get(i));
+    }
    BoardLog.logD("BALE","ELEMENT FIXUP ROOT " + new_children.size());
 
    return ee;
@@ -216,9 +239,9 @@ private void fixOuterParent(BaleElement fbe,BaleElement lbe,BaleElement eol)
 	 relt = relt.getBaleParent();
        }
       if (relt != null) {
-	 if (eol.getDocumentEndOffset() >= relt.getAstNode().getEnd()) {
+	 if (eol.getDocumentEndOffset() >= getAst(relt).getEnd()) {
 	    cur_parent = relt.getBaleParent();
-	    cur_ast = cur_parent.getAstNode();
+	    cur_ast = getAst(cur_parent);
 	    num_blank = 0;
 	  }
        }
@@ -231,7 +254,7 @@ private void fixOuterParent(BaleElement fbe,BaleElement lbe,BaleElement eol)
 	 while (tpos > epos) {
 	    if (cur_parent == root_element) break;
 	    cur_parent = cur_parent.getBaleParent();
-	    cur_ast = cur_parent.getAstNode();
+	    cur_ast = getAst(cur_parent);
 	    num_blank = 0;
 	    if (cur_ast == null) break;
 	    epos = cur_ast.getEnd();
@@ -245,7 +268,7 @@ private void fixOuterParent(BaleElement fbe,BaleElement lbe,BaleElement eol)
    while (lsn == null) {
       if (cur_parent == root_element) break;
       cur_parent = cur_parent.getBaleParent();
-      cur_ast = cur_parent.getAstNode();
+      cur_ast = getAst(cur_parent);
       lsn = getAstChild(lbe);
     }
 
@@ -273,7 +296,7 @@ private void fixInnerParent(BaleElement be)
    BaleAstNode sn = getAstChild(be);
    while (cur_parent != cur_line && sn == null) {
       cur_parent = cur_parent.getBaleParent();
-      cur_ast = cur_parent.getAstNode();
+      cur_ast = getAst(cur_parent);
       sn = getAstChild(be);
     }
 
@@ -467,7 +490,8 @@ private BaleElement fixLeafElement(BaleElement be,boolean first)
        }
     }
 
-   be.setAstNode(sn);
+   leaf_elements.add(be);
+   leaf_asts.add(sn);
    return be;
 }
 
@@ -538,6 +562,9 @@ private void addElementNode(BaleElement nbe,int prior)
    if (cur_parent == root_element) {
       new_children.add(nbe);
     }
+   else if (nbe.isLeaf()) {
+      cur_parent.addUnlinked(nbe);
+    }
    else {
       cur_parent.add(nbe);
     }
@@ -545,6 +572,15 @@ private void addElementNode(BaleElement nbe,int prior)
 
 
 
+private BaleAstNode getAst(BaleElement be)
+{
+   if (be == root_element) return root_ast;
+
+   return be.getAstNode();
+}
+
+
+
 private BaleAstNode getAstChild(BaleElement be)
 {
    if (cur_ast == null) return null;
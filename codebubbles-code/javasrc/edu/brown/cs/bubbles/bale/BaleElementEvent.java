@@ -112,6 +112,28 @@ BaleElementEvent(BaleElement par,BaleElement old,List<BaleElement> rep)
 
 
 
+BaleElementEvent(BaleElement par,List<BaleElement> old,List<BaleElement> rep)
+{
+   // replace the consecutive elements old in par with elements in rep
+
+   base_element = par;
+   children_removed = new Element[old.size()];
+   int j = 0;
+   for (BaleElement be : old) children_removed[j++] = be;
+   for (int i = 0; i < par.getElementCount(); ++i) {
+      if (par.getElement(i) == old.get(0)) {
+	 element_index = i;
+	 break;
+       }
+    }
+   children_added = new Element[rep.size()];
+   j = 0;
+   for (BaleElement be : rep) children_added[j++] = be;
+}
+
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Access methods								*/
@@ -76,6 +76,8 @@ private SwingEventListenerList<BaleAnnotationListener> annot_listeners;
 private Set<BaleAnnotation>		active_annotations;
 private SwingEventListenerList<BaleContextListener> context_listeners;
 private BudaRoot			buda_root;
+private Map<String,List<BumpLocation>>	preload_methods;
+private Map<File,Element>		preload_files;
 
 private static BaleFactory	the_factory;
 
@@ -103,6 +105,8 @@ private BaleFactory()
    annot_listeners = new SwingEventListenerList<BaleAnnotationListener>(BaleAnnotationListener.class);
    active_annotations = new HashSet<BaleAnnotation>();
    context_listeners = new SwingEventListenerList<BaleContextListener>(BaleContextListener.class);
+   preload_methods = new HashMap<String,List<BumpLocation>>();
+   preload_files = new HashMap<File,Element>();
    BudaRoot.addFileHandler(this);
 
    bump_client.addChangeHandler(this);
@@ -165,7 +169,11 @@ public static void initialize(BudaRoot br)
 
 BaleFragmentEditor createMethodFragmentEditor(String proj,String method)
 {
-   List<BumpLocation> locs = bump_client.findMethod(proj,method,false);
+   List<BumpLocation> locs = null;
+   synchronized (preload_methods) {
+      locs = preload_methods.remove(getPreloadKey(proj,method));
+    }
+   if (locs == null) locs = bump_client.findMethod(proj,method,false);
 
    return getEditorFromLocations(locs);
 }
@@ -804,6 +812,114 @@ synchronized BaleHighlightContext getGlobalHighlightContext()
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Preloading methods for creating many bubbles at once			*/
+/*										*/
+/********************************************************************************/
+
+/**
+ *	Fetch the definitions of a set of methods and the files that contain them
+ *	with batched requests so that the bubbles for them can be created without
+ *	a round trip to the back end for each one.
+ **/
+
+void preloadMethods(String proj,Collection<String> names)
+{
+   if (names.size() <= 1) return;
+
+   Map<String,List<BumpLocation>> found = bump_client.findMethods(proj,names,false);
+
+   Map<File,String> files = new HashMap<File,String>();
+   synchronized (preload_methods) {
+      for (Map.Entry<String,List<BumpLocation>> ent : found.entrySet()) {
+	 List<BumpLocation> locs = ent.getValue();
+	 if (locs == null) continue;
+	 preload_methods.put(getPreloadKey(proj,ent.getKey()),locs);
+	 for (BumpLocation bl : locs) {
+	    if (bl.getFile() != null) files.put(bl.getFile(),bl.getSymbolProject());
+	  }
+       }
+    }
+
+   preloadFiles(files);
+}
+
+
+
+/**
+ *	Start a set of files with a single batched request.  The replies are
+ *	used when the documents for these files are created.
+ **/
+
+void preloadFiles(Map<File,String> files)
+{
+   Map<String,List<File>> byproj = new HashMap<String,List<File>>();
+   synchronized (file_documents) {
+      for (Map.Entry<File,String> ent : files.entrySet()) {
+	 File f = ent.getKey();
+	 if (file_documents.containsKey(f)) continue;
+	 synchronized (preload_files) {
+	    if (preload_files.containsKey(f)) continue;
+	  }
+	 String proj = ent.getValue();
+	 List<File> fl = byproj.get(proj);
+	 if (fl == null) {
+	    fl = new ArrayList<File>();
+	    byproj.put(proj,fl);
+	  }
+	 fl.add(f);
+       }
+    }
+
+   for (Map.Entry<String,List<File>> ent : byproj.entrySet()) {
+      if (ent.getValue().size() <= 1) continue;
+      Map<File,Element> rslt = bump_client.startFiles(ent.getKey(),ent.getValue(),false,1);
+      synchronized (preload_files) {
+	 preload_files.putAll(rslt);
+       }
+    }
+}
+
+
+
+/**
+ *	Return the preloaded start reply for a file being opened.  The reply
+ *	corresponds to the first edit id of the new document.
+ **/
+
+Element getPreloadedFile(File f)
+{
+   synchronized (preload_files) {
+      return preload_files.remove(f);
+    }
+}
+
+
+
+/**
+ *	Discard any preloaded data that was not used.
+ **/
+
+void endPreload()
+{
+   synchronized (preload_methods) {
+      preload_methods.clear();
+    }
+   synchronized (preload_files) {
+      preload_files.clear();
+    }
+}
+
+
+
+private static String getPreloadKey(String proj,String name)
+{
+   return proj + "@" + name;
+}
+
+
+
 /********************************************************************************/
 /*										*/
 /*	IDE File Document methods						*/
@@ -364,46 +364,42 @@ private void findAllOccurences(String text, int dir)
       List<Position> occurrences = new ArrayList<Position>();
       int tlen = eoff-soff;
       try {
-	 boolean search = true;
 	 Segment segment = new Segment();
 	 Position found;
 	 Position bestfound = for_document.createPosition(0);
 	 int bestdist = for_document.getLength();
-	 while (search) {
-	    for_document.getText(soff,tlen,segment);
-	    int finalloc = tlen-len;
-	    if (finalloc < 0) break;
-	    for (int i = 0; i <= tlen-len; ++i) {
-	       boolean fnd = true;
-	       for (int j = 0; fnd && j < len; ++j) {
-		  char x = segment.charAt(i+j);
-		  char y = search_for.charAt(j);
-		  if (is_case_sensitive.isSelected()) fnd = x == y;
-		  else{
-		     x = Character.toLowerCase(x);
-		     y = Character.toLowerCase(y);
-		     fnd = x == y;
-		   }
-		}
-	       if (fnd) {
-		  found = for_document.createPosition(i+soff);
-		  occurrences.add(found);
-		  soff = found.getOffset() + len;
-		  if (found.getOffset() - carpos < bestdist && found.getOffset() - carpos > 0 && dir > 0) {
-		     bestfound = found;
-		     bestdist = found.getOffset() - carpos;
-		   }
-		  else if (carpos - soff < bestdist && carpos - soff > 0 && dir < 0) {
-		     bestfound = found;
-		     bestdist = carpos - soff;
-		   }
-		  tlen = eoff - soff;
-		  break;
-		}
-	       else if (i >= tlen-len) {
-		  search = false;
+	 boolean cases = is_case_sensitive.isSelected();
+	 // fetch the text once; rescanning from each match is quadratic in large files
+	 for_document.getText(soff,tlen,segment);
+	 int i = 0;
+	 while (len > 0 && i <= tlen-len) {
+	    boolean fnd = true;
+	    for (int j = 0; fnd && j < len; ++j) {
+	       char x = segment.charAt(i+j);
+	       char y = search_for.charAt(j);
+	       if (cases) fnd = x == y;
+	       else{
+		  x = Character.toLowerCase(x);
+		  y = Character.toLowerCase(y);
+		  fnd = x == y;
 		}
 	     }
+	    if (!fnd) {
+	       ++i;
+	       continue;
+	     }
+	    found = for_document.createPosition(i);
+	    occurrences.add(found);
+	    soff = i + len;
+	    if (i - carpos < bestdist && i - carpos > 0 && dir > 0) {
+	       bestfound = found;
+	       bestdist = i - carpos;
+	     }
+	    else if (carpos - soff < bestdist && carpos - soff > 0 && dir < 0) {
+	       bestfound = found;
+	       bestdist = carpos - soff;
+	     }
+	    i = soff;
 	  }
 	 occurrences_set = occurrences;
 	 if (dir == 0 || bestfound.getOffset() == 0)  current_index = -1;
@@ -26,16 +26,24 @@
 package edu.brown.cs.bubbles.bale;
 
 
-import edu.brown.cs.bubbles.board.BoardThreadPool;
 import edu.brown.cs.bubbles.bump.BumpClient;
 import edu.brown.cs.bubbles.bump.BumpLocation;
 
 import javax.swing.SwingUtilities;
 import javax.swing.event.*;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultHighlighter;
 import javax.swing.text.Highlighter;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 
 
@@ -51,16 +59,23 @@ class BaleHighlightContext implements BaleConstants, CaretListener, DocumentList
 /********************************************************************************/
 
 private Collection<BaleEditorPane>	for_editors;
-private Timer				our_timer;
-private TimerTask			wait_task;
-private CaretEvent			caret_event;
-private int				start_counter;
+private HighlightRequest		current_request;
 private BumpClient			bump_client;
 private Set<BaleHighlightType>		active_types;
 private long				highlight_delay;
+private Map<String,HighlightResult>	result_cache;
 
 private static boolean		split_identifier = true;
 
+private static final int	RESULT_CACHE_SIZE = 64;
+
+private static ScheduledThreadPoolExecutor highlight_scheduler;
+
+static {
+   highlight_scheduler = new ScheduledThreadPoolExecutor(1,new HighlightThreadFactory());
+   highlight_scheduler.setRemoveOnCancelPolicy(true);
+}
+
 
 
 /********************************************************************************/
@@ -72,13 +87,11 @@ private static boolean		split_identifier = true;
 BaleHighlightContext()
 {
    for_editors = new HashSet<BaleEditorPane>();
-   our_timer = new Timer("HighlightTimer");
-   wait_task = null;
-   caret_event = null;
-   start_counter = -1;
+   current_request = null;
    bump_client = BumpClient.getBump();
    active_types = EnumSet.noneOf(BaleHighlightType.class);
    highlight_delay = BALE_PROPERTIES.getLong(BALE_HIGHLIGHT_DELAY,300);
+   result_cache = new ResultCache();
 }
 
 
@@ -104,7 +117,10 @@ synchronized void removeEditor(BaleEditorPane ed)
    if (for_editors.remove(ed)) {
       ed.removeCaretListener(this);
       ed.getBaleDocument().removeDocumentListener(this);
-      if (caret_event != null && caret_event.getSource() == ed) caret_event = null;
+      if (current_request != null && current_request.getEditor() == ed) {
+	 current_request.cancel();
+	 current_request = null;
+       }
     }
 }
 
@@ -147,21 +163,20 @@ static Highlighter.HighlightPainter getPainter(BaleHighlightType typ)
 
 @Override synchronized public void caretUpdate(CaretEvent e)
 {
-   if (wait_task != null) {
-      caret_event = null;
-      wait_task.cancel();
-      wait_task = null;
+   // any caret motion supersedes the outstanding request, including one
+   // that is already waiting on the back end
+   if (current_request != null) {
+      current_request.cancel();
+      current_request = null;
     }
 
    BaleEditorPane edt = (BaleEditorPane) e.getSource();
    BaleDocument doc = edt.getBaleDocument();
    doc.baleReadLock();
    try {
-      if (wait_task == null && isStartable(e)) {
-	 caret_event = e;
-	 start_counter = doc.getEditCounter();
-	 wait_task = new WaitTimer(caret_event);
-	 our_timer.schedule(wait_task,highlight_delay);
+      if (isStartable(e)) {
+	 current_request = new HighlightRequest(e,doc.getEditCounter());
+	 current_request.schedule(highlight_delay);
        }
     }
    finally { doc.baleReadUnlock(); }
@@ -169,18 +184,6 @@ static Highlighter.HighlightPainter getPainter(BaleHighlightType typ)
 
 
 
-
-synchronized private void handleWaitDone(CaretEvent start)
-{
-   if (start == caret_event) {
-      DataGetter dg = new DataGetter(start);
-      BoardThreadPool.start(dg);
-    }
-   wait_task = null;
-}
-
-
-
 private boolean isStartable(CaretEvent e)
 {
    BaleEditorPane edt = (BaleEditorPane) e.getSource();
@@ -217,147 +220,157 @@ private boolean isStartable(CaretEvent e)
 
 
 
-private class WaitTimer extends TimerTask {
-
-   private CaretEvent start_event;
-
-   WaitTimer(CaretEvent e) {
-      start_event = e;
-    }
-
-   @Override public void run() {
-      handleWaitDone(start_event);
-    }
-
-}	// end of inner class WaitTimer
-
-
-
-
 /********************************************************************************/
 /*										*/
 /*	Methods to find the set of highlights					*/
 /*										*/
 /********************************************************************************/
 
-private void handleHighlight(CaretEvent start)
+private void startHighlight(HighlightRequest rq)
 {
-   BaleEditorPane edt = (BaleEditorPane) start.getSource();
+   CaretEvent start = rq.getCaretEvent();
+   BaleEditorPane edt = rq.getEditor();
    BaleDocument doc = edt.getBaleDocument();
+   String proj;
+   File file;
+   int spos;
+   int epos;
+   String key = null;
 
    doc.baleReadLock();
    try {
-      startHighlight(start);
+      if (rq.isCancelled()) return;
+      if (doc.getEditCounter() != rq.getEditCounter()) return;
+
+      BaleElement leaf = doc.getCharacterElement(start.getDot());
+      if (leaf == null) return;
+
+      spos = doc.mapOffsetToEclipse(start.getDot());
+      epos = doc.mapOffsetToEclipse(start.getMark());
+      if (epos < spos) {
+	 int x = epos;
+	 epos = spos;
+	 spos = x;
+       }
+      if (epos == spos && leaf.getTokenType() == BaleTokenType.SPACE) {
+	 BaleElement prev = leaf.getPreviousCharacterElement();
+	 if (prev.getEndOffset() == start.getDot()) leaf = prev;
+      }
+
+      switch (leaf.getTokenType()) {
+	 case IDENTIFIER :
+	    proj = doc.getProjectName();
+	    file = doc.getFile();
+	    key = getCacheKey(doc,leaf,spos,epos);
+	    break;
+	 case LBRACE :
+	 case LPAREN :
+	 case LBRACKET :
+	    BaleElement.Leaf me = findNextMatch(leaf);
+	    if (me != null) {
+	       BracketHighlightCreator bhc = new BracketHighlightCreator(leaf,me,rq.getEditCounter());
+	       SwingUtilities.invokeLater(bhc);
+	     }
+	    return;
+	 case RBRACE :
+	 case RPAREN :
+	 case RBRACKET :
+	    me = findPriorMatch(leaf);
+	    if (me != null) {
+	       BracketHighlightCreator bhc = new BracketHighlightCreator(me,leaf,rq.getEditCounter());
+	       SwingUtilities.invokeLater(bhc);
+	     }
+	    return;
+	 case LANGLE :
+	 case RANGLE :
+	    // TODO: handle find matching brace
+	    return;
+	 default :
+	    return;
+       }
     }
    finally { doc.baleReadUnlock(); }
-}
 
+   // the back end is queried without holding the document lock; the edit
+   // counter is checked again before the highlights are created
 
+   HighlightResult rslt = null;
+   if (key != null) {
+      synchronized (result_cache) {
+	 rslt = result_cache.get(key);
+       }
+    }
+   if (rslt == null) {
+      rslt = findIdentifierLocations(rq,proj,file,spos,epos);
+      if (rslt == null) return;
+      if (key != null) {
+	 synchronized (result_cache) {
+	    result_cache.put(key,rslt);
+	  }
+       }
+    }
 
+   if (rq.isCancelled()) return;
+   if (doc.getEditCounter() != rq.getEditCounter()) return;
 
-private void startHighlight(CaretEvent start)
-{
-   if (start != caret_event) return;
+   HighlightCreator hc = new HighlightCreator(start,rq.getEditCounter(),rslt.getReadLocations(),
+						 rslt.getWriteLocations(),rslt.getDefLocations());
+   SwingUtilities.invokeLater(hc);
+}
 
-   BaleEditorPane edt = (BaleEditorPane) start.getSource();
-   BaleDocument doc = edt.getBaleDocument();
-   if (doc.getEditCounter() != start_counter) return;
 
-   BaleElement leaf = doc.getCharacterElement(start.getDot());
-   if (leaf == null) return;
 
-   int spos = doc.mapOffsetToEclipse(start.getDot());
-   int epos = doc.mapOffsetToEclipse(start.getMark());
-   if (epos < spos) {
-      int x = epos;
-      epos = spos;
-      spos = x;
+private HighlightResult findIdentifierLocations(HighlightRequest rq,String proj,File file,
+						   int spos,int epos)
+{
+   List<BumpLocation> locsr = null;
+   Collection<BumpLocation> locsw = null;
+   Collection<BumpLocation> locsd = null;
+
+   if (split_identifier) {
+      locsr = rq.waitForReply(bump_client.findRWReferencesAsync(proj,file,spos,epos,false,1000));
+      BumpSymbolType styp = BumpSymbolType.UNKNOWN;
+      if (locsr != null && locsr.size() > 0) {
+	 BumpLocation loc = locsr.get(0);
+	 styp = loc.getSourceType();
+	 if (styp == BumpSymbolType.UNKNOWN) styp = loc.getSymbolType();
+       }
+      if (locsr != null && styp != BumpSymbolType.FUNCTION) removeDefs(locsr);
+      if (rq.isCancelled()) return null;
+      switch (styp) {
+	 case UNKNOWN :
+	    locsw = rq.waitForReply(bump_client.findReferencesAsync(proj,file,spos,epos,1000));
+	    break;
+	 case FIELD :
+	 case LOCAL :
+	 case GLOBAL :
+	    // both requests are in flight at once
+	    Future<List<BumpLocation>> fw = bump_client.findRWReferencesAsync(proj,file,spos,epos,true,500);
+	    Future<List<BumpLocation>> fd = bump_client.findDefinitionAsync(proj,file,spos,epos,500);
+	    locsw = rq.waitForReply(fw);
+	    locsd = rq.waitForReply(fd);
+	    break;
+	 case CLASS :
+	 case THROWABLE :
+	 case ENUM :
+	 case INTERFACE :
+	    locsd = rq.waitForReply(bump_client.findDefinitionAsync(proj,file,spos,epos,1000));
+	    removeDefs(locsd);
+	    break;
+	 case MODULE :
+	    break;
+	 default :
+	    break;
+       }
+    }
+   else {
+      locsr = rq.waitForReply(bump_client.findReferencesAsync(proj,file,spos,epos,0));
     }
-   if (epos == spos && leaf.getTokenType() == BaleTokenType.SPACE) {
-      BaleElement prev = leaf.getPreviousCharacterElement();
-      if (prev.getEndOffset() == start.getDot()) leaf = prev;
-   }
 
+   if (rq.isCancelled()) return null;
+   if (locsr == null && locsw == null && locsd == null) return null;
 
-   switch (leaf.getTokenType()) {
-      case IDENTIFIER :
-	 List<BumpLocation> locsr = null;
-	 Collection<BumpLocation> locsw = null;
-	 Collection<BumpLocation> locsd = null;
-
-	 if (split_identifier) {
-	    locsr = bump_client.findRWReferences(doc.getProjectName(),
-						    doc.getFile(),spos,epos,false,1000);
-	    BumpSymbolType styp = BumpSymbolType.UNKNOWN;
-	    if (locsr != null && locsr.size() > 0) {
-	       BumpLocation loc = locsr.get(0);
-	       styp = loc.getSourceType();
-	       if (styp == BumpSymbolType.UNKNOWN) styp = loc.getSymbolType();
-	     }
-	    if (locsr != null && styp != BumpSymbolType.FUNCTION) removeDefs(locsr);
-	    switch (styp) {
-	       case UNKNOWN :
-		  locsw = bump_client.findReferences(doc.getProjectName(),doc.getFile(),spos,epos,1000);
-		  break;
-	       case FIELD :
-	       case LOCAL :
-               case GLOBAL :
-		  locsw = bump_client.findRWReferences(doc.getProjectName(),
-							  doc.getFile(),spos,epos,true,500);
-		  locsd = bump_client.findDefinition(doc.getProjectName(),
-							doc.getFile(),spos,epos,500);
-		  break;
-	       case CLASS :
-	       case THROWABLE :
-	       case ENUM :
-	       case INTERFACE :
-		  locsd = bump_client.findDefinition(doc.getProjectName(),
-							doc.getFile(),spos,epos,1000);
-		  removeDefs(locsd);
-		  break;
-               case MODULE :
-                  break;
-               default :
-        	  break;
-	     }
-	  }
-	 else {
-	    locsr = bump_client.findReferences(doc.getProjectName(),
-						  doc.getFile(),spos,epos);
-	  }
-	 if (start != caret_event) return;
-	 if (doc.getEditCounter() != start_counter) return;
-	 if (locsr != null || locsw != null || locsd != null) {
-	    HighlightCreator hc = new HighlightCreator(start,start_counter,locsr,locsw,locsd);
-	    SwingUtilities.invokeLater(hc);
-	  }
-	 break;
-
-      case LBRACE :
-      case LPAREN :
-      case LBRACKET :
-	 BaleElement.Leaf me = findNextMatch(leaf);
-	 if (leaf != null && me != null) {
-	    BracketHighlightCreator bhc = new BracketHighlightCreator(leaf,me,start_counter);
-	    SwingUtilities.invokeLater(bhc);
-	 }
-	 break;
-      case RBRACE :
-      case RPAREN :
-      case RBRACKET :
-	 me = findPriorMatch(leaf);
-	 if (leaf != null && me != null) {
-	    BracketHighlightCreator bhc = new BracketHighlightCreator(me,leaf,start_counter);
-	    SwingUtilities.invokeLater(bhc);
-	 }
-	 break;
-      case LANGLE :
-      case RANGLE :
-	 // TODO: handle find matching brace
-	 break;
-      default :
-	 break;
-    }
+   return new HighlightResult(locsr,locsw,locsd);
 }
 
 
@@ -374,23 +387,87 @@ private void removeDefs(Collection<BumpLocation> locs)
 
 
 
-private class DataGetter implements Runnable {
+private class HighlightRequest implements Runnable {
 
    private CaretEvent start_event;
+   private int edit_counter;
+   private boolean is_cancelled;
+   private ScheduledFuture<?> schedule_future;
+   private List<Future<?>> pending_replies;
 
-   DataGetter(CaretEvent ce) {
+   HighlightRequest(CaretEvent ce,int ctr) {
       start_event = ce;
+      edit_counter = ctr;
+      is_cancelled = false;
+      schedule_future = null;
+      pending_replies = new ArrayList<Future<?>>();
+    }
+
+   CaretEvent getCaretEvent()			{ return start_event; }
+   BaleEditorPane getEditor()			{ return (BaleEditorPane) start_event.getSource(); }
+   int getEditCounter() 			{ return edit_counter; }
+   synchronized boolean isCancelled()		{ return is_cancelled; }
+
+   synchronized void schedule(long delay) {
+      schedule_future = highlight_scheduler.schedule(this,delay,TimeUnit.MILLISECONDS);
+    }
+
+   void cancel() {
+      List<Future<?>> rply;
+      synchronized (this) {
+	 if (is_cancelled) return;
+	 is_cancelled = true;
+	 if (schedule_future != null) schedule_future.cancel(false);
+	 rply = new ArrayList<Future<?>>(pending_replies);
+	 pending_replies.clear();
+       }
+      // wakes up a thread waiting for one of these replies
+      for (Future<?> f : rply) f.cancel(false);
+    }
+
+   <T> T waitForReply(Future<T> f) {
+      synchronized (this) {
+	 if (is_cancelled) {
+	    f.cancel(false);
+	    return null;
+	  }
+	 pending_replies.add(f);
+       }
+      try {
+	 return f.get();
+       }
+      catch (InterruptedException e) { }
+      catch (ExecutionException e) { }
+      catch (CancellationException e) { }
+      finally {
+	 synchronized (this) {
+	    pending_replies.remove(f);
+	  }
+       }
+      return null;
     }
 
    @Override public void run() {
-      handleHighlight(start_event);
+      startHighlight(this);
     }
 
    @Override public String toString() {
-      return "BALE_HighlightDataGetter_" + start_event.getDot() + "_" + start_event.getMark();
+      return "BALE_HighlightRequest_" + start_event.getDot() + "_" + start_event.getMark();
     }
 
-}	// end of inner class DataGetter
+}	// end of inner class HighlightRequest
+
+
+
+private static class HighlightThreadFactory implements ThreadFactory {
+
+   @Override public Thread newThread(Runnable r) {
+      Thread t = new Thread(r,"BaleHighlighter");
+      t.setDaemon(true);
+      return t;
+    }
+
+}	// end of inner class HighlightThreadFactory
 
 
 
@@ -464,6 +541,67 @@ private class BracketHighlightCreator implements Runnable {
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Result caching								*/
+/*										*/
+/********************************************************************************/
+
+private String getCacheKey(BaleDocument doc,BaleElement leaf,int spos,int epos)
+{
+   // the edit counter is shared by all fragments of a file, so a key is
+   // never valid after an edit anywhere in the file.  The back end is asked
+   // about the selected range, so both of its ends are part of the key.
+   String txt;
+   try {
+      txt = doc.getText(leaf.getStartOffset(),leaf.getEndOffset() - leaf.getStartOffset());
+    }
+   catch (BadLocationException e) {
+      return null;
+    }
+
+   return doc.getFile().getPath() + "@" + doc.getEditCounter() + "@" +
+      doc.mapOffsetToEclipse(leaf.getStartOffset()) + "@" + spos + "@" + epos + "@" + txt;
+}
+
+
+
+private static class HighlightResult {
+
+   private Collection<BumpLocation> read_locs;
+   private Collection<BumpLocation> write_locs;
+   private Collection<BumpLocation> def_locs;
+
+   HighlightResult(Collection<BumpLocation> r,Collection<BumpLocation> w,Collection<BumpLocation> d) {
+      read_locs = r;
+      write_locs = w;
+      def_locs = d;
+    }
+
+   Collection<BumpLocation> getReadLocations()		{ return read_locs; }
+   Collection<BumpLocation> getWriteLocations() 	{ return write_locs; }
+   Collection<BumpLocation> getDefLocations()		{ return def_locs; }
+
+}	// end of inner class HighlightResult
+
+
+
+private static class ResultCache extends LinkedHashMap<String,HighlightResult> {
+
+   private static final long serialVersionUID = 1;
+
+   ResultCache() {
+      super(RESULT_CACHE_SIZE,0.75f,true);
+    }
+
+   @Override protected boolean removeEldestEntry(Map.Entry<String,HighlightResult> e) {
+      return size() > RESULT_CACHE_SIZE;
+    }
+
+}	// end of inner class ResultCache
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Bracket highlighting support						*/
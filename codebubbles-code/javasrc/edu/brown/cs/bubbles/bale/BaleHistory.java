@@ -53,8 +53,6 @@ class BaleHistory {
 /*										*/
 /********************************************************************************/
 
-private static final char [] empty = new char[0];
-
 
 
 
@@ -71,9 +69,7 @@ private static final char [] empty = new char[0];
 /*										*/
 /********************************************************************************/
 
-static class BaleIdeContent extends GapContent {
-
-   private final static long serialVersionUID = 1;
+static class BaleIdeContent extends BaleRopeContent {
 
    BaleIdeContent(int len) {
       super(len);
@@ -83,8 +79,7 @@ static class BaleIdeContent extends GapContent {
 	if (where > length() || where < 0) {
 	   throw new BadLocationException("Invalid insert", length());
 	 }
-	char[] chars = str.toCharArray();
-	replace(where, 0, chars, chars.length);
+	super.insertString(where,str);
 	return new BaleInsertUndo(this,where,str.length());
     }
 
@@ -94,7 +89,7 @@ static class BaleIdeContent extends GapContent {
        }
       String removedString = getString(where, nitems);
       UndoableEdit edit = new BaleRemoveUndo(this,where, removedString);
-      replace(where, nitems, empty, 0);
+      super.remove(where,nitems);
       return edit;
     }
 
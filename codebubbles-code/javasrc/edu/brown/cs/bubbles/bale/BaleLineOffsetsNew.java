@@ -36,7 +36,9 @@ import javax.swing.text.Segment;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 
 class BaleLineOffsetsNew implements BaleConstants
@@ -49,11 +51,9 @@ class BaleLineOffsetsNew implements BaleConstants
 /*										*/
 /********************************************************************************/
 
-private int [] java_offset;
-private int max_java;
 private int newline_adjust;
-private int [] ide_offset;
-private int max_ide;
+private LineNode root_node;
+private Random random_gen;
 
 
 
@@ -66,18 +66,21 @@ private int max_ide;
 BaleLineOffsetsNew(String newline,Segment src,Reader input)
 {
    newline_adjust = newline.length() - 1;
-   java_offset = new int[128];
-   ide_offset = new int[128];
-   java_offset[0] = -1; 			     // dummy first element
-   ide_offset[0] = -1;
-   max_java = 1;
-   max_ide = 1;
-
-   setupSource(src);
-   setupIde(input,newline);
-
-   if (max_ide != max_java)
-      throw new IllegalArgumentException("Files don't match " + max_ide + " " + max_java);
+   random_gen = new Random();
+
+   List<LineNode> lines = new ArrayList<LineNode>();
+   lines.add(new LineNode(-1,-1,random_gen.nextInt()));	// dummy first element
+
+   setupSource(src,lines);
+   int ct = setupIde(input,newline,lines);
+
+   if (ct != lines.size())
+      throw new IllegalArgumentException("Files don't match " + ct + " " + lines.size());
+
+   root_node = null;
+   for (LineNode ln : lines) {
+      root_node = merge(root_node,ln);
+    }
 }
 
 
@@ -88,28 +91,27 @@ BaleLineOffsetsNew(String newline,Segment src,Reader input)
 /*										*/
 /********************************************************************************/
 
-private void setupSource(Segment sg)
+private void setupSource(Segment sg,List<LineNode> lines)
 {
-   addJava(0);
+   addJava(0,lines);
    int ln = sg.length();
    for (int i = 0; i < ln; ++i) {
-      if (sg.charAt(i) == '\n') addJava(i+1);
+      if (sg.charAt(i) == '\n') addJava(i+1,lines);
     }
 }
 
 
 
-private void addJava(int i)
+private void addJava(int i,List<LineNode> lines)
 {
-   grow(max_java+1);
-   java_offset[max_java++] = i;
+   lines.add(new LineNode(i,-1,random_gen.nextInt()));
 }
 
 
 
-private void setupIde(Reader r,String nl)
+private int setupIde(Reader r,String nl,List<LineNode> lines)
 {
-   addIde(0);
+   int ct = addIde(0,1,lines);
 
    boolean lastcr = false;
    try {
@@ -117,12 +119,12 @@ private void setupIde(Reader r,String nl)
 	 int ch = r.read();
 	 if (ch < 0) break;
 	 if (nl.equals("\r")) {
-	    if (ch == '\r') addIde(i+1);
+	    if (ch == '\r') ct = addIde(i+1,ct,lines);
 	  }
 	 else {
-	    if (ch == '\n') addIde(i+1);
+	    if (ch == '\n') ct = addIde(i+1,ct,lines);
 	    else if (lastcr)
-	       addIde(i);
+	       ct = addIde(i,ct,lines);
 	    lastcr = (ch == '\r');
 	  }
        }
@@ -131,14 +133,16 @@ private void setupIde(Reader r,String nl)
    catch (IOException e) {
       BoardLog.logE("BALE","Problem reading input file: " + e);
     }
+
+   return ct;
 }
 
 
 
-private void addIde(int i)
+private int addIde(int i,int ct,List<LineNode> lines)
 {
-   grow(max_ide+1);
-   ide_offset[max_ide++] = i;
+   if (ct < lines.size()) lines.get(ct).ide_offset = i;
+   return ct+1;
 }
 
 
@@ -164,38 +168,32 @@ synchronized void update(int soff,int eoff,String cnts)
    if (cnts != null) delta = cnts.length() - (eoff-soff);
    else delta = soff - eoff;
 
-   int xchar = ide_offset[idx1] - ide_offset[idx0] - (java_offset[idx1] - java_offset[idx0]);
+   LineNode n0 = select(idx0);
+   int java0 = n0.java_offset;
+   int ide0 = n0.ide_offset;
+   LineNode n1 = select(idx1);
+   int xchar = n1.ide_offset - ide0 - (n1.java_offset - java0);
    int idelta = delta - xchar + ct*newline_adjust;
 
-   grow(max_java + ct - oct);	     // ensure we fit
-   if (ct > oct) {
-      for (int i = max_java-1; i > idx1; --i) {
-	 java_offset[i+ct-oct] = java_offset[i] + delta;
-	 ide_offset[i+ct-oct] = ide_offset[i] + idelta;
-       }
-    }
-   else if (ct < oct || delta != 0) {
-      for (int i = idx1+1; i < max_java; ++i) {
-	 java_offset[i+ct-oct] = java_offset[i] + delta;
-	 ide_offset[i+ct-oct] = ide_offset[i] + idelta;
-       }
-    }
+   // lines idx0+1 .. idx1 are replaced by the new lines; later ones shift
 
-   max_java += ct-oct;
-   max_ide += ct-oct;
+   LineNode [] front = split(root_node,idx0+1);
+   LineNode [] back = split(front[1],oct);
+   shift(back[1],delta,idelta);
 
-   int ioff = soff - java_offset[idx0] + ide_offset[idx0];
+   int ioff = soff - java0 + ide0;
 
-   int idx2 = idx0+1;
+   LineNode ins = null;
    if (cnts != null) {
       int lct = newline_adjust;
       for (int idx = cnts.indexOf('\n'); idx >= 0; idx = cnts.indexOf('\n',idx+1)) {
-	 java_offset[idx2] = soff + idx + 1;
-	 ide_offset[idx2] = ioff + idx + 1 + lct;
-	 ++idx2;
+	 LineNode ln = new LineNode(soff + idx + 1,ioff + idx + 1 + lct,random_gen.nextInt());
+	 ins = merge(ins,ln);
 	 lct += newline_adjust;
        }
     }
+
+   root_node = merge(merge(front[0],ins),back[1]);
 }
 
 
@@ -208,11 +206,11 @@ synchronized void update(int soff,int eoff,String cnts)
 
 synchronized int findEclipseOffset(int off)
 {
-   int sidx = Arrays.binarySearch(java_offset,0,max_java,off);
-   if (sidx < 0) sidx = -sidx - 2;
-   if (sidx == 0) return off;
+   int sidx = findFloor(off,false);
+   if (sidx <= 0) return off;
 
-   int v0 = off - java_offset[sidx] + ide_offset[sidx];
+   LineNode ln = select(sidx);
+   int v0 = off - ln.java_offset + ln.ide_offset;
 
    return v0;
 }
@@ -221,12 +219,12 @@ synchronized int findEclipseOffset(int off)
 
 synchronized int findJavaOffset(int off)
 {
-   int sidx = Arrays.binarySearch(ide_offset,0,max_ide,off);
-   if (sidx < 0) sidx = -sidx - 2;
+   int sidx = findFloor(off,true);
 
-   if (sidx < 0) sidx = 0;
+   if (sidx <= 0) return off;
 
-   int v0 = (sidx == 0 ? off : off - ide_offset[sidx] + java_offset[sidx]);
+   LineNode ln = select(sidx);
+   int v0 = off - ln.ide_offset + ln.java_offset;
 
    return v0;
 }
@@ -241,50 +239,193 @@ synchronized int findJavaOffset(int off)
 
 synchronized int findOffset(int line)
 {
-   if (line < 0 || line >= max_java) return -1;
-   return java_offset[line];
+   if (line < 0 || line >= size(root_node)) return -1;
+   return select(line).java_offset;
 }
 
 
 
 synchronized int findLine(int off)
 {
-   int sidx = Arrays.binarySearch(java_offset,0,max_java,off);
-   if (sidx < 0) sidx = -sidx - 2;
-   return sidx;
+   return findFloor(off,false);
 }
 
 
 
 /********************************************************************************/
 /*										*/
-/*	Helper methods for maintaining the offset arrays			*/
+/*	Helper methods for maintaining the line tree				*/
 /*										*/
 /********************************************************************************/
 
 private int findIndex(int off)
 {
-   int sidx = Arrays.binarySearch(java_offset,0,max_java,off);
-   if (sidx > 0) return sidx;
-   sidx = -sidx - 2;
+   int sidx = findFloor(off,false);
    if (sidx < 0) sidx = 0;
    return sidx;
 }
 
 
 
+private int findFloor(int off,boolean ide)
+{
+   // index of the last line starting at or before off
+
+   int rslt = -1;
+   int base = 0;
+   LineNode n = root_node;
+   while (n != null) {
+      push(n);
+      int key = (ide ? n.ide_offset : n.java_offset);
+      if (key <= off) {
+	 rslt = base + size(n.left_child);
+	 base = rslt + 1;
+	 n = n.right_child;
+       }
+      else n = n.left_child;
+    }
+
+   return rslt;
+}
+
+
+
+private LineNode select(int idx)
+{
+   LineNode n = root_node;
+   while (n != null) {
+      push(n);
+      int ls = size(n.left_child);
+      if (idx < ls) n = n.left_child;
+      else if (idx == ls) return n;
+      else {
+	 idx -= ls + 1;
+	 n = n.right_child;
+       }
+    }
+
+   return null;
+}
+
+
+
+private LineNode [] split(LineNode t,int k)
+{
+   // split so that the first tree holds the first k lines
+
+   LineNode [] rslt = new LineNode[2];
+   if (t == null) return rslt;
+
+   push(t);
+   int ls = size(t.left_child);
+   if (ls < k) {
+      LineNode [] sub = split(t.right_child,k - ls - 1);
+      t.right_child = sub[0];
+      update(t);
+      rslt[0] = t;
+      rslt[1] = sub[1];
+    }
+   else {
+      LineNode [] sub = split(t.left_child,k);
+      t.left_child = sub[1];
+      update(t);
+      rslt[0] = sub[0];
+      rslt[1] = t;
+    }
+
+   return rslt;
+}
+
+
+
+private LineNode merge(LineNode a,LineNode b)
+{
+   if (a == null) return b;
+   if (b == null) return a;
+
+   if (a.node_priority > b.node_priority) {
+      push(a);
+      a.right_child = merge(a.right_child,b);
+      update(a);
+      return a;
+    }
+
+   push(b);
+   b.left_child = merge(a,b.left_child);
+   update(b);
+   return b;
+}
+
+
+
+private static void shift(LineNode n,int jdelta,int idelta)
+{
+   if (n == null) return;
+   n.java_offset += jdelta;
+   n.ide_offset += idelta;
+   n.java_delta += jdelta;
+   n.ide_delta += idelta;
+}
+
+
+
+private static void push(LineNode n)
+{
+   if (n.java_delta == 0 && n.ide_delta == 0) return;
+   shift(n.left_child,n.java_delta,n.ide_delta);
+   shift(n.right_child,n.java_delta,n.ide_delta);
+   n.java_delta = 0;
+   n.ide_delta = 0;
+}
+
+
+
+private static void update(LineNode n)
+{
+   n.node_count = 1 + size(n.left_child) + size(n.right_child);
+}
 
-private void grow(int max)
+
+
+private static int size(LineNode n)
 {
-   int sz = java_offset.length;
-   if (sz > max) return;
-   while (sz < max) sz *= 2;
-   java_offset = Arrays.copyOf(java_offset,sz);
-   ide_offset = Arrays.copyOf(ide_offset,sz);
+   return (n == null ? 0 : n.node_count);
 }
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Line start in both coordinate systems					*/
+/*										*/
+/********************************************************************************/
+
+private static class LineNode {
+
+   private int java_offset;
+   private int ide_offset;
+   private int java_delta;
+   private int ide_delta;
+   private int node_count;
+   private int node_priority;
+   private LineNode left_child;
+   private LineNode right_child;
+
+   LineNode(int joff,int ioff,int pri) {
+      java_offset = joff;
+      ide_offset = ioff;
+      java_delta = 0;
+      ide_delta = 0;
+      node_count = 1;
+      node_priority = pri;
+      left_child = null;
+      right_child = null;
+    }
+
+}	// end of inner class LineNode
+
+
+
 }	// end of class BaleLineOffsets
 
 
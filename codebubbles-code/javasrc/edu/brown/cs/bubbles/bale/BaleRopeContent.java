@@ -0,0 +1,716 @@
+/********************************************************************************/
+/*										*/
+/*		BaleRopeContent.java						*/
+/*										*/
+/*	Bubble Annotated Language Editor chunked rope document content		*/
+/*										*/
+/********************************************************************************/
+/*	Copyright 2009 Brown University -- Steven P. Reiss		      */
+/*********************************************************************************
+ *  Copyright 2011, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+/*	RCS: $Header$								*/
+
+/*********************************************************************************
+ *
+ * $Log$
+ *
+ ********************************************************************************/
+
+
+package edu.brown.cs.bubbles.bale;
+
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.UndoableEdit;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+
+class BaleRopeContent implements AbstractDocument.Content, BaleConstants
+{
+
+
+/********************************************************************************/
+/*										*/
+/*	Private Storage 							*/
+/*										*/
+/********************************************************************************/
+
+private Chunk		root_chunk;
+private int		edit_version;
+private Random		random_gen;
+private ReferenceQueue<StickyPosition> dead_marks;
+
+private static final int MAX_CHUNK = 2048;
+private static final int SPLIT_CHUNK = MAX_CHUNK/2;
+
+private static final char [] empty = new char[0];
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Constructors								*/
+/*										*/
+/********************************************************************************/
+
+BaleRopeContent(int len)
+{
+   random_gen = new Random();
+   dead_marks = new ReferenceQueue<StickyPosition>();
+   edit_version = 0;
+
+   char [] txt = new char[Math.max(16,Math.min(len,MAX_CHUNK))];
+   txt[0] = '\n';
+   root_chunk = new Chunk(txt,1,random_gen.nextInt());
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Content access methods							*/
+/*										*/
+/********************************************************************************/
+
+@Override public int length()
+{
+   return root_chunk.total_length;
+}
+
+
+
+@Override public void getChars(int where,int len,Segment txt) throws BadLocationException
+{
+   if (where < 0 || len < 0 || where + len > length()) {
+      throw new BadLocationException("Invalid location",length());
+    }
+
+   if (len == 0) {
+      txt.array = empty;
+      txt.offset = 0;
+      txt.count = 0;
+      return;
+    }
+
+   Chunk c = findChunk(where,false);
+   int rel = where - getStart(c);
+   if (rel + len <= c.chunk_length || txt.isPartialReturn()) {
+      txt.array = c.chunk_text;
+      txt.offset = rel;
+      txt.count = Math.min(len,c.chunk_length - rel);
+      return;
+    }
+
+   char [] buf = new char[len];
+   int pos = 0;
+   while (pos < len) {
+      int ct = Math.min(len - pos,c.chunk_length - rel);
+      System.arraycopy(c.chunk_text,rel,buf,pos,ct);
+      pos += ct;
+      rel = 0;
+      c = nextChunk(c);
+    }
+
+   txt.array = buf;
+   txt.offset = 0;
+   txt.count = len;
+}
+
+
+
+@Override public String getString(int where,int len) throws BadLocationException
+{
+   Segment s = new Segment();
+   getChars(where,len,s);
+   return new String(s.array,s.offset,s.count);
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Editing methods 							*/
+/*										*/
+/********************************************************************************/
+
+@Override public UndoableEdit insertString(int where,String str) throws BadLocationException
+{
+   if (where > length() || where < 0) {
+      throw new BadLocationException("Invalid insert",length());
+    }
+
+   int n = str.length();
+   if (n == 0) return null;
+
+   removeDeadMarks();
+
+   Chunk c = findChunk(where,true);
+   int cstart = getStart(c);
+   int rel = where - cstart;
+   ++edit_version;
+
+   c.shiftMarks(rel,n,where == 0);
+
+   if (c.chunk_length + n <= MAX_CHUNK) {
+      c.ensureCapacity(c.chunk_length + n);
+      System.arraycopy(c.chunk_text,rel,c.chunk_text,rel+n,c.chunk_length-rel);
+      str.getChars(0,n,c.chunk_text,rel);
+      c.chunk_length += n;
+      for (Chunk p = c; p != null; p = p.parent_chunk) p.total_length += n;
+    }
+   else {
+      char [] buf = new char[c.chunk_length + n];
+      System.arraycopy(c.chunk_text,0,buf,0,rel);
+      str.getChars(0,n,buf,rel);
+      System.arraycopy(c.chunk_text,rel,buf,rel+n,c.chunk_length-rel);
+      Mark [] marks = c.takeMarks();
+      replaceChunks(cstart,cstart+c.chunk_length,buildChunks(buf,marks));
+    }
+
+   ++edit_version;
+
+   return null;
+}
+
+
+
+@Override public UndoableEdit remove(int where,int nitems) throws BadLocationException
+{
+   if (where + nitems >= length()) {
+      throw new BadLocationException("Invalid remove",length() + 1);
+    }
+   if (nitems <= 0) return null;
+
+   removeDeadMarks();
+
+   Chunk f = findChunk(where,false);
+   int fstart = getStart(f);
+   int rel = where - fstart;
+   int end = where + nitems;
+   ++edit_version;
+
+   if (end - fstart < f.chunk_length || (rel > 0 && end - fstart == f.chunk_length)) {
+      // removal stays inside a single chunk that remains non-empty
+      System.arraycopy(f.chunk_text,rel+nitems,f.chunk_text,rel,f.chunk_length-rel-nitems);
+      f.chunk_length -= nitems;
+      f.collapseMarks(rel,nitems);
+      for (Chunk p = f; p != null; p = p.parent_chunk) p.total_length -= nitems;
+    }
+   else {
+      // collect the chunks spanned by the removal and rebuild what is left
+      List<Mark> marks = new ArrayList<Mark>();
+      int lstart = fstart;
+      Chunk l = f;
+      for ( ; ; ) {
+	 for (Mark m : l.takeMarks()) {
+	    int off = lstart + m.mark_offset;
+	    if (off > end) off -= nitems;
+	    else if (off > where) off = where;
+	    m.mark_offset = off - fstart;
+	    marks.add(m);
+	  }
+	 if (lstart + l.chunk_length >= end) break;
+	 lstart += l.chunk_length;
+	 l = nextChunk(l);
+       }
+      int lend = lstart + l.chunk_length;
+      int erel = end - lstart;
+      char [] buf = new char[rel + l.chunk_length - erel];
+      System.arraycopy(f.chunk_text,0,buf,0,rel);
+      System.arraycopy(l.chunk_text,erel,buf,rel,l.chunk_length - erel);
+      Mark [] marr = marks.toArray(new Mark[marks.size()]);
+      if (buf.length > 0) {
+	 replaceChunks(fstart,lend,buildChunks(buf,marr));
+       }
+      else {
+	 // all marks are at where; they move to the start of the next chunk
+	 Chunk nxt = nextChunk(l);
+	 replaceChunks(fstart,lend,null);
+	 nxt.prependMarks(marr);
+       }
+    }
+
+   ++edit_version;
+
+   return null;
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Position methods							*/
+/*										*/
+/********************************************************************************/
+
+@Override public Position createPosition(int offset) throws BadLocationException
+{
+   removeDeadMarks();
+
+   if (offset < 0) offset = 0;
+   else if (offset > length()) offset = length();
+
+   Chunk c = findChunk(offset,true);
+   int rel = offset - getStart(c);
+   StickyPosition p = c.findPosition(rel);
+   if (p != null) return p;
+
+   p = new StickyPosition();
+   Mark m = new Mark(p,dead_marks);
+   p.position_mark = m;
+   c.addMark(m,rel);
+
+   return p;
+}
+
+
+
+protected Vector<?> getPositionsInRange(Vector<?> v,int offset,int length)
+{
+   @SuppressWarnings("unchecked")
+   Vector<Object> rslt = (v == null ? new Vector<Object>() : (Vector<Object>) v);
+
+   int end = offset + length;
+   for (Chunk c = findChunk(offset,true); c != null; c = nextChunk(c)) {
+      int cstart = getStart(c);
+      if (cstart > end) break;
+      for (int i = c.findMark(offset - cstart); i < c.num_marks; ++i) {
+	 Mark m = c.chunk_marks[i];
+	 int off = cstart + m.mark_offset;
+	 if (off > end) break;
+	 rslt.addElement(new UndoPosRef(m,off));
+       }
+    }
+
+   return rslt;
+}
+
+
+
+protected void updateUndoPositions(Vector<?> positions,int offset,int length)
+{
+   for (int i = positions.size() - 1; i >= 0; --i) {
+      UndoPosRef ref = (UndoPosRef) positions.elementAt(i);
+      Mark m = ref.undo_mark;
+      if (m.get() == null || m.mark_chunk == null) continue;
+      m.mark_chunk.removeMark(m);
+      Chunk c = findChunk(ref.undo_location,true);
+      c.addMark(m,ref.undo_location - getStart(c));
+    }
+}
+
+
+
+private void removeDeadMarks()
+{
+   for ( ; ; ) {
+      Reference<? extends StickyPosition> r = dead_marks.poll();
+      if (r == null) break;
+      Mark m = (Mark) r;
+      if (m.mark_chunk != null) m.mark_chunk.removeMark(m);
+    }
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Tree methods								*/
+/*										*/
+/********************************************************************************/
+
+private Chunk findChunk(int off,boolean atend)
+{
+   // atend: prefer the chunk ending at off over the one starting there
+
+   Chunk c = root_chunk;
+   int start = 0;
+   for ( ; ; ) {
+      int ls = size(c.left_child);
+      if (off < ls || (atend && off == ls && c.left_child != null)) {
+	 c = c.left_child;
+	 continue;
+       }
+      off -= ls;
+      start += ls;
+      if (off < c.chunk_length || (atend && off == c.chunk_length) || c.right_child == null) {
+	 c.cached_start = new ChunkStart(start,edit_version);
+	 return c;
+       }
+      off -= c.chunk_length;
+      start += c.chunk_length;
+      c = c.right_child;
+    }
+}
+
+
+
+private int getStart(Chunk c)
+{
+   // readers can race to set this; the holder keeps offset and version together
+   ChunkStart cs = c.cached_start;
+   if (cs != null && cs.edit_version == edit_version) return cs.start_offset;
+
+   int start = size(c.left_child);
+   for (Chunk p = c; p.parent_chunk != null; p = p.parent_chunk) {
+      Chunk pp = p.parent_chunk;
+      if (pp.right_child == p) start += size(pp.left_child) + pp.chunk_length;
+    }
+
+   c.cached_start = new ChunkStart(start,edit_version);
+
+   return start;
+}
+
+
+
+private Chunk nextChunk(Chunk c)
+{
+   if (c.right_child != null) {
+      c = c.right_child;
+      while (c.left_child != null) c = c.left_child;
+      return c;
+    }
+
+   while (c.parent_chunk != null && c.parent_chunk.right_child == c) c = c.parent_chunk;
+
+   return c.parent_chunk;
+}
+
+
+
+private void replaceChunks(int start,int end,Chunk rep)
+{
+   Chunk [] lr = split(root_chunk,start);
+   Chunk [] mr = split(lr[1],end - start);
+   root_chunk = merge(merge(lr[0],rep),mr[1]);
+   root_chunk.parent_chunk = null;
+}
+
+
+
+private Chunk buildChunks(char [] buf,Mark [] marks)
+{
+   int len = buf.length;
+   int np = (len + SPLIT_CHUNK - 1) / SPLIT_CHUNK;
+   Chunk [] pcs = new Chunk[np];
+   Chunk rslt = null;
+   for (int i = 0; i < np; ++i) {
+      int s = pieceStart(i,np,len);
+      int e = pieceStart(i+1,np,len);
+      pcs[i] = new Chunk(Arrays.copyOfRange(buf,s,e),e-s,random_gen.nextInt());
+      rslt = merge(rslt,pcs[i]);
+    }
+
+   int k = 0;
+   for (Mark m : marks) {
+      int off = m.mark_offset;
+      while (k+1 < np && pieceStart(k+1,np,len) <= off) ++k;
+      pcs[k].appendMark(m,off - pieceStart(k,np,len));
+    }
+
+   return rslt;
+}
+
+
+
+private static int pieceStart(int i,int np,int len)
+{
+   return (int) (((long) i * len) / np);
+}
+
+
+
+private Chunk [] split(Chunk t,int k)
+{
+   // split so that the first tree holds exactly k characters
+
+   Chunk [] rslt = new Chunk[2];
+   if (t == null) return rslt;
+
+   int ls = size(t.left_child);
+   if (ls + t.chunk_length <= k) {
+      Chunk [] sub = split(t.right_child,k - ls - t.chunk_length);
+      t.right_child = sub[0];
+      update(t);
+      rslt[0] = t;
+      rslt[1] = sub[1];
+    }
+   else {
+      Chunk [] sub = split(t.left_child,k);
+      t.left_child = sub[1];
+      update(t);
+      rslt[0] = sub[0];
+      rslt[1] = t;
+    }
+
+   return rslt;
+}
+
+
+
+private Chunk merge(Chunk a,Chunk b)
+{
+   if (a == null) return b;
+   if (b == null) return a;
+
+   if (a.chunk_priority > b.chunk_priority) {
+      a.right_child = merge(a.right_child,b);
+      update(a);
+      return a;
+    }
+
+   b.left_child = merge(a,b.left_child);
+   update(b);
+   return b;
+}
+
+
+
+private static void update(Chunk c)
+{
+   c.total_length = size(c.left_child) + c.chunk_length + size(c.right_child);
+   if (c.left_child != null) c.left_child.parent_chunk = c;
+   if (c.right_child != null) c.right_child.parent_chunk = c;
+   c.parent_chunk = null;
+}
+
+
+
+private static int size(Chunk c)
+{
+   return (c == null ? 0 : c.total_length);
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Cached start offset of a chunk						*/
+/*										*/
+/********************************************************************************/
+
+private static class ChunkStart {
+
+   private final int start_offset;
+   private final int edit_version;
+
+   ChunkStart(int off,int ver) {
+      start_offset = off;
+      edit_version = ver;
+    }
+
+}	// end of inner class ChunkStart
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Chunk of text with the marks inside it					*/
+/*										*/
+/********************************************************************************/
+
+private static class Chunk {
+
+   private char [] chunk_text;
+   private int chunk_length;
+   private int total_length;
+   private int chunk_priority;
+   private Chunk left_child;
+   private Chunk right_child;
+   private Chunk parent_chunk;
+   private Mark [] chunk_marks;
+   private int num_marks;
+   private volatile ChunkStart cached_start;
+
+   Chunk(char [] txt,int len,int pri) {
+      chunk_text = txt;
+      chunk_length = len;
+      total_length = len;
+      chunk_priority = pri;
+      left_child = null;
+      right_child = null;
+      parent_chunk = null;
+      chunk_marks = null;
+      num_marks = 0;
+      cached_start = null;
+    }
+
+   void ensureCapacity(int len) {
+      if (chunk_text.length >= len) return;
+      int sz = Math.min(MAX_CHUNK,Math.max(len,chunk_text.length*2));
+      chunk_text = Arrays.copyOf(chunk_text,sz);
+    }
+
+   int findMark(int off) {
+      // index of the first mark at or after off
+      int lo = 0;
+      int hi = num_marks;
+      while (lo < hi) {
+	 int mid = (lo + hi) >>> 1;
+	 if (chunk_marks[mid].mark_offset < off) lo = mid+1;
+	 else hi = mid;
+       }
+      return lo;
+    }
+
+   StickyPosition findPosition(int off) {
+      for (int i = findMark(off); i < num_marks; ++i) {
+	 Mark m = chunk_marks[i];
+	 if (m.mark_offset != off) break;
+	 StickyPosition p = m.get();
+	 if (p != null) return p;
+       }
+      return null;
+    }
+
+   void addMark(Mark m,int off) {
+      m.mark_offset = off;
+      insertMark(findMark(off),m);
+    }
+
+   void appendMark(Mark m,int off) {
+      m.mark_offset = off;
+      insertMark(num_marks,m);
+    }
+
+   void prependMarks(Mark [] marks) {
+      for (int i = marks.length-1; i >= 0; --i) {
+	 marks[i].mark_offset = 0;
+	 insertMark(0,marks[i]);
+       }
+    }
+
+   private void insertMark(int idx,Mark m) {
+      if (chunk_marks == null) chunk_marks = new Mark[4];
+      else if (num_marks >= chunk_marks.length) {
+	 chunk_marks = Arrays.copyOf(chunk_marks,chunk_marks.length*2);
+       }
+      System.arraycopy(chunk_marks,idx,chunk_marks,idx+1,num_marks-idx);
+      chunk_marks[idx] = m;
+      m.mark_chunk = this;
+      ++num_marks;
+    }
+
+   void removeMark(Mark m) {
+      for (int i = findMark(m.mark_offset); i < num_marks; ++i) {
+	 if (chunk_marks[i] == m) {
+	    System.arraycopy(chunk_marks,i+1,chunk_marks,i,num_marks-i-1);
+	    chunk_marks[--num_marks] = null;
+	    m.mark_chunk = null;
+	    return;
+	  }
+	 if (chunk_marks[i].mark_offset != m.mark_offset) break;
+       }
+    }
+
+   Mark [] takeMarks() {
+      Mark [] rslt = new Mark[num_marks];
+      if (num_marks > 0) System.arraycopy(chunk_marks,0,rslt,0,num_marks);
+      chunk_marks = null;
+      num_marks = 0;
+      return rslt;
+    }
+
+   void shiftMarks(int off,int len,boolean atzero) {
+      // positions at the insertion point move with the text, except at 0
+      for (int i = findMark(off); i < num_marks; ++i) {
+	 Mark m = chunk_marks[i];
+	 if (m.mark_offset > off || !atzero) m.mark_offset += len;
+       }
+    }
+
+   void collapseMarks(int off,int len) {
+      for (int i = findMark(off); i < num_marks; ++i) {
+	 Mark m = chunk_marks[i];
+	 if (m.mark_offset > off + len) m.mark_offset -= len;
+	 else m.mark_offset = off;
+       }
+    }
+
+}	// end of inner class Chunk
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Position classes							*/
+/*										*/
+/********************************************************************************/
+
+private static class Mark extends WeakReference<StickyPosition> {
+
+   private Chunk mark_chunk;
+   private int mark_offset;
+
+   Mark(StickyPosition p,ReferenceQueue<StickyPosition> q) {
+      super(p,q);
+      mark_chunk = null;
+      mark_offset = 0;
+    }
+
+}	// end of inner class Mark
+
+
+
+private final class StickyPosition implements Position {
+
+   private Mark position_mark;
+
+   @Override public int getOffset() {
+      Mark m = position_mark;
+      Chunk c = m.mark_chunk;
+      if (c == null) return 0;
+      return getStart(c) + m.mark_offset;
+    }
+
+   @Override public String toString() {
+      return Integer.toString(getOffset());
+    }
+
+}	// end of inner class StickyPosition
+
+
+
+private static class UndoPosRef {
+
+   private Mark undo_mark;
+   private int undo_location;
+
+   UndoPosRef(Mark m,int loc) {
+      undo_mark = m;
+      undo_location = loc;
+    }
+
+}	// end of inner class UndoPosRef
+
+
+
+}	// end of class BaleRopeContent
+
+
+
+
+/*	end of BaleRopeContent.java						*/
@@ -46,7 +46,7 @@ abstract class BaleTokenizer implements BaleConstants
 /*										*/
 /********************************************************************************/
 
-private String		input_text;
+private CharSequence	input_text;
 private int		cur_offset;
 private int		end_offset;
 private BaleTokenState	token_state;
@@ -60,6 +60,15 @@ private static Set<String>	python_op_set;
 private static Map<String,BaleTokenType> js_keyword_map;
 private static Set<String>	js_op_set;
 
+private static final KeywordTable java_keywords;
+private static final KeywordTable java_operators;
+private static final KeywordTable python_keywords;
+private static final KeywordTable python_operators;
+private static final KeywordTable js_keywords;
+private static final KeywordTable js_operators;
+
+private static final BaleTokenType [] TOKEN_TYPES = BaleTokenType.values();
+
 private static final String OP_CHARS = "=<!~?:>|&+-*/^%\\";
 
 
@@ -71,7 +80,7 @@ private static final String OP_CHARS = "=<!~?:>|&+-*/^%\\";
 /*										*/
 /********************************************************************************/
 
-static BaleTokenizer create(String text,BaleTokenState start,BoardLanguage bl)
+static BaleTokenizer create(CharSequence text,BaleTokenState start,BoardLanguage bl)
 {
    switch (bl) {
       default :
@@ -87,7 +96,7 @@ static BaleTokenizer create(String text,BaleTokenState start,BoardLanguage bl)
 
 
 
-private BaleTokenizer(String text,BaleTokenState start)
+private BaleTokenizer(CharSequence text,BaleTokenState start)
 {
    input_text = (text == null ? "" : text);
    cur_offset = 0;
@@ -107,8 +116,8 @@ private BaleTokenizer(String text,BaleTokenState start)
 
 void setIgnoreWhitespace(boolean fg)		{ ignore_white = fg; }
 
-abstract protected BaleTokenType getKeyword(String s);
-abstract protected boolean isOperator(String s);
+abstract protected KeywordTable getKeywordTable();
+abstract protected KeywordTable getOperatorTable();
 abstract protected boolean useSlashStarComments();
 abstract protected boolean useSlashSlashComments();
 abstract protected boolean useHashComments();
@@ -136,12 +145,14 @@ static Collection<String> getKeywords(BoardLanguage bl)
 /*										*/
 /********************************************************************************/
 
-List<BaleToken> scan()
+TokenBuffer scan(TokenBuffer rslt)
 {
-   List<BaleToken> rslt = new ArrayList<BaleToken>();
+   if (rslt == null) rslt = new TokenBuffer();
+   rslt.clear();
 
    while (cur_offset < end_offset) {
-      rslt.add(getNextToken());
+      BaleTokenType tt = nextToken();
+      rslt.add(tt,token_start,cur_offset);
     }
 
    return rslt;
@@ -194,6 +205,15 @@ BaleToken getNextToken(int start,int end,BaleTokenState st)
 /********************************************************************************/
 
 BaleToken getNextToken()
+{
+   BaleTokenType tt = nextToken();
+
+   return new Token(tt,token_start,cur_offset);
+}
+
+
+
+private BaleTokenType nextToken()
 {
    token_start = cur_offset;
 
@@ -226,9 +246,9 @@ BaleToken getNextToken()
    if (ch == '\r') {
       ch = nextChar();
       if (ch != '\n') backup();
-      return buildToken(BaleTokenType.EOL);
+      return BaleTokenType.EOL;
     }
-   else if (ch == '\n') return buildToken(BaleTokenType.EOL);
+   else if (ch == '\n') return BaleTokenType.EOL;
    else if (Character.isWhitespace(ch)) {
       for ( ; ; ) {
 	 ch = nextChar();
@@ -236,7 +256,7 @@ BaleToken getNextToken()
 	    break;
        }
       backup();
-      return buildToken(BaleTokenType.SPACE);
+      return BaleTokenType.SPACE;
     }
    else if (Character.isJavaIdentifierStart(ch)) {
       for ( ; ; ) {
@@ -244,10 +264,9 @@ BaleToken getNextToken()
 	 if (ch < 0 || ch == 0xffff || !Character.isJavaIdentifierPart(ch)) break;
        }
       backup();
-      String text = getInputString(token_start,cur_offset);
-      BaleTokenType tt = getKeyword(text);
-      if (tt != null) return buildToken(tt);
-      else return buildToken(BaleTokenType.IDENTIFIER);
+      BaleTokenType tt = getKeywordTable().lookup(input_text,token_start,cur_offset);
+      if (tt != null) return tt;
+      else return BaleTokenType.IDENTIFIER;
     }
    else if (Character.isDigit(ch)) {
       if (ch == '0') {
@@ -260,8 +279,8 @@ BaleToken getNextToken()
 	       ++ct;
 	     }
 	    backup();
-	    if (ct == 0) return buildToken(BaleTokenType.BADNUMBER);
-	    return buildToken(BaleTokenType.NUMBER);
+	    if (ct == 0) return BaleTokenType.BADNUMBER;
+	    return BaleTokenType.NUMBER;
 	  }
 	 backup();
        }
@@ -270,11 +289,11 @@ BaleToken getNextToken()
 	 if (!Character.isDigit(ch)) break;
        }
       if (ch == 'l' || ch == 'L' || ch == 'f' || ch == 'F' || ch == 'd' || ch == 'D') {
-	 return buildToken(BaleTokenType.NUMBER);
+	 return BaleTokenType.NUMBER;
        }
       else if (ch != '.' && ch != 'e' || ch != 'E') {
 	 backup();
-	 return buildToken(BaleTokenType.NUMBER);
+	 return BaleTokenType.NUMBER;
        }
       else {
 	 int ct = 1;
@@ -295,8 +314,8 @@ BaleToken getNextToken()
 	     }
 	  }
 	 if (ch != 'f' && ch != 'F' && ch != 'd' && ch != 'D') backup();
-	 if (ct == 0) return buildToken(BaleTokenType.BADNUMBER);
-	 return buildToken(BaleTokenType.NUMBER);
+	 if (ct == 0) return BaleTokenType.BADNUMBER;
+	 return BaleTokenType.NUMBER;
        }
     }
    else if (ch == '"') {
@@ -319,16 +338,16 @@ BaleToken getNextToken()
    else if (ch == '\'') {
       for ( ; ; ) {
 	 ch = nextChar();
-	 if (ch == '\'') return buildToken(BaleTokenType.CHARLITERAL);
+	 if (ch == '\'') return BaleTokenType.CHARLITERAL;
 	 else if (ch == '\n' || ch == '\r' || ch == 0xffff) {
 	    backup();
-	    return buildToken(BaleTokenType.BADCHARLIT);
+	    return BaleTokenType.BADCHARLIT;
 	  }
 	 else if (ch == '\\') {
 	    ch = nextChar();
 	    if (ch == '\n' || ch == '\r' || ch == 0xffff) {
 	       backup();
-	       return buildToken(BaleTokenType.BADCHARLIT);
+	       return BaleTokenType.BADCHARLIT;
 	     }
 	  }
        }
@@ -357,52 +376,51 @@ BaleToken getNextToken()
        }
       else {
 	 if (ch != '=') backup();
-	 return buildToken(BaleTokenType.OP);		     // / or /=
+	 return BaleTokenType.OP;		     // / or /=
        }
 
     }
-   else if (ch == '{') return buildToken(BaleTokenType.LBRACE);
-   else if (ch == '}') return buildToken(BaleTokenType.RBRACE);
-   else if (ch == '(') return buildToken(BaleTokenType.LPAREN);
-   else if (ch == ')') return buildToken(BaleTokenType.RPAREN);
-   else if (ch == '[') return buildToken(BaleTokenType.LBRACKET);
-   else if (ch == ']') return buildToken(BaleTokenType.RBRACKET);
-   else if (ch == ';') return buildToken(BaleTokenType.SEMICOLON);
-   else if (ch == ',') return buildToken(BaleTokenType.COMMA);
-   else if (ch == '\\') return buildToken(BaleTokenType.BACKSLASH);
+   else if (ch == '{') return BaleTokenType.LBRACE;
+   else if (ch == '}') return BaleTokenType.RBRACE;
+   else if (ch == '(') return BaleTokenType.LPAREN;
+   else if (ch == ')') return BaleTokenType.RPAREN;
+   else if (ch == '[') return BaleTokenType.LBRACKET;
+   else if (ch == ']') return BaleTokenType.RBRACKET;
+   else if (ch == ';') return BaleTokenType.SEMICOLON;
+   else if (ch == ',') return BaleTokenType.COMMA;
+   else if (ch == '\\') return BaleTokenType.BACKSLASH;
    else if (ch == '.') {
       if (nextChar() == '.') {
-	 if (nextChar() == '.') return buildToken(BaleTokenType.OP);
+	 if (nextChar() == '.') return BaleTokenType.OP;
 	 else backup();
        }
       else backup();
-      return buildToken(BaleTokenType.DOT);
+      return BaleTokenType.DOT;
     }
-   else if (ch == '@') return buildToken(BaleTokenType.AT);
-   else if (ch == '?') return buildToken(BaleTokenType.QUESTIONMARK);
-   else if (ch == '<') return buildToken(BaleTokenType.LANGLE);
-   else if (ch == '>') return buildToken(BaleTokenType.RANGLE);
-   else if (ch == ':') return buildToken(BaleTokenType.COLON);
+   else if (ch == '@') return BaleTokenType.AT;
+   else if (ch == '?') return BaleTokenType.QUESTIONMARK;
+   else if (ch == '<') return BaleTokenType.LANGLE;
+   else if (ch == '>') return BaleTokenType.RANGLE;
+   else if (ch == ':') return BaleTokenType.COLON;
    else if (OP_CHARS.indexOf(ch) >= 0) {
       boolean eql = (ch == '=');
       for ( ; ; ) {
 	 ch = nextChar();
 	 if (ch < 0 || ch == 0xffff || OP_CHARS.indexOf(ch) < 0) break;
-	 String op = getInputString(token_start,cur_offset);
-	 if (!isOperator(op)) break;
+	 if (getOperatorTable().lookup(input_text,token_start,cur_offset) == null) break;
 	 eql = (ch == '=');
        }
       backup();
-      if (eql) return buildToken(BaleTokenType.EQUAL);
-      return buildToken(BaleTokenType.OP);
+      if (eql) return BaleTokenType.EQUAL;
+      return BaleTokenType.OP;
     }
-   else if (ch == -1 || ch == 0xffff) return buildToken(BaleTokenType.EOF);
+   else if (ch == -1 || ch == 0xffff) return BaleTokenType.EOF;
 
-   return buildToken(BaleTokenType.OTHER);
+   return BaleTokenType.OTHER;
 }
 
 
-private Token scanLineComment()    //added by amc6
+private BaleTokenType scanLineComment()    //added by amc6
 {
    token_state = BaleTokenState.IN_LINE_COMMENT;
 
@@ -412,7 +430,7 @@ private Token scanLineComment()    //added by amc6
 	 if (ch < 0 || ch == '\n' || ch == '\r' || ch == 0xffff) {
 	    backup();
 	    token_state = BaleTokenState.NORMAL;
-	    return buildToken(BaleTokenType.LINECOMMENT);
+	    return BaleTokenType.LINECOMMENT;
 	  }
 	 else if (Character.isWhitespace(ch)) {
 	    for ( ; ; ) {
@@ -420,14 +438,14 @@ private Token scanLineComment()    //added by amc6
 	       if (ch < 0 || ch == 0xffff || ch == '\n' || ch == '\r' || !Character.isWhitespace(ch)) break;
 	     }
 	    backup();
-	    return buildToken(BaleTokenType.LINECOMMENT);
+	    return BaleTokenType.LINECOMMENT;
 	  }
 	 else {
 	    for ( ; ; ) {
 	       ch = nextChar();
 	       if (ch < 0 || ch == '\n' || ch == 0xffff || ch == '\r' || Character.isWhitespace(ch)) {
 		  backup();
-		  return buildToken(BaleTokenType.LINECOMMENT);
+		  return BaleTokenType.LINECOMMENT;
 		}
 	     }
 	  }
@@ -440,12 +458,12 @@ private Token scanLineComment()    //added by amc6
        }
       backup();
       token_state = BaleTokenState.NORMAL;
-      return buildToken(BaleTokenType.LINECOMMENT);
+      return BaleTokenType.LINECOMMENT;
     }
 }
 
 
-private Token scanComment(boolean formalstart)
+private BaleTokenType scanComment(boolean formalstart)
 {
    boolean havestar = false;
    boolean formal = false;
@@ -455,22 +473,22 @@ private Token scanComment(boolean formalstart)
       char ch = nextChar();
       if (havestar && ch == '/') {
 	 token_state = BaleTokenState.NORMAL;
-	 if (formal) return buildToken(BaleTokenType.ENDFORMALCOMMENT);
-	 else return buildToken(BaleTokenType.ENDCOMMENT);
+	 if (formal) return BaleTokenType.ENDFORMALCOMMENT;
+	 else return BaleTokenType.ENDCOMMENT;
        }
       else if (ch < 0 || ch == '\n' || ch == 0xffff) {
 	 if (formalstart) token_state = BaleTokenState.IN_FORMAL_COMMENT;
 	 else token_state = BaleTokenState.IN_COMMENT;
-	 if (formalstart) return buildToken(BaleTokenType.EOLFORMALCOMMENT);
-	 else return buildToken(BaleTokenType.EOLCOMMENT);
+	 if (formalstart) return BaleTokenType.EOLFORMALCOMMENT;
+	 else return BaleTokenType.EOLCOMMENT;
        }
       else if (ch == '\r') {
 	 ch = nextChar();
 	 if (ch != '\n') backup();
 	 if (formalstart) token_state = BaleTokenState.IN_FORMAL_COMMENT;
 	 else token_state = BaleTokenState.IN_COMMENT;
-	 if (formal) return buildToken(BaleTokenType.EOLFORMALCOMMENT);
-	 else return buildToken(BaleTokenType.EOLCOMMENT);
+	 if (formal) return BaleTokenType.EOLFORMALCOMMENT;
+	 else return BaleTokenType.EOLCOMMENT;
        }
       else if (ch == '*') havestar = true;
       else {  //added by amc6
@@ -486,8 +504,8 @@ private Token scanComment(boolean formalstart)
 		  if (ch < 0 || ch == 0xffff || ch == '\n' || ch == '\r' || !Character.isWhitespace(ch)) break;
 		}
 	       backup();
-	       if (formal) return buildToken(BaleTokenType.ENDFORMALCOMMENT);
-	       else return buildToken(BaleTokenType.ENDCOMMENT);
+	       if (formal) return BaleTokenType.ENDFORMALCOMMENT;
+	       else return BaleTokenType.ENDCOMMENT;
 	     }
 	  }
        }
@@ -496,7 +514,7 @@ private Token scanComment(boolean formalstart)
 
 
 
-private Token scanString()
+private BaleTokenType scanString()
 {
    int havetext = 0;
 
@@ -504,19 +522,19 @@ private Token scanString()
       char ch = nextChar();
       if (ch == '"') {
 	 token_state = BaleTokenState.NORMAL;
-	 return buildToken(BaleTokenType.STRING);
+	 return BaleTokenType.STRING;
       }
       else if (ch == '\n' || ch == '\r' || ch == 0xffff) {
 	 backup();
 	 token_state = BaleTokenState.NORMAL;
-	 return buildToken(BaleTokenType.BADSTRING);
+	 return BaleTokenType.BADSTRING;
        }
       else if (ch == '\\') {
 	 ch = nextChar();
 	 if (ch == '\n' || ch == '\r' || ch == 0xffff) {
 	    backup();
 	    token_state = BaleTokenState.NORMAL;
-	    return buildToken(BaleTokenType.BADSTRING);
+	    return BaleTokenType.BADSTRING;
 	  }
        }
       else if (BALE_PROPERTIES.getBoolean(STRING_WRAPPING)) {
@@ -524,7 +542,7 @@ private Token scanString()
 	    if (havetext > 0) {
 	       backup();
 	       token_state = BaleTokenState.IN_STRING;
-	       return buildToken(BaleTokenType.STRING);
+	       return BaleTokenType.STRING;
 	     }
 	  }
 	 else ++havetext;
@@ -534,7 +552,7 @@ private Token scanString()
 
 
 
-private Token scanMultiLineString()
+private BaleTokenType scanMultiLineString()
 {
    int fnd = 0;
 
@@ -542,22 +560,22 @@ private Token scanMultiLineString()
       char ch = nextChar();
       if (ch == '"') {
 	 token_state = BaleTokenState.NORMAL;
-	 if (++fnd == 3) return buildToken(BaleTokenType.LONGSTRING);
+	 if (++fnd == 3) return BaleTokenType.LONGSTRING;
        }
       else fnd = 0;
       if (ch < 0 || ch == 0xffff) {
 	 token_state = BaleTokenState.NORMAL;
-	 return buildToken(BaleTokenType.BADSTRING);
+	 return BaleTokenType.BADSTRING;
        }
       else if (ch == '\n') {
 	 token_state = BaleTokenState.IN_MULTILINE_STRING;
-	 return buildToken(BaleTokenType.LONGSTRING);
+	 return BaleTokenType.LONGSTRING;
        }
       else if (ch == '\r') {
 	 ch = nextChar();
 	 if (ch != '\n') backup();
 	 token_state = BaleTokenState.IN_MULTILINE_STRING;
-	 return buildToken(BaleTokenType.LONGSTRING);
+	 return BaleTokenType.LONGSTRING;
        }
     }
 }
@@ -589,26 +607,6 @@ private void backup()
 
 
 
-private String getInputString(int start,int end)
-{
-   return input_text.substring(start,end);
-}
-
-
-
-/********************************************************************************/
-/*										*/
-/*	Token building methods							*/
-/*										*/
-/********************************************************************************/
-
-private Token buildToken(BaleTokenType t)
-{
-   return new Token(t,token_start,cur_offset);
-}
-
-
-
 /********************************************************************************/
 /*										*/
 /*	Token subclass								*/
@@ -635,6 +633,127 @@ private static class Token implements BaleToken {
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Packed token buffer							*/
+/*										*/
+/********************************************************************************/
+
+static class TokenBuffer {
+
+   private int [] token_starts;
+   private int [] token_lengths;
+   private byte [] token_types;
+   private int num_tokens;
+
+   private static final int INITIAL_SIZE = 256;
+   private static final int MAX_RETAINED = 1<<16;
+
+   TokenBuffer() {
+      allocate(INITIAL_SIZE);
+    }
+
+   int size()					{ return num_tokens; }
+   int getStartOffset(int i)			{ return token_starts[i]; }
+   int getLength(int i) 			{ return token_lengths[i]; }
+   BaleTokenType getType(int i) 		{ return TOKEN_TYPES[token_types[i]]; }
+
+   void clear() {
+      num_tokens = 0;
+      if (token_starts.length > MAX_RETAINED) allocate(INITIAL_SIZE);
+    }
+
+   private void add(BaleTokenType tt,int soff,int eoff) {
+      if (num_tokens >= token_starts.length) {
+	 int nsz = token_starts.length*2;
+	 token_starts = Arrays.copyOf(token_starts,nsz);
+	 token_lengths = Arrays.copyOf(token_lengths,nsz);
+	 token_types = Arrays.copyOf(token_types,nsz);
+       }
+      token_starts[num_tokens] = soff;
+      token_lengths[num_tokens] = eoff - soff;
+      token_types[num_tokens] = (byte) tt.ordinal();
+      ++num_tokens;
+    }
+
+   private void allocate(int sz) {
+      token_starts = new int[sz];
+      token_lengths = new int[sz];
+      token_types = new byte[sz];
+    }
+
+}	// end of inner class TokenBuffer
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Keyword table that works on character ranges				*/
+/*										*/
+/********************************************************************************/
+
+private static class KeywordTable {
+
+   private char [][] table_keys;
+   private BaleTokenType [] table_values;
+   private int table_mask;
+   private int max_length;
+
+   KeywordTable(Map<String,BaleTokenType> map) {
+      this(map.keySet());
+      for (Map.Entry<String,BaleTokenType> ent : map.entrySet()) {
+	 table_values[findSlot(ent.getKey())] = ent.getValue();
+       }
+    }
+
+   KeywordTable(Collection<String> keys) {
+      int sz = 16;
+      while (sz < keys.size()*3) sz *= 2;
+      table_keys = new char[sz][];
+      table_values = new BaleTokenType[sz];
+      table_mask = sz-1;
+      max_length = 0;
+      for (String k : keys) {
+	 int idx = findSlot(k);
+	 table_keys[idx] = k.toCharArray();
+	 table_values[idx] = BaleTokenType.OP;
+	 max_length = Math.max(max_length,k.length());
+       }
+    }
+
+   BaleTokenType lookup(CharSequence text,int start,int end) {
+      if (end - start > max_length || end <= start) return null;
+      int h = 0;
+      for (int i = start; i < end; ++i) h = 31*h + text.charAt(i);
+      for (int idx = spread(h); ; idx = (idx+1) & table_mask) {
+	 char [] k = table_keys[idx];
+	 if (k == null) return null;
+	 if (k.length == end-start && matches(k,text,start)) return table_values[idx];
+       }
+    }
+
+   private int findSlot(String k) {
+      for (int idx = spread(k.hashCode()); ; idx = (idx+1) & table_mask) {
+	 char [] tk = table_keys[idx];
+	 if (tk == null || k.contentEquals(new String(tk))) return idx;
+       }
+    }
+
+   private int spread(int h) {
+      return (h ^ (h >>> 16)) & table_mask;
+    }
+
+   private static boolean matches(char [] k,CharSequence text,int start) {
+      for (int i = 0; i < k.length; ++i) {
+	 if (k[i] != text.charAt(start+i)) return false;
+       }
+      return true;
+    }
+
+}	// end of inner class KeywordTable
+
+
+
 
 /********************************************************************************/
 /*										*/
@@ -644,12 +763,12 @@ private static class Token implements BaleToken {
 
 private static class JavaTokenizer extends BaleTokenizer {
 
-   JavaTokenizer(String text,BaleTokenState start) {
+   JavaTokenizer(CharSequence text,BaleTokenState start) {
       super(text,start);
     }
 
-   protected BaleTokenType getKeyword(String s) { return java_keyword_map.get(s); }
-   protected boolean isOperator(String s)	{ return java_op_set.contains(s); }
+   protected KeywordTable getKeywordTable()	{ return java_keywords; }
+   protected KeywordTable getOperatorTable()	{ return java_operators; }
    protected boolean useSlashSlashComments()	{ return true; }
    protected boolean useSlashStarComments()	{ return true; }
    protected boolean useHashComments()		{ return false; }
@@ -752,6 +871,9 @@ static {
    java_op_set.add(">>");
    java_op_set.add(">>>");
    java_op_set.add(">");
+
+   java_keywords = new KeywordTable(java_keyword_map);
+   java_operators = new KeywordTable(java_op_set);
 }
 
 
@@ -765,12 +887,12 @@ static {
 
 private static class PythonTokenizer extends BaleTokenizer {
 
-   PythonTokenizer(String text,BaleTokenState start) {
+   PythonTokenizer(CharSequence text,BaleTokenState start) {
       super(text,start);
     }
 
-   protected BaleTokenType getKeyword(String s) { return python_keyword_map.get(s); }
-   protected boolean isOperator(String s)	{ return python_op_set.contains(s); }
+   protected KeywordTable getKeywordTable()	{ return python_keywords; }
+   protected KeywordTable getOperatorTable()	{ return python_operators; }
    protected boolean useSlashSlashComments()	{ return false; }
    protected boolean useSlashStarComments()	{ return false; }
    protected boolean useHashComments()		{ return true; }
@@ -853,6 +975,9 @@ static {
    python_op_set.add("//=");
    python_op_set.add("**=");
    python_op_set.add("\\");
+
+   python_keywords = new KeywordTable(python_keyword_map);
+   python_operators = new KeywordTable(python_op_set);
 }
 
 
@@ -865,12 +990,12 @@ static {
 
 private static class JSTokenizer extends BaleTokenizer {
 
-   JSTokenizer(String text,BaleTokenState start) {
+   JSTokenizer(CharSequence text,BaleTokenState start) {
       super(text,start);
     }
 
-   protected BaleTokenType getKeyword(String s) { return js_keyword_map.get(s); }
-   protected boolean isOperator(String s)	{ return js_op_set.contains(s); }
+   protected KeywordTable getKeywordTable()	{ return js_keywords; }
+   protected KeywordTable getOperatorTable()	{ return js_operators; }
    protected boolean useSlashSlashComments()	{ return true; }
    protected boolean useSlashStarComments()	{ return true; }
    protected boolean useHashComments()		{ return false; }
@@ -967,6 +1092,9 @@ static {
    js_op_set.add(">>");
    js_op_set.add(">>>");
    js_op_set.add(">");
+
+   js_keywords = new KeywordTable(js_keyword_map);
+   js_operators = new KeywordTable(js_op_set);
 }
 
 
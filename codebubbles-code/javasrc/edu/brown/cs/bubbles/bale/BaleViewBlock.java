@@ -37,6 +37,7 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
 import java.awt.image.ImageObserver;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -59,12 +60,15 @@ private DrawStyle	draw_style;
 private boolean 	have_errors;
 private ElisionTrigger	elision_trigger;
 private ExtractTrigger	extract_trigger;
+private int		layout_count;
+private long		layout_time;
+private long		max_layout_time;
 
 private static final boolean annotate_cutline = false;
 
 
 private static final int CHANGE_ELISION_DELTA = 20;
-private static final double MIN_DELTA_PRIORITY = 0.01;
+private static final long LAYOUT_REPORT_TIME = 20000000;	// ns
 
 private static final int ELLIPSES_INDENT = 10;
 
@@ -97,6 +101,9 @@ BaleViewBlock(BaleElement e)
    have_errors = false;
    elision_trigger = new ElisionTrigger();
    extract_trigger = new ExtractTrigger();
+   layout_count = 0;
+   layout_time = 0;
+   max_layout_time = 0;
 }
 
 
@@ -664,8 +671,10 @@ protected void computeLayout()
    try {
       computeSizes();
       if (!layout_valid) {
+	 long start = System.nanoTime();
 	 doLayout();
 	 layout_valid = true;
+	 if (isTopNode()) noteLayoutTime(System.nanoTime() - start);
        }
     }
    finally { bd.baleReadUnlock(); }
@@ -742,21 +751,61 @@ private void doLayout()
 
 private void findPriority(double p0,double p1,float w)
 {
-   while (p1-p0 > MIN_DELTA_PRIORITY) {
-      double p2 = (p0+p1)/2;
-      tryLayout(p2,w);
-      if (our_data.getActualHeight() > last_height) {
-	 p0 = p2;
-	 if (p1-p0 < MIN_DELTA_PRIORITY) {
-	    tryLayout(p1,w);		// give up and use old max
-	  }
+   // Rather than searching with repeated layouts, compute the height as a
+   // step function of priority once and pick the least elision that fits.
+
+   HeightCurve hc = computeHeightCurve(p0,w);
+   double p = hc.findPriority(p0,p1,last_height);
+
+   tryLayout(p,w);
+}
+
+
+
+private HeightCurve computeHeightCurve(double priority,float width)
+{
+   computeSizes();
+
+   BaleElement be = getBaleElement();
+   float shrunk = BALE_ELLIPSES_HEIGHT;
+   if (be.isEmpty()) shrunk = BALE_EMPTY_HEIGHT;
+   else if (be.isComment()) shrunk = BALE_COMMENT_HEIGHT;
+
+   // mirror setDrawStyle: find the priority above which we are elided
+   double cut;
+   switch (be.getElideMode()) {
+      case ELIDE_CHECK_NEVER :
+	 cut = (be.isElided() ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+	 break;
+      case ELIDE_CHECK_ONCE :
+      case ELIDE_CHECK_ALWAYS :
+	 cut = (be.canElide() ? getPriority() : Double.POSITIVE_INFINITY);
+	 break;
+      default :
+      case ELIDE_NONE :
+	 cut = Double.POSITIVE_INFINITY;
+	 break;
+    }
+
+   if (cut == Double.NEGATIVE_INFINITY) return new HeightCurve(shrunk);
+
+   int n = getViewCount();
+   HeightCurve [] kids = new HeightCurve[n];
+   for (int i = 0; i < n; ++i) {
+      View v = getView(i);
+      if (v instanceof BaleViewBlock && width > 0) {
+	 kids[i] = ((BaleViewBlock) v).computeHeightCurve(priority,width);
        }
-      else if (last_height - our_data.getActualHeight() > CHANGE_ELISION_DELTA &&
-		  last_priority < 1) {
-	 p1 = p2;
+      else {
+	 view_data[i].setSizeAtPriority(v,priority,width);
+	 kids[i] = new HeightCurve(view_data[i].getActualHeight());
        }
-      else break;
     }
+
+   HeightCurve rslt = new HeightCurve(getTopInset(),kids);
+   if (cut != Double.POSITIVE_INFINITY) rslt = rslt.elideAbove(cut,shrunk);
+
+   return rslt;
 }
 
 
@@ -811,6 +860,33 @@ private void tryLayout(double priority,float width)
 
 
 
+private void noteLayoutTime(long t)
+{
+   ++layout_count;
+   layout_time += t;
+   if (t > max_layout_time) max_layout_time = t;
+
+   if (t >= LAYOUT_REPORT_TIME && BoardLog.isLogging(LogLevel.DEBUG)) {
+      BaleDocument bd = (BaleDocument) getDocument();
+      String nm = bd.getFragmentName();
+      if (nm == null) nm = getBaleElement().getName();
+      BoardLog.logD("BALE","Layout of " + nm + " took " + t/1000000 + "ms; " +
+		       getLayoutStatistics());
+    }
+}
+
+
+
+String getLayoutStatistics()
+{
+   if (layout_count == 0) return "no layouts";
+
+   return layout_count + " layouts, average " + (layout_time/layout_count/1000) + "us, max " +
+      (max_layout_time/1000) + "us";
+}
+
+
+
 private void setDrawStyle(boolean fg)
 {
    BaleElement be = getBaleElement();
@@ -905,6 +981,90 @@ private double getPriority()
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Height as a step function of elision priority				*/
+/*										*/
+/********************************************************************************/
+
+private static class HeightCurve {
+
+   // heights[k] holds for priorities above exactly k of the break points
+   private double [] break_points;
+   private float [] curve_heights;
+
+   HeightCurve(float ht) {
+      break_points = new double[0];
+      curve_heights = new float[] { ht };
+    }
+
+   HeightCurve(float base,HeightCurve [] kids) {
+      int nbrk = 0;
+      for (HeightCurve hc : kids) nbrk += hc.break_points.length;
+      double [] brks = new double[nbrk];
+      nbrk = 0;
+      for (HeightCurve hc : kids) {
+	 System.arraycopy(hc.break_points,0,brks,nbrk,hc.break_points.length);
+	 nbrk += hc.break_points.length;
+       }
+      Arrays.sort(brks);
+      int m = 0;
+      for (int i = 0; i < nbrk; ++i) {
+	 if (m == 0 || brks[i] != brks[m-1]) brks[m++] = brks[i];
+       }
+      break_points = Arrays.copyOf(brks,m);
+
+      // add each child's steps to the merged intervals with a difference array
+      float [] diff = new float[m+2];
+      diff[0] = base;
+      for (HeightCurve hc : kids) {
+	 int from = 0;
+	 for (int k = 0; k < hc.curve_heights.length; ++k) {
+	    int to = (k < hc.break_points.length ?
+			 Arrays.binarySearch(break_points,hc.break_points[k]) + 1 : m + 1);
+	    diff[from] += hc.curve_heights[k];
+	    diff[to] -= hc.curve_heights[k];
+	    from = to;
+	  }
+       }
+      curve_heights = new float[m+1];
+      float ht = 0;
+      for (int i = 0; i <= m; ++i) {
+	 ht += diff[i];
+	 curve_heights[i] = ht;
+       }
+    }
+
+   private HeightCurve(double [] brks,float [] hts) {
+      break_points = brks;
+      curve_heights = hts;
+    }
+
+   HeightCurve elideAbove(double cut,float shrunk) {
+      int j = 0;
+      while (j < break_points.length && break_points[j] < cut) ++j;
+      double [] brks = Arrays.copyOf(break_points,j+1);
+      brks[j] = cut;
+      float [] hts = Arrays.copyOf(curve_heights,j+2);
+      hts[j+1] = shrunk;
+      return new HeightCurve(brks,hts);
+    }
+
+   double findPriority(double p0,double p1,float maxht) {
+      // smallest priority in (p0,p1] whose height fits; p1 if nothing fits
+      for (int k = 0; k < curve_heights.length; ++k) {
+	 double lo = (k == 0 ? p0 : Math.max(p0,break_points[k-1]));
+	 double hi = (k < break_points.length ? Math.min(p1,break_points[k]) : p1);
+	 if (lo >= hi) continue;
+	 if (curve_heights[k] <= maxht) return (lo + hi)/2;
+       }
+      return p1;
+    }
+
+}	// end of inner class HeightCurve
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Action to handle elision events 					*/
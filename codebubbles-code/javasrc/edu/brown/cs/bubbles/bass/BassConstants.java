@@ -292,6 +292,45 @@ interface BassUpdatableRepository extends BassRepository {
 }
 
 
+/**
+ *	A repository that can tell when its set of names has changed.  Callers
+ *	can use the version to avoid redoing work when nothing has changed.
+ **/
+
+interface BassVersionedRepository extends BassRepository {
+
+/**
+ *	Return a counter that changes whenever the set of names changes or
+ *	a negative value if this is not known.
+ **/
+   long getVersion();
+
+}	// end of inner interface BassVersionedRepository
+
+
+
+/**
+ *	A repository whose names are loaded in the background.  getAllNames
+ *	waits for the load to finish; callers that can handle a partial set,
+ *	such as the search trees, can use the names loaded so far and pick up
+ *	the rest as updates.
+ **/
+
+interface BassLoadingRepository extends BassRepository {
+
+/**
+ *	Tell if all the names have been loaded.
+ **/
+   boolean isLoaded();
+
+/**
+ *	Return the names loaded so far without waiting.
+ **/
+   Iterable<BassName> getLoadedNames();
+
+}	// end of inner interface BassLoadingRepository
+
+
 interface BassUpdatingRepository extends BassRepository {
    
 /**
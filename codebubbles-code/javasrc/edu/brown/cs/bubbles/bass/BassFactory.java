@@ -522,6 +522,20 @@ public static void reloadRepository(BassRepository br)
 
 
 
+static void updateRepository(BassRepository br,Collection<BassName> adds,Collection<BassName> dels)
+{
+   synchronized (repository_map) {
+      for (BassRepository abr : repository_map.keySet()) {
+	 if (abr.includesRepository(br)) {
+	    BassTreeModelBase tmb = getModelBase(abr);
+	    tmb.requestUpdate(adds,dels);
+	  }
+       }
+    }
+}
+
+
+
 static BassTreeModelBase getModelBase(BassRepository br)
 {
    synchronized (repository_map) {
@@ -0,0 +1,257 @@
+/********************************************************************************/
+/*										*/
+/*		BassNameIndex.java						*/
+/*										*/
+/*	Bubble Augmented Search Strategies trigram name index			*/
+/*										*/
+/********************************************************************************/
+/*	Copyright 2009 Brown University -- Steven P. Reiss		      */
+/*********************************************************************************
+ *  Copyright 2011, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+/* RCS: $Header$ */
+
+/*********************************************************************************
+ *
+ * $Log$
+ *
+ ********************************************************************************/
+
+
+package edu.brown.cs.bubbles.bass;
+
+import java.util.*;
+
+
+class BassNameIndex implements BassConstants
+{
+
+
+/********************************************************************************/
+/*										*/
+/*	Private storage 							*/
+/*										*/
+/********************************************************************************/
+
+private List<BassName>		index_names;
+private Map<BassName,Integer>	name_ids;
+private Map<Long,Postings>	trigram_map;
+private int			dead_count;
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Constructors								*/
+/*										*/
+/********************************************************************************/
+
+BassNameIndex()
+{
+   index_names = new ArrayList<BassName>();
+   name_ids = new HashMap<BassName,Integer>();
+   trigram_map = new HashMap<Long,Postings>();
+   dead_count = 0;
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Update methods								*/
+/*										*/
+/********************************************************************************/
+
+void addName(BassName bn)
+{
+   if (name_ids.containsKey(bn)) return;
+
+   String txt = getIndexText(bn);
+   int id = index_names.size();
+   index_names.add(bn);
+   name_ids.put(bn,id);
+
+   if (txt == null) return;
+
+   Set<Long> done = new HashSet<Long>();
+   for (int i = 0; i+3 <= txt.length(); ++i) {
+      Long key = trigramKey(txt,i);
+      if (!done.add(key)) continue;
+      Postings p = trigram_map.get(key);
+      if (p == null) {
+	 p = new Postings();
+	 trigram_map.put(key,p);
+       }
+      p.add(id);
+    }
+}
+
+
+
+boolean contains(BassName bn)
+{
+   return name_ids.containsKey(bn);
+}
+
+
+
+void removeName(BassName bn)
+{
+   Integer id = name_ids.remove(bn);
+   if (id == null) return;
+
+   index_names.set(id,null);
+   ++dead_count;
+
+   if (dead_count > 1024 && dead_count > name_ids.size()) compact();
+}
+
+
+
+private void compact()
+{
+   List<BassName> live = new ArrayList<BassName>(name_ids.keySet());
+
+   index_names.clear();
+   name_ids.clear();
+   trigram_map.clear();
+   dead_count = 0;
+
+   for (BassName bn : live) addName(bn);
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Lookup methods								*/
+/*										*/
+/*	Returns the names that could match the plain text of a pattern, or	*/
+/*	null if the pattern gives the index nothing to restrict on.		*/
+/*										*/
+/********************************************************************************/
+
+Set<BassName> findCandidates(BassNamePattern pat)
+{
+   int [] rslt = null;
+   int rct = 0;
+
+   for (String tok : pat.getIndexTokens()) {
+      if (tok.length() < 3) continue;
+      String ltok = tok.toLowerCase();
+      for (int i = 0; i+3 <= ltok.length(); ++i) {
+	 Postings p = trigram_map.get(trigramKey(ltok,i));
+	 if (p == null) return Collections.emptySet();
+	 if (rslt == null) {
+	    rslt = Arrays.copyOf(p.id_list,p.id_count);
+	    rct = p.id_count;
+	  }
+	 else rct = intersect(rslt,rct,p);
+	 if (rct == 0) return Collections.emptySet();
+       }
+    }
+
+   if (rslt == null) return null;
+
+   Set<BassName> cands = new HashSet<BassName>();
+   for (int i = 0; i < rct; ++i) {
+      BassName bn = index_names.get(rslt[i]);
+      if (bn != null) cands.add(bn);
+    }
+
+   return cands;
+}
+
+
+
+private static int intersect(int [] ids,int ct,Postings p)
+{
+   // both lists are sorted since ids are assigned in increasing order
+   int j = 0;
+   int k = 0;
+   for (int i = 0; i < ct && j < p.id_count; ) {
+      int v0 = ids[i];
+      int v1 = p.id_list[j];
+      if (v0 < v1) ++i;
+      else if (v0 > v1) ++j;
+      else {
+	 ids[k++] = v0;
+	 ++i;
+	 ++j;
+       }
+    }
+   return k;
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Text methods								*/
+/*										*/
+/********************************************************************************/
+
+static String getIndexText(BassName bn)
+{
+   String fn = bn.getFullName();
+   if (fn == null) return null;
+
+   int idx = fn.lastIndexOf("(");
+   if (idx > 0) fn = fn.substring(0,idx);
+
+   return fn.toLowerCase();
+}
+
+
+
+private static Long trigramKey(String txt,int idx)
+{
+   long v = txt.charAt(idx);
+   v = (v << 16) | txt.charAt(idx+1);
+   v = (v << 16) | txt.charAt(idx+2);
+   return v;
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Posting list for a single trigram					*/
+/*										*/
+/********************************************************************************/
+
+private static class Postings {
+
+   private int [] id_list;
+   private int id_count;
+
+   Postings() {
+      id_list = new int[4];
+      id_count = 0;
+    }
+
+   void add(int id) {
+      if (id_count == id_list.length) id_list = Arrays.copyOf(id_list,id_count*2);
+      id_list[id_count++] = id;
+    }
+
+}	// end of inner class Postings
+
+
+
+}	// end of class BassNameIndex
+
+
+
+
+/* end of BassNameIndex.java */
@@ -50,6 +50,7 @@ private List<String> class_match;
 private List<String> method_match;
 private List<String> argument_match;
 private List<String> any_match;
+private Set<String> hump_match;
 private boolean is_type;
 private boolean is_interface;
 private boolean is_method;
@@ -75,6 +76,7 @@ BassNamePattern(String txt,boolean usecase)
    package_match = null;
    class_match = null;
    any_match = new ArrayList<String>();
+   hump_match = new HashSet<String>();
    is_type = false;
    is_interface = false;
    is_method = false;
@@ -201,13 +203,27 @@ private void buildPattern(String txt)
 
 private void addMatch(String txt) {
    if (txt != null && txt.length() > 0) {
-      if (case_sensitive) any_match.add(txt);
-      else any_match.add(txt.toLowerCase());
+      String mtxt = txt;
+      if (!case_sensitive) mtxt = txt.toLowerCase();
+      any_match.add(mtxt);
+      if (isHumpPattern(txt)) hump_match.add(mtxt);
     }
 }
 
 
 
+private static boolean isHumpPattern(String txt)
+{
+   // all upper case text such as NPE can also match camel-case humps
+   if (txt.length() < 2) return false;
+   for (int i = 0; i < txt.length(); ++i) {
+      if (!Character.isUpperCase(txt.charAt(i))) return false;
+    }
+   return true;
+}
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Matching methods							*/
@@ -308,6 +324,24 @@ boolean isEmpty()				{ return is_empty; }
 
 
 
+/**
+ *	Return the plain text that any matching name must contain.  Hump
+ *	patterns are excluded since they need not appear as a substring.
+ **/
+
+List<String> getIndexTokens()
+{
+   if (hump_match.isEmpty()) return any_match;
+
+   List<String> rslt = new ArrayList<String>();
+   for (String s : any_match) {
+      if (!hump_match.contains(s)) rslt.add(s);
+    }
+   return rslt;
+}
+
+
+
 
 /********************************************************************************/
 /*										*/
@@ -320,31 +354,82 @@ private int checkString(String txt,List<String> mtch)
    if (mtch == null || mtch.size() == 0) return 0;
    if (txt == null || txt.length() == 0) return -1;
 
-   // String mtxt = txt;
-   // if (!case_sensitive) mtxt = txt.toLowerCase();
-   int mtln = txt.length();
+   int val = 0;
 
    for (String s : mtch) {
-      //  if (!mtxt.contains(s)) return -1;
-      int sln = s.length();
-      boolean fndfg = false;
-      for (int i = 0; !fndfg && i <= mtln - sln; ++i) {
-	 boolean mfg = true;
-	 for (int j = 0; mfg && j < sln; ++j) {
-	    char c = txt.charAt(i+j);
-	    char c1 = s.charAt(j);
-	    if (c == c1) continue;
-	    if (!case_sensitive && Character.toLowerCase(c) == c1) continue;
-	    mfg = false;
-	  }
-	 fndfg = mfg;
+      int v = scoreSubstring(txt,s);
+      if (v < 0 && hump_match.contains(s)) v = scoreHumps(txt,s);
+      if (v < 0) return -1;
+      val += v;
+    }
+
+   return val;
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Scoring methods 							*/
+/*										*/
+/*	Matches at the start of a name component or at a camel-case hump,	*/
+/*	matches covering a whole component, and matches in the last		*/
+/*	component of the name score higher.					*/
+/*										*/
+/********************************************************************************/
+
+private int scoreSubstring(String txt,String s)
+{
+   int mtln = txt.length();
+   int sln = s.length();
+   int best = -1;
+
+   for (int i = 0; i <= mtln - sln; ++i) {
+      if (!txt.regionMatches(!case_sensitive,i,s,0,sln)) continue;
+      int v = 1;
+      if (i == 0 || isSeparator(txt.charAt(i-1))) v += 8;
+      else if (Character.isUpperCase(txt.charAt(i)) && Character.isLowerCase(txt.charAt(i-1))) v += 4;
+      if (i+sln == mtln || isSeparator(txt.charAt(i+sln))) v += 4;
+      if (txt.indexOf('.',i+sln) < 0) v += 6;
+      if (v > best) best = v;
+    }
+
+   return best;
+}
+
+
+
+private int scoreHumps(String txt,String s)
+{
+   int mtln = txt.length();
+   int sln = s.length();
+   int j = 0;
+   int first = -1;
+
+   for (int i = 0; i < mtln && j < sln; ++i) {
+      char c = txt.charAt(i);
+      boolean hump = (i == 0 || isSeparator(txt.charAt(i-1)) || Character.isUpperCase(c));
+      if (!hump) continue;
+      if (Character.toLowerCase(c) == Character.toLowerCase(s.charAt(j))) {
+	 if (first < 0) first = i;
+	 ++j;
        }
-      if (!fndfg) return -1;
     }
 
-   // TODO: compute a match score based on location, camel case, etc.
+   if (j < sln) return -1;
 
-   return 0;
+   int v = 4;
+   if (first == 0 || isSeparator(txt.charAt(first-1))) v += 4;
+   if (txt.indexOf('.',first) < 0) v += 2;
+
+   return v;
+}
+
+
+
+private static boolean isSeparator(char c)
+{
+   return c == '.' || c == '$' || c == ':' || c == ' ' || c == '/' || c == '(';
 }
 
 
@@ -36,11 +36,14 @@ import edu.brown.cs.bubbles.bump.*;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
 class BassRepositoryLocation implements BassConstants.BassUpdatingRepository,
+		BassConstants.BassVersionedRepository, BassConstants.BassLoadingRepository,
 		BassConstants, BumpConstants.BumpChangeHandler
 {
 
@@ -53,7 +56,14 @@ class BassRepositoryLocation implements BassConstants.BassUpdatingRepository,
 /********************************************************************************/
 
 private Set<BassName>	all_names;
-private boolean 	is_ready;
+private volatile boolean is_ready;
+private Map<File,BassNameLocation []> file_index;
+private NavigableMap<String,BassNameLocation []> prefix_index;
+private Map<File,List<BassNameLocation>> pending_files;
+private List<BassName>	added_names;
+private List<BassName>	removed_names;
+private volatile List<BassName> name_snapshot;
+private volatile long	name_version;
 private List<BassUpdatableRepository> update_repos;
 
 private Pattern 	anonclass_pattern = Pattern.compile("\\$[0-9]");
@@ -71,6 +81,13 @@ BassRepositoryLocation()
 {
    all_names = new HashSet<BassName>();
    is_ready = false;
+   file_index = new ConcurrentHashMap<File,BassNameLocation []>();
+   prefix_index = new ConcurrentSkipListMap<String,BassNameLocation []>();
+   pending_files = new HashMap<File,List<BassNameLocation>>();
+   added_names = new ArrayList<BassName>();
+   removed_names = new ArrayList<BassName>();
+   name_snapshot = null;
+   name_version = 0;
    update_repos = new ArrayList<BassUpdatableRepository>();
 
    initialize();
@@ -89,19 +106,37 @@ BassRepositoryLocation()
 
 @Override public Iterable<BassName> getAllNames()
 {
+   waitForNames();
+
+   return getLoadedNames();
+}
+
+
+
+@Override public boolean isLoaded()			{ return is_ready; }
+
+
+
+@Override public Iterable<BassName> getLoadedNames()
+{
+   // the snapshot is immutable and is only rebuilt after the names change
+   List<BassName> rslt = name_snapshot;
+   if (rslt != null) return rslt;
+
    synchronized (this) {
-      while (!is_ready) {
-	 try {
-	    wait(2000);
-	  }
-	 catch (InterruptedException e) { }
+      if (name_snapshot == null) {
+	 name_snapshot = Collections.unmodifiableList(new ArrayList<BassName>(all_names));
        }
-      return new ArrayList<BassName>(all_names);
+      return name_snapshot;
     }
 }
 
 
 
+@Override public long getVersion()			{ return name_version; }
+
+
+
 @Override public boolean includesRepository(BassRepository br)	{ return br == this; }
 
 
@@ -118,6 +153,8 @@ BassRepositoryLocation()
 
 void waitForNames()
 {
+   if (is_ready) return;
+
    synchronized (this) {
       while (!is_ready) {
 	 try {
@@ -141,25 +178,25 @@ BassName findBubbleName(File f,int eclipsepos)
 
    waitForNames();
 
-   synchronized (this) {
-      for (BassName bn : all_names) {
-	 BassNameLocation bnl = (BassNameLocation) bn;
-	 if (bnl.getFile().equals(f)) {
-	    int spos = bnl.getEclipseStartOffset();
-	    int epos = bnl.getEclipseEndOffset();
-	    boolean incl = (spos <= eclipsepos && epos > eclipsepos);
-	    if (best != null && incl && !inclbest && best.getNameType() == bnl.getNameType()) best = null;
-	    if (best == null || epos - spos <= bestlen) {
-	       if (best != null && epos - spos == bestlen) {
-		  if (best.getNameType() == BassNameType.HEADER && bnl.getNameType() == BassNameType.CLASS) ;
-		  else continue;
-		}
-	       if (spos-maxdelta0 <= eclipsepos && epos+maxdelta1 > eclipsepos) {	// allow for indentations
-		  best = bnl;
-		  bestlen = epos - spos;
-		  inclbest = incl;
-		}
-	     }
+   BassNameLocation [] fnms = (f == null ? null : file_index.get(f));
+   if (fnms == null) return null;
+
+   int lim = findIndexLimit(fnms,eclipsepos+maxdelta0);
+   for (int i = 0; i < lim; ++i) {
+      BassNameLocation bnl = fnms[i];
+      int spos = bnl.getEclipseStartOffset();
+      int epos = bnl.getEclipseEndOffset();
+      boolean incl = (spos <= eclipsepos && epos > eclipsepos);
+      if (best != null && incl && !inclbest && best.getNameType() == bnl.getNameType()) best = null;
+      if (best == null || epos - spos <= bestlen) {
+	 if (best != null && epos - spos == bestlen) {
+	    if (best.getNameType() == BassNameType.HEADER && bnl.getNameType() == BassNameType.CLASS) ;
+	    else continue;
+	  }
+	 if (spos-maxdelta0 <= eclipsepos && epos+maxdelta1 > eclipsepos) {	// allow for indentations
+	    best = bnl;
+	    bestlen = epos - spos;
+	    inclbest = incl;
 	  }
        }
     }
@@ -178,32 +215,27 @@ List<BumpLocation> findClassMethods(String cls)
 
    waitForNames();
 
-   int clsln = cls.length();
-
-   synchronized (this) {
-      for (BassName bn : all_names) {
-	 BassNameLocation bnl = (BassNameLocation) bn;
-	 String fnm = bnl.getFullName();
-	 if (fnm == null) continue;
-	 if (fnm.equals(cls) || (fnm.startsWith(cls) && fnm.charAt(clsln) == '.')) {
-	    switch (bnl.getNameType()) {
-	       case CLASS :
-	       case ENUM :
-	       case THROWABLE : 	
-		  fndcls = true;
-		  break;
-	       case INTERFACE :
-		  fndcls = true;
-		  break;
-	       case METHOD :	
-		  String cnm = bnl.getNameHead();
-		  if (cls.equals(cnm)) rslt.add(bnl.getLocation());
-		  break;
-	       default :
-		  break;
-	    }
+   List<BassNameLocation> cands = new ArrayList<BassNameLocation>();
+   BassNameLocation [] exact = prefix_index.get(cls);
+   if (exact != null) cands.addAll(Arrays.asList(exact));
+   for (BassNameLocation [] pfx : prefix_index.subMap(cls + ".",true,cls + "/",false).values()) {
+      cands.addAll(Arrays.asList(pfx));
+    }
 
-	  }
+   for (BassNameLocation bnl : cands) {
+      switch (bnl.getNameType()) {
+	 case CLASS :
+	 case ENUM :
+	 case THROWABLE :
+	 case INTERFACE :
+	    fndcls = true;
+	    break;
+	 case METHOD :
+	    String cnm = bnl.getNameHead();
+	    if (cls.equals(cnm)) rslt.add(bnl.getLocation());
+	    break;
+	 default :
+	    break;
        }
     }
 
@@ -218,12 +250,10 @@ File findActualFile(File f)
 {
    waitForNames();
 
-   synchronized (this) {
-      for (BassName bn : all_names) {
-	 BassNameLocation bnl = (BassNameLocation) bn;
-	 if (bnl.getFile().equals(f)) return f;
-	 if (bnl.getFile().getName().equals(f.getName())) return bnl.getFile();
-       }
+   if (file_index.containsKey(f)) return f;
+
+   for (File nf : file_index.keySet()) {
+      if (nf.getName().equals(f.getName())) return nf;
     }
 
    return null;
@@ -231,6 +261,124 @@ File findActualFile(File f)
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Index methods								*/
+/*										*/
+/*	The file and prefix indices are only changed while holding the lock,	*/
+/*	but always hold immutable arrays so lookups can be done without it.	*/
+/*										*/
+/********************************************************************************/
+
+private static int findIndexLimit(BassNameLocation [] fnms,int pos)
+{
+   // return the number of leading names whose start offset is <= pos
+   int lo = 0;
+   int hi = fnms.length;
+   while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (fnms[mid].getEclipseStartOffset() <= pos) lo = mid+1;
+      else hi = mid;
+    }
+   return lo;
+}
+
+
+
+private void addName(BassNameLocation bn)
+{
+   if (!all_names.add(bn)) return;
+
+   noteChanged();
+   added_names.add(bn);
+
+   File f = bn.getFile();
+   if (f != null) getPendingNames(f).add(bn);
+
+   String fnm = bn.getFullName();
+   if (fnm != null) {
+      BassNameLocation [] old = prefix_index.get(fnm);
+      if (old == null) prefix_index.put(fnm,new BassNameLocation [] { bn });
+      else {
+	 BassNameLocation [] nnms = Arrays.copyOf(old,old.length+1);
+	 nnms[old.length] = bn;
+	 prefix_index.put(fnm,nnms);
+       }
+    }
+}
+
+
+
+private void removeName(BassNameLocation bn)
+{
+   noteChanged();
+   removed_names.add(bn);
+
+   File f = bn.getFile();
+   if (f != null) getPendingNames(f).remove(bn);
+
+   String fnm = bn.getFullName();
+   if (fnm != null) {
+      BassNameLocation [] old = prefix_index.get(fnm);
+      if (old != null) {
+	 List<BassNameLocation> nnms = new ArrayList<BassNameLocation>(Arrays.asList(old));
+	 nnms.remove(bn);
+	 if (nnms.isEmpty()) prefix_index.remove(fnm);
+	 else prefix_index.put(fnm,nnms.toArray(new BassNameLocation[nnms.size()]));
+       }
+    }
+}
+
+
+
+private void noteChanged()
+{
+   name_snapshot = null;
+   ++name_version;
+}
+
+
+
+private List<BassNameLocation> getPendingNames(File f)
+{
+   List<BassNameLocation> rslt = pending_files.get(f);
+   if (rslt == null) {
+      rslt = new ArrayList<BassNameLocation>();
+      BassNameLocation [] old = file_index.get(f);
+      if (old != null) rslt.addAll(Arrays.asList(old));
+      pending_files.put(f,rslt);
+    }
+   return rslt;
+}
+
+
+
+private void publishIndex()
+{
+   for (Map.Entry<File,List<BassNameLocation>> ent : pending_files.entrySet()) {
+      List<BassNameLocation> nms = ent.getValue();
+      if (nms.isEmpty()) file_index.remove(ent.getKey());
+      else {
+	 BassNameLocation [] arr = nms.toArray(new BassNameLocation[nms.size()]);
+	 Arrays.sort(arr,new OffsetComparator());
+	 file_index.put(ent.getKey(),arr);
+       }
+    }
+   pending_files.clear();
+}
+
+
+
+private static class OffsetComparator implements Comparator<BassNameLocation> {
+
+   @Override public int compare(BassNameLocation n1,BassNameLocation n2) {
+      return Integer.compare(n1.getEclipseStartOffset(),n2.getEclipseStartOffset());
+    }
+
+}	// end of inner class OffsetComparator
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Setup methods								*/
@@ -241,6 +389,12 @@ private void initialize()
 {	
    synchronized (this) {
       all_names.clear();
+      noteChanged();
+      file_index.clear();
+      prefix_index.clear();
+      pending_files.clear();
+      added_names.clear();
+      removed_names.clear();
       is_ready = false;
     }
 
@@ -250,18 +404,17 @@ private void initialize()
 
 
 
-private synchronized void loadNames()
+private void loadNames()
 {
-   Map<String,BassNameLocation> usedmap = new HashMap<String,BassNameLocation>();
-
    BumpClient bc = BumpClient.getBump();
-   Collection<BumpLocation> locs = bc.findAllNames(null);
-   if (locs != null) {
-      for (BumpLocation bl : locs) {
-	 addLocation(bl,usedmap);
-       }
-    }
+   NameLoader nl = new NameLoader();
+   if (!bc.findAllNames(null,null,nl)) nl.handleNamesDone();
+}
+
+
 
+private synchronized void noteReady()
+{
    is_ready = true;
    notifyAll();
 }
@@ -307,10 +460,10 @@ private void addLocation(BumpLocation bl,Map<String,BassNameLocation> usedmap)
       case ENUM :
       case INTERFACE :
       case THROWABLE :
-	 all_names.add(bn);
+	 addName(bn);
 	 if (showClassFile(bn)) {
 	    BassNameLocation fnm = new BassNameLocation(bl,BassNameType.FILE);
-	    all_names.add(fnm);
+	    addName(fnm);
 	  }
 	 bn = new BassNameLocation(bl,BassNameType.HEADER);
 	 break;
@@ -319,15 +472,15 @@ private void addLocation(BumpLocation bl,Map<String,BassNameLocation> usedmap)
 	 break;
       case MODULE :
 	 BassNameLocation fnm = new BassNameLocation(bl,BassNameType.MODULE);
-	 all_names.add(fnm);
+	 addName(fnm);
 	 BassNameLocation inm = new BassNameLocation(bl,BassNameType.HEADER);
-	 all_names.add(inm);
+	 addName(inm);
 	 break;
       default:
 	 break;
     }
 
-   if (bn != null) all_names.add(bn);
+   if (bn != null) addName(bn);
 }
 
 
@@ -369,6 +522,38 @@ private boolean isRelevant(BumpLocation bl)
 
 
 
+/**
+ *	Adds the names to the repository as they arrive from the back end so
+ *	that the search tree can show them while the rest are still loading.
+ **/
+
+private class NameLoader implements BumpConstants.BumpNameHandler {
+
+   private Map<String,BassNameLocation> used_map;
+
+   NameLoader() {
+      used_map = new HashMap<String,BassNameLocation>();
+    }
+
+   @Override public void handleNames(Collection<BumpLocation> locs) {
+      synchronized (BassRepositoryLocation.this) {
+	 for (BumpLocation bl : locs) {
+	    addLocation(bl,used_map);
+	  }
+	 publishIndex();
+       }
+      handleUpdated();
+    }
+
+   @Override public void handleNamesDone() {
+      noteReady();
+      handleUpdated();
+    }
+
+}	// end of inner class NameLoader
+
+
+
 private class Searcher implements Runnable {
 
    @Override public void run() {
@@ -408,7 +593,10 @@ private class Searcher implements Runnable {
 
 @Override public void handleFileRemoved(String proj,String file)
 {
-   removeNamesForFile(proj,file);
+   synchronized (this) {
+      removeNamesForFile(proj,file);
+      publishIndex();
+    }
 
    handleUpdated();
 }
@@ -426,13 +614,26 @@ private class Searcher implements Runnable {
 
 private void removeNamesForFile(String proj,String file)
 {
-   synchronized (this) {
+   // caller must hold the lock and publish the index afterwards
+   if (file == null) {
       for (Iterator<BassName> it = all_names.iterator(); it.hasNext(); ) {
 	 BassName bn = it.next();
 	 BumpLocation bl = bn.getLocation();
-	 if (bl != null && fileMatch(file,bl.getFile()) &&
-	       (proj == null || proj.equals(bl.getProject())))
+	 if (bl != null && (proj == null || proj.equals(bl.getProject()))) {
 	    it.remove();
+	    removeName((BassNameLocation) bn);
+	  }
+       }
+      return;
+    }
+
+   for (Map.Entry<File,BassNameLocation []> ent : file_index.entrySet()) {
+      if (!fileMatch(file,ent.getKey())) continue;
+      for (BassNameLocation bn : ent.getValue()) {
+	 BumpLocation bl = bn.getLocation();
+	 if (bl != null && (proj == null || proj.equals(bl.getProject()))) {
+	    if (all_names.remove(bn)) removeName(bn);
+	  }
        }
     }
 }
@@ -477,6 +678,7 @@ private void addNamesForFile(String proj,String file,boolean rem)
 	    addLocation(bl,usedmap);
 	  }
        }
+      publishIndex();
     }
    // BoardLog.logD("BASS","AFTER " + proj + " " + file + " " + all_names.size());
 }
@@ -484,11 +686,23 @@ private void addNamesForFile(String proj,String file,boolean rem)
 
 private void handleUpdated()
 {
-   for (BassUpdatableRepository br : update_repos) {
-      br.reloadRepository();
+   List<BassName> adds;
+   List<BassName> dels;
+   synchronized (this) {
+      adds = new ArrayList<BassName>(added_names);
+      dels = new ArrayList<BassName>(removed_names);
+      added_names.clear();
+      removed_names.clear();
+    }
+
+   // dependents read all the names; reload them once the load completes
+   if (is_ready) {
+      for (BassUpdatableRepository br : update_repos) {
+	 br.reloadRepository();
+       }
     }
 
-   BassFactory.reloadRepository(this);
+   if (!adds.isEmpty() || !dels.isEmpty()) BassFactory.updateRepository(this,adds,dels);
 }
 
 
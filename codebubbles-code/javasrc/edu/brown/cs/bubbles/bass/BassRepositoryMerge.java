@@ -30,7 +30,8 @@
 
 package edu.brown.cs.bubbles.bass;
 
-import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 
 
@@ -38,7 +39,8 @@ import java.util.ArrayList;
  *	Provide a repository that merges two other Bass repositories.
  **/
 
-public class BassRepositoryMerge implements BassConstants.BassRepository, BassConstants
+public class BassRepositoryMerge implements BassConstants.BassVersionedRepository,
+		BassConstants.BassLoadingRepository, BassConstants
 {
 
 
@@ -80,16 +82,76 @@ public BassRepositoryMerge(BassRepository p1,BassRepository p2)
 
 @Override public Iterable<BassName> getAllNames()
 {
-   ArrayList<BassName> rslt = new ArrayList<BassName>();
+   Iterable<BassName> n1 = null;
+   Iterable<BassName> n2 = null;
 
-   if (first_repository != null) {
-      for (BassName bn : first_repository.getAllNames()) rslt.add(bn);
+   if (first_repository != null) n1 = first_repository.getAllNames();
+   if (second_repository != null) n2 = second_repository.getAllNames();
+
+   return new MergedNames(n1,n2);
+}
+
+
+
+@Override public boolean isLoaded()
+{
+   return isLoaded(first_repository) && isLoaded(second_repository);
+}
+
+
+
+private static boolean isLoaded(BassRepository br)
+{
+   if (br instanceof BassLoadingRepository) {
+      return ((BassLoadingRepository) br).isLoaded();
     }
-   if (second_repository != null) {
-      for (BassName bn : second_repository.getAllNames()) rslt.add(bn);
+
+   return true;
+}
+
+
+
+@Override public Iterable<BassName> getLoadedNames()
+{
+   Iterable<BassName> n1 = getLoadedNames(first_repository);
+   Iterable<BassName> n2 = getLoadedNames(second_repository);
+
+   return new MergedNames(n1,n2);
+}
+
+
+
+private static Iterable<BassName> getLoadedNames(BassRepository br)
+{
+   if (br == null) return null;
+   if (br instanceof BassLoadingRepository) {
+      return ((BassLoadingRepository) br).getLoadedNames();
     }
 
-   return rslt;
+   return br.getAllNames();
+}
+
+
+
+@Override public long getVersion()
+{
+   long v1 = getVersion(first_repository);
+   long v2 = getVersion(second_repository);
+   if (v1 < 0 || v2 < 0) return -1;
+
+   return v1 + v2;
+}
+
+
+
+private static long getVersion(BassRepository br)
+{
+   if (br == null) return 0;
+   if (br instanceof BassVersionedRepository) {
+      return ((BassVersionedRepository) br).getVersion();
+    }
+
+   return -1;
 }
 
 
@@ -105,6 +167,62 @@ public BassRepositoryMerge(BassRepository p1,BassRepository p2)
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Iteration over both sets of names without copying			*/
+/*										*/
+/********************************************************************************/
+
+private static class MergedNames implements Iterable<BassName> {
+
+   private Iterable<BassName> first_names;
+   private Iterable<BassName> second_names;
+
+   MergedNames(Iterable<BassName> n1,Iterable<BassName> n2) {
+      first_names = n1;
+      second_names = n2;
+    }
+
+   @Override public Iterator<BassName> iterator() {
+      return new MergedIterator(first_names,second_names);
+    }
+
+}	// end of inner class MergedNames
+
+
+
+private static class MergedIterator implements Iterator<BassName> {
+
+   private Iterator<BassName> cur_iterator;
+   private Iterable<BassName> next_names;
+
+   MergedIterator(Iterable<BassName> n1,Iterable<BassName> n2) {
+      cur_iterator = (n1 == null ? null : n1.iterator());
+      next_names = n2;
+    }
+
+   @Override public boolean hasNext() {
+      for ( ; ; ) {
+	 if (cur_iterator != null && cur_iterator.hasNext()) return true;
+	 if (next_names == null) return false;
+	 cur_iterator = next_names.iterator();
+	 next_names = null;
+       }
+    }
+
+   @Override public BassName next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      return cur_iterator.next();
+    }
+
+   @Override public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+}	// end of inner class MergedIterator
+
+
+
 }	// end of class BassRepositoryMerge
 
 
@@ -367,10 +367,17 @@ private void fixupDisplay(String txt)
 	    ct = active_options.getRowCount();
 	 }
        }
-      int[] aryIndices = tree_model.getIndicesOfFirstMethod();
-      int index = 0;
-      for(int i=0;i<aryIndices.length;i++) index += aryIndices[i];
-      active_options.setSelectionRow(index);
+      TreePath best = tree_model.getBestMatch();
+      if (best != null) {
+	 active_options.setSelectionPath(best);
+	 active_options.scrollPathToVisible(best);
+       }
+      else {
+	 int[] aryIndices = tree_model.getIndicesOfFirstMethod();
+	 int index = 0;
+	 for(int i=0;i<aryIndices.length;i++) index += aryIndices[i];
+	 active_options.setSelectionRow(index);
+       }
     }
    else {
       if (tree_model.getLeafCount() > mxea) collapseAll();
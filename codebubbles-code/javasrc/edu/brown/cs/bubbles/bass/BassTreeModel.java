@@ -58,6 +58,8 @@ public TreePath getTreePath(String nm);
 
 public int [] getIndicesOfFirstMethod();
 
+public TreePath getBestMatch();
+
 
 
 
@@ -122,6 +124,12 @@ interface BassTreeUpdateEvent {
    Collection<BassName> getNamesRemoved();
    Collection<BassName> getNamesAdded();
 
+/**
+ *	Return the paths from the root to each branch whose contents changed,
+ *	or null if the whole tree might have changed.
+ **/
+   Collection<BassTreeBase []> getChangedPaths();
+
 }	// end of inner interface BassTreeUpdateEvent
 
 
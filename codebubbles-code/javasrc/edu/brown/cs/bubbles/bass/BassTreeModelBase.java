@@ -62,8 +62,14 @@ private int		max_childcount;
 private ReadWriteLock	tree_lock;
 private SwingEventListenerList<BassTreeUpdateListener> listener_set;
 private Rebuilder	cur_rebuilder;
+private BassNameIndex	name_index;
+private Set<BassName>	pending_adds;
+private Set<BassName>	pending_dels;
+private boolean 	full_rebuild;
+private long		built_version;
 
 private static long REBUILD_DELAY = bass_properties.getLong("Bass.rebuild.delay",500);
+private static int MAX_INCREMENTAL = bass_properties.getInt("Bass.rebuild.incremental",2000);
 
 
 
@@ -84,6 +90,11 @@ BassTreeModelBase(BassRepository br)
    tree_lock = new ReentrantReadWriteLock();
    listener_set = new SwingEventListenerList<BassTreeUpdateListener>(BassTreeUpdateListener.class);
    cur_rebuilder = null;
+   name_index = new BassNameIndex();
+   pending_adds = new LinkedHashSet<BassName>();
+   pending_dels = new LinkedHashSet<BassName>();
+   full_rebuild = false;
+   built_version = -1;
 
    setupInitial();
 }
@@ -102,6 +113,8 @@ BassTreeBase getRoot()				{ return root_node; }
 int getLeafCount()				{ return leaf_count; }
 int getMaxChildCount()				{ return max_childcount; }
 
+BassNameIndex getNameIndex()			{ return name_index; }
+
 void addUpdateListener(BassTreeUpdateListener ul)
 {
    listener_set.add(ul);
@@ -150,13 +163,16 @@ void writeUnlock()
 
 private void setupInitial()
 {
+   built_version = getRepositoryVersion();
+
    List<BassName> items = new ArrayList<BassName>();
-   for (BassName bn : for_repository.getAllNames()) items.add(bn);
+   for (BassName bn : getRepositoryNames()) items.add(bn);
    Collections.sort(items,new TreeSorter());
 
    TreeLeaf last = null;
    for (BassName nm : items) {
       last = insertNode(nm,last);
+      name_index.addName(nm);
     }
 
    root_node.collapseSingletons();
@@ -306,6 +322,42 @@ private static class TreeSorter implements Comparator<BassName> {
 
 
 void requestRebuild()
+{
+   synchronized (this) {
+      full_rebuild = true;
+      startRebuilder();
+    }
+}
+
+
+
+/**
+ *	Request that the given names be added to and removed from the tree.
+ *	These are applied directly to the tree unless a full rebuild is
+ *	pending or there are too many of them.
+ **/
+
+void requestUpdate(Collection<BassName> adds,Collection<BassName> dels)
+{
+   synchronized (this) {
+      if (!full_rebuild) {
+	 for (BassName bn : dels) {
+	    pending_adds.remove(bn);
+	    pending_dels.add(bn);
+	  }
+	 for (BassName bn : adds) {
+	    pending_adds.remove(bn);
+	    pending_adds.add(bn);
+	  }
+	 if (pending_adds.size() + pending_dels.size() > MAX_INCREMENTAL) full_rebuild = true;
+       }
+      startRebuilder();
+    }
+}
+
+
+
+private void startRebuilder()
 {
    synchronized (this) {
       if (cur_rebuilder != null) {
@@ -353,7 +405,7 @@ private class Rebuilder implements Runnable {
 	  }
 	 BoardLog.logD("BASS","RUN REBUILD " + begin_time + " " + System.currentTimeMillis());
 
-	 rebuild();
+	 processUpdates();
 
 	 BoardLog.logD("BASS","DONE REBUILD " + begin_time + " " + System.currentTimeMillis());
 	 
@@ -378,24 +430,75 @@ private class Rebuilder implements Runnable {
 /*										*/
 /********************************************************************************/
 
+private void processUpdates()
+{
+   boolean full;
+   List<BassName> adds;
+   List<BassName> dels;
+
+   synchronized (this) {
+      full = full_rebuild;
+      adds = new ArrayList<BassName>(pending_adds);
+      dels = new ArrayList<BassName>(pending_dels);
+      full_rebuild = false;
+      pending_adds.clear();
+      pending_dels.clear();
+    }
+
+   if (full) rebuild();
+   else if (!adds.isEmpty() || !dels.isEmpty()) update(adds,dels);
+}
+
+
+
+private Iterable<BassName> getRepositoryNames()
+{
+   // names still loading are added to the tree as updates
+
+   if (for_repository instanceof BassLoadingRepository) {
+      return ((BassLoadingRepository) for_repository).getLoadedNames();
+    }
+
+   return for_repository.getAllNames();
+}
+
+
+
+private long getRepositoryVersion()
+{
+   if (for_repository instanceof BassVersionedRepository) {
+      return ((BassVersionedRepository) for_repository).getVersion();
+    }
+
+   return -1;
+}
+
+
+
 void rebuild()
 {
    Set<BassName> dels = new HashSet<BassName>();
    Set<BassName> adds = new HashSet<BassName>();
 
+   long ver = getRepositoryVersion();
+   if (ver >= 0 && ver == built_version) return;
+
    writeLock();
    try {
+      built_version = ver;
       root_node.addAllNames(dels);
 
-      for (BassName ba : for_repository.getAllNames()) {
+      for (BassName ba : getRepositoryNames()) {
 	 if (dels.remove(ba)) continue;
 	 adds.add(ba);
        }
       for (BassName ba : dels) {
 	 removeNode(ba);
+	 name_index.removeName(ba);
        }
       for (BassName ba : adds) {
 	 root_node.addNode(ba,true);
+	 name_index.addName(ba);
        }
 
       max_childcount = root_node.getMaxCount();
@@ -404,7 +507,7 @@ void rebuild()
       root_node.collapseSingletons();
       root_node.removeEmptyNodes();
       
-      UpdateEvent evt = new UpdateEvent(adds,dels);
+      UpdateEvent evt = new UpdateEvent(adds,dels,null);
       for (BassTreeUpdateListener ul : listener_set) {
 	 ul.handleTreeUpdated(evt);
        }
@@ -414,6 +517,76 @@ void rebuild()
 
 
 
+/**
+ *	Apply a set of name changes directly to the tree.  Rather than the
+ *	whole tree, only the branches that contain the changed names are
+ *	reported to the listeners.
+ **/
+
+private void update(Collection<BassName> adds,Collection<BassName> dels)
+{
+   Set<Branch> chng = new LinkedHashSet<Branch>();
+
+   writeLock();
+   try {
+      built_version = -1;
+      for (BassName ba : dels) {
+	 if (!name_index.contains(ba)) continue;
+	 BassTreeImpl nd = root_node.addNode(ba,false);
+	 if (nd == null) continue;
+	 Branch b = nd.getBassParent();
+	 if (b.removeNode(ba)) --leaf_count;
+	 name_index.removeName(ba);
+	 chng.add(b);
+       }
+      for (BassName ba : adds) {
+	 // names loaded after the tree was built may already be in it
+	 if (name_index.contains(ba)) continue;
+	 BassTreeImpl nd = root_node.addNode(ba,true);
+	 name_index.addName(ba);
+	 if (nd == null) continue;
+	 if (nd.isLeaf()) ++leaf_count;
+	 if (nd.getBassParent() != null) chng.add(nd.getBassParent());
+       }
+
+      Set<BassTreeBase> done = new HashSet<BassTreeBase>();
+      List<BassTreeBase []> paths = new ArrayList<BassTreeBase []>();
+      for (Branch b : chng) {
+	 Branch pb = removeEmptyBranches(b);
+	 if (!done.add(pb)) continue;
+	 paths.add(pb.getTreePath());
+       }
+
+      max_childcount = root_node.getMaxCount();
+
+      UpdateEvent evt = new UpdateEvent(adds,dels,paths);
+      for (BassTreeUpdateListener ul : listener_set) {
+	 ul.handleTreeUpdated(evt);
+       }
+    }
+   finally { writeUnlock(); }
+}
+
+
+
+private Branch removeEmptyBranches(Branch b)
+{
+   // remove branches emptied by an update; return the first one that remains
+   while (b.getBassParent() != null) {
+      Branch p = b.getBassParent();
+      if (p.getIndex(b) < 0) b = p;
+      else if (b.getChildCount() == 0) {
+	 p.child_nodes.remove(b);
+	 b = p;
+       }
+      else break;
+    }
+
+   return b;
+}
+
+
+
 
 
 private void removeNode(BassName nm)
@@ -434,14 +607,17 @@ private static class UpdateEvent implements BassTreeUpdateEvent {
 
    private Collection<BassName> names_removed;
    private Collection<BassName> names_added;
+   private Collection<BassTreeBase []> changed_paths;
 
-   UpdateEvent(Collection<BassName> na,Collection<BassName> nr) {
+   UpdateEvent(Collection<BassName> na,Collection<BassName> nr,Collection<BassTreeBase []> paths) {
       names_added = na;
       names_removed = nr;
+      changed_paths = paths;
     }
 
    @Override public Collection<BassName> getNamesRemoved()	{ return names_removed; }
    @Override public Collection<BassName> getNamesAdded()	{ return names_added; }
+   @Override public Collection<BassTreeBase []> getChangedPaths() { return changed_paths; }
 
 }	// end of inner class UpdateEvent
 
@@ -702,6 +878,14 @@ private static class Branch extends BassTreeImpl {
    @Override public String getFullName()		{ return full_name; }
    Branch getBassParent()				{ return parent_node; }
 
+   BassTreeBase [] getTreePath() {
+      int ct = 0;
+      for (Branch b = this; b != null; b = b.getBassParent()) ++ct;
+      BassTreeBase [] rslt = new BassTreeBase[ct];
+      for (Branch b = this; b != null; b = b.getBassParent()) rslt[--ct] = b;
+      return rslt;
+    }
+
    void collapseSingletons() {
       if (parent_node != null) {
 	 Branch cn = this;
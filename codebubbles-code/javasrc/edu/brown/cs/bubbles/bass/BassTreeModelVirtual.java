@@ -61,6 +61,9 @@ private String			cur_prefix;
 private int			leaf_count;
 private boolean 		case_sensitive;
 private Collection<TreeModelListener>  listener_set;
+private Set<BassName>		match_candidates;
+private TreePath		best_match;
+private int			best_score;
 
 private static final BassTreeBase [] EMPTY = new BassTreeBase[0];
 
@@ -99,6 +102,9 @@ private BassTreeModelVirtual(BassTreeModelBase base,String proj,String clspfx)
    leaf_count = base.getLeafCount();
    case_sensitive = false;
    cur_prefix = "";
+   match_candidates = null;
+   best_match = null;
+   best_score = -1;
 
    if (initial_project != null || initial_prefix != null) {
       String pfx = null;
@@ -205,6 +211,7 @@ private BassTreeModelVirtual(BassTreeModelBase base,String proj,String clspfx)
    base_model.readLock();
    try {
       BassNamePattern pat = new BassNamePattern(txt,case_sensitive);
+      startMatch(pat);
 
       Stack<BassTreeBase> pars = new Stack<BassTreeBase>();
 
@@ -212,7 +219,10 @@ private BassTreeModelVirtual(BassTreeModelBase base,String proj,String clspfx)
 
       cur_prefix = txt;
     }
-   finally { base_model.readUnlock(); }
+   finally {
+      match_candidates = null;
+      base_model.readUnlock();
+    }
 }
 
 
@@ -220,7 +230,7 @@ private BassTreeModelVirtual(BassTreeModelBase base,String proj,String clspfx)
 private boolean prune(Stack<BassTreeBase> pars,BassTreeBase node,BassNamePattern pat,boolean upd)
 {
    if (node.isLeaf()) {
-      boolean fg = pat.match(node.getBassName()) >= 0;
+      boolean fg = matchLeaf(pars,node,pat);
       if (!fg) --leaf_count;
       return fg;
     }
@@ -299,6 +309,7 @@ private boolean prune(Stack<BassTreeBase> pars,BassTreeBase node,BassNamePattern
    base_model.readLock();
    try {
       BassNamePattern pat = new BassNamePattern(txt,case_sensitive);
+      startMatch(pat);
 
       Stack<BassTreeBase> pars = new Stack<BassTreeBase>();
 
@@ -308,7 +319,10 @@ private boolean prune(Stack<BassTreeBase> pars,BassTreeBase node,BassNamePattern
 
       leaf_count = active_nodes.getLeafCount(base_model.getRoot());
     }
-   finally { base_model.readUnlock(); }
+   finally {
+      match_candidates = null;
+      base_model.readUnlock();
+    }
 }
 
 
@@ -316,7 +330,7 @@ private boolean prune(Stack<BassTreeBase> pars,BassTreeBase node,BassNamePattern
 
 private boolean reset(Stack<BassTreeBase> pars,BassTreeBase node,BassNamePattern pat,boolean upd)
 {
-   if (node.isLeaf()) return pat.match(node.getBassName()) >= 0;
+   if (node.isLeaf()) return matchLeaf(pars,node,pat);
 
    Map<BassTreeBase,Integer> removed = null;
    List<BassTreeBase> keep = null;
@@ -438,6 +452,50 @@ private boolean reset(Stack<BassTreeBase> pars,BassTreeBase node,BassNamePattern
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Leaf matching and ranking						*/
+/*										*/
+/********************************************************************************/
+
+private void startMatch(BassNamePattern pat)
+{
+   match_candidates = base_model.getNameIndex().findCandidates(pat);
+   best_match = null;
+   best_score = -1;
+}
+
+
+
+private boolean matchLeaf(Stack<BassTreeBase> pars,BassTreeBase node,BassNamePattern pat)
+{
+   BassName bn = node.getBassName();
+   if (match_candidates != null && !match_candidates.contains(bn)) return false;
+
+   int v = pat.match(bn);
+   if (v < 0) return false;
+
+   if (v > best_score) {
+      Object [] path = new Object[pars.size() + 1];
+      path = pars.toArray(path);
+      path[pars.size()] = node;
+      best_match = new TreePath(path);
+      best_score = v;
+    }
+
+   return true;
+}
+
+
+
+@Override public TreePath getBestMatch()
+{
+   return best_match;
+}
+
+
+
+
 @Override public void globalUpdate()
 {
    Object [] spath = new Object[1];
@@ -461,7 +519,53 @@ private boolean reset(Stack<BassTreeBase> pars,BassTreeBase node,BassNamePattern
 
 @Override public void handleTreeUpdated(BassTreeUpdateEvent evt)
 {
-   updateAll();
+   Collection<BassTreeBase []> paths = evt.getChangedPaths();
+   if (paths == null || cur_prefix == null) {
+      updateAll();
+      return;
+    }
+
+   base_model.readLock();
+   try {
+      BassNamePattern pat = new BassNamePattern(cur_prefix,case_sensitive);
+      match_candidates = base_model.getNameIndex().findCandidates(pat);
+      for (BassTreeBase [] path : paths) {
+	 updatePath(path,pat);
+       }
+      leaf_count = active_nodes.getLeafCount(base_model.getRoot());
+    }
+   finally {
+      match_candidates = null;
+      base_model.readUnlock();
+    }
+}
+
+
+
+private void updatePath(BassTreeBase [] path,BassNamePattern pat)
+{
+   // start at the deepest branch on the path that is currently displayed
+   int ln = 1;
+   while (ln < path.length && active_nodes.getIndexOfChild(path[ln-1],path[ln]) >= 0) ++ln;
+
+   Stack<BassTreeBase> pars = new Stack<BassTreeBase>();
+   for (int i = 0; i < ln-1; ++i) pars.push(path[i]);
+
+   // move up if the branch no longer has anything to display
+   while (!reset(pars,path[ln-1],pat,false) && !pars.isEmpty()) {
+      pars.pop();
+      --ln;
+    }
+
+   Object [] tpath = new Object[ln];
+   System.arraycopy(path,0,tpath,0,ln);
+   TreeModelEvent cevt = new TreeModelEvent(this,tpath);
+
+   synchronized (listener_set) {
+      for (TreeModelListener tml : listener_set) {
+	 tml.treeStructureChanged(cevt);
+       }
+    }
 }
 
 
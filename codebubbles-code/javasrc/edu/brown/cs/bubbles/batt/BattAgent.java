@@ -31,6 +31,8 @@ import java.io.*;
 import java.lang.instrument.Instrumentation;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 
 
@@ -60,6 +62,16 @@ public static void agentmain(String args,Instrumentation inst)
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Access methods								*/
+/*										*/
+/********************************************************************************/
+
+static BattAgent getAgent()			{ return the_agent; }
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Private storage 							*/
@@ -69,13 +81,18 @@ public static void agentmain(String args,Instrumentation inst)
 private Instrumentation 	class_inst;
 private BattInstrument		our_instrumenter;
 private int			id_counter;
-private String			active_test;
+private volatile String 	active_test;
 private IndexTable		index_table;
-private Map<Thread,ThreadData>	thread_stack;
+private Map<String,Integer>	method_ids;
+private ThreadLocal<ThreadData> thread_stack;
 private OutputStream		result_stream;
 
 private static BattAgent	the_agent;
 
+private static final int	COUNT_CHUNK_BITS = 10;
+private static final int	COUNT_CHUNK_SIZE = 1 << COUNT_CHUNK_BITS;
+private static final int	MAX_COUNT_STRIPES = 8;
+
 
 
 
@@ -90,8 +107,9 @@ private BattAgent(String args,Instrumentation inst)
    class_inst = inst;
    active_test = null;
    index_table = new IndexTable();
+   method_ids = new HashMap<String,Integer>();
    result_stream = null;
-   thread_stack = new HashMap<Thread,ThreadData>();
+   thread_stack = new ThreadStack();
 
    // System.err.println("BATTAGENT: START " + args + " " + inst);
 
@@ -296,11 +314,12 @@ private void enterMethod(int id)
 {
    if (active_test != null) {
       RtMethod rm = index_table.getMethod(id);
-      rm.markEntry();
       ThreadData td = getThreadData();
+      int stripe = td.getStripe();
+      index_table.markEntry(id,stripe);
       RtMethod fm = td.enterMethod(rm);
       if (fm != null) fm.markCall(rm);
-      if (fm == null || td.getLevel() <= 2) rm.markTop();
+      if (fm == null || td.getLevel() <= 2) index_table.markTop(id,stripe);
     }
 }
 
@@ -319,10 +338,11 @@ private void enterBlock(int id)
 {
    if (active_test != null) {
       RtBlock rb = index_table.getBlock(id);
-      rb.markEntry();
       ThreadData td = getThreadData();
+      int stripe = td.getStripe();
+      index_table.markEntry(id,stripe);
       RtBlock fb = td.enterBlock(rb);
-      if (fb != null) fb.markBranch(rb);
+      if (fb != null) fb.markBranch(rb,index_table,stripe);
     }
 }
 
@@ -341,20 +361,35 @@ private void userClasses(String [] clsset)
 /*										*/
 /********************************************************************************/
 
-int getMethodId(String clsname,String name,String desc)
+synchronized int getMethodId(String clsname,String name,String desc)
 {
+   // a class loaded again (e.g. by a test worker) keeps its ids
+   String key = clsname + "." + name + desc;
+   Integer oid = method_ids.get(key);
+   if (oid != null) {
+      index_table.getMethod(oid).restart();
+      return oid;
+    }
+
    int mid = ++id_counter;
 
    RtMethod rm = new RtMethod(mid,clsname,name,desc);
    index_table.setElement(mid,rm);
+   method_ids.put(key,mid);
 
    return mid;
 }
 
 
 
-int getBlockId(int mid,int offset)
+synchronized int getBlockId(int mid,int offset)
 {
+   if (mid > 0) {
+      RtMethod rm = index_table.getMethod(mid);
+      RtBlock orb = rm.reuseBlock(offset);
+      if (orb != null) return orb.getIndex();
+    }
+
    int bid = ++id_counter;
    RtBlock rb = new RtBlock(bid,offset);
    index_table.setElement(bid,rb);
@@ -398,33 +433,65 @@ private void outputTestResult(String nm,XMLStreamWriter xw) throws XMLStreamExce
 /*										*/
 /********************************************************************************/
 
+/**
+ *	Table of run time items along with their counts.  The counts are kept
+ *	here in striped arrays indexed by id rather than in the items so that
+ *	probes from different threads neither lock nor lose updates.
+ **/
+
 private static class IndexTable {
 
-   private RtItem []	the_table;
+   private volatile RtItem [] the_table;
+   private CountTable	entry_counts;
+   private CountTable	top_counts;
+   private CountTable	next_counts;
+   private CountTable	alt_counts;
 
    IndexTable() {
       the_table = new RtItem[10240];
       Arrays.fill(the_table,null);
+      int nstripe = CountTable.getStripeCount();
+      entry_counts = new CountTable(nstripe);
+      top_counts = new CountTable(nstripe);
+      next_counts = new CountTable(nstripe);
+      alt_counts = new CountTable(nstripe);
     }
 
    void setElement(int idx,RtItem itm) {
-      if (idx >= the_table.length) {
-	 int nln = the_table.length * 2;
-	 if (idx >= nln) nln = the_table.length + idx;
-	 the_table = Arrays.copyOf(the_table,nln);
+      RtItem [] tbl = the_table;
+      if (idx >= tbl.length) {
+	 int nln = tbl.length * 2;
+	 if (idx >= nln) nln = tbl.length + idx;
+	 tbl = Arrays.copyOf(tbl,nln);
        }
-      the_table[idx] = itm;
+      entry_counts.ensureSize(idx);
+      top_counts.ensureSize(idx);
+      next_counts.ensureSize(idx);
+      alt_counts.ensureSize(idx);
+      tbl[idx] = itm;
+      the_table = tbl;
     }
 
    RtMethod getMethod(int idx)		{ return (RtMethod) the_table[idx]; }
    RtBlock getBlock(int idx)		{ return (RtBlock) the_table[idx]; }
    RtItem getItem(int idx)		{ return the_table[idx]; }
 
+   void markEntry(int idx,int stripe)	{ entry_counts.increment(idx,stripe); }
+   void markTop(int idx,int stripe)	{ top_counts.increment(idx,stripe); }
+   void markNext(int idx,int stripe)	{ next_counts.increment(idx,stripe); }
+   void markAlt(int idx,int stripe)	{ alt_counts.increment(idx,stripe); }
+
+   int takeEntryCount(int idx)		{ return entry_counts.getAndClear(idx); }
+   int takeTopCount(int idx)		{ return top_counts.getAndClear(idx); }
+   int takeNextCount(int idx)		{ return next_counts.getAndClear(idx); }
+   int takeAltCount(int idx)		{ return alt_counts.getAndClear(idx); }
+
    void outputCounts(XMLStreamWriter xw) throws XMLStreamException {
-      for (int i = 0; i < the_table.length; ++i) {
-	 if (the_table[i] != null && the_table[i] instanceof RtMethod) {
-	    RtMethod rm = (RtMethod) the_table[i];
-	    rm.outputCounts(xw);
+      RtItem [] tbl = the_table;
+      for (int i = 0; i < tbl.length; ++i) {
+	 if (tbl[i] != null && tbl[i] instanceof RtMethod) {
+	    RtMethod rm = (RtMethod) tbl[i];
+	    rm.outputCounts(this,xw);
 	  }
        }
     }
@@ -433,6 +500,71 @@ private static class IndexTable {
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Striped counters indexed by id						*/
+/*										*/
+/********************************************************************************/
+
+/**
+ *	Each thread increments its own stripe of a counter; the value is the
+ *	sum over the stripes.  Counters are allocated in fixed size chunks that
+ *	never move, so growing the table cannot lose a concurrent increment.
+ **/
+
+private static class CountTable {
+
+   private volatile AtomicIntegerArray [] count_chunks;
+   private int num_stripes;
+
+   CountTable(int nstripe) {
+      num_stripes = nstripe;
+      count_chunks = new AtomicIntegerArray[16];
+    }
+
+   static int getStripeCount() {
+      int n = Runtime.getRuntime().availableProcessors();
+      int ct = 1;
+      while (ct < n && ct < MAX_COUNT_STRIPES) ct *= 2;
+      return ct;
+    }
+
+   void ensureSize(int idx) {
+      int cidx = idx >> COUNT_CHUNK_BITS;
+      AtomicIntegerArray [] chunks = count_chunks;
+      if (cidx >= chunks.length) {
+	 chunks = Arrays.copyOf(chunks,Math.max(chunks.length*2,cidx+1));
+       }
+      if (chunks[cidx] == null) {
+	 chunks[cidx] = new AtomicIntegerArray(COUNT_CHUNK_SIZE * num_stripes);
+       }
+      count_chunks = chunks;
+    }
+
+   void increment(int idx,int stripe) {
+      AtomicIntegerArray chunk = count_chunks[idx >> COUNT_CHUNK_BITS];
+      chunk.getAndIncrement(getSlot(idx,stripe));
+    }
+
+   int getAndClear(int idx) {
+      // increments made while summing go into the next total, not lost
+      AtomicIntegerArray chunk = count_chunks[idx >> COUNT_CHUNK_BITS];
+      int tot = 0;
+      for (int i = 0; i < num_stripes; ++i) {
+	 tot += chunk.getAndSet(getSlot(idx,i),0);
+       }
+      return tot;
+    }
+
+   private int getSlot(int idx,int stripe) {
+      // stripes are kept apart so different threads touch different cache lines
+      return (stripe & (num_stripes-1)) * COUNT_CHUNK_SIZE + (idx & (COUNT_CHUNK_SIZE-1));
+    }
+
+}	// end of inner class CountTable
+
+
+
 
 
 /********************************************************************************/
@@ -454,6 +586,8 @@ private static abstract class RtItem {
 
    int getIndex()			{ return item_index; }
 
+   void resetLines()			{ start_line = end_line = -1; }
+
    void noteLine(int lno) {
       if (start_line < 0 || lno < start_line) start_line = lno;
       if (end_line < 0 || lno > end_line) end_line = lno;
@@ -476,8 +610,7 @@ private static class RtMethod extends RtItem {
    private String class_name;
    private String method_desc;
    private List<RtBlock> basic_blocks;
-   private int entry_count;
-   private int top_count;
+   private List<RtBlock> old_blocks;
    private Map<RtMethod,Counter> calls_count;
 
    RtMethod(int idx,String cnm,String nm,String dc) {
@@ -488,16 +621,34 @@ private static class RtMethod extends RtItem {
       start_line = -1;
       end_line = -1;
       basic_blocks = new ArrayList<RtBlock>();
-      entry_count = 0;
-      top_count = 0;
+      old_blocks = null;
       calls_count = null;
     }
 
-   void addBlock(RtBlock rb)		{ basic_blocks.add(rb); }
+   synchronized void addBlock(RtBlock rb)	{ basic_blocks.add(rb); }
+
+   synchronized void restart() {
+      // blocks are matched up again by offset as the new code is instrumented
+      old_blocks = basic_blocks;
+      basic_blocks = new ArrayList<RtBlock>();
+      resetLines();
+    }
 
-   void markEntry()			{ ++entry_count; }
+   synchronized RtBlock reuseBlock(int off) {
+      if (old_blocks == null) return null;
+      for (Iterator<RtBlock> it = old_blocks.iterator(); it.hasNext(); ) {
+	 RtBlock rb = it.next();
+	 if (rb.getOffset() == off) {
+	    it.remove();
+	    rb.resetLines();
+	    basic_blocks.add(rb);
+	    return rb;
+	  }
+       }
+      return null;
+    }
 
-   void markCall(RtMethod rm) {
+   synchronized void markCall(RtMethod rm) {
       if (calls_count == null) calls_count = new HashMap<RtMethod,Counter>();
       Counter c = calls_count.get(rm);
       if (c == null) {
@@ -507,14 +658,14 @@ private static class RtMethod extends RtItem {
       c.incr();
     }
 
-   void markTop()			{ ++top_count; }
-
-   void outputCounts(XMLStreamWriter xw) throws XMLStreamException {
-      if (entry_count == 0) return;
+   synchronized void outputCounts(IndexTable tbl,XMLStreamWriter xw) throws XMLStreamException {
+      int idx = getIndex();
+      int ect = tbl.takeEntryCount(idx);
+      if (ect == 0) return;
       xw.writeStartElement("METHOD");
       outputFields(xw);
-      xw.writeAttribute("COUNT",Integer.toString(entry_count));
-      xw.writeAttribute("TOP",Integer.toString(top_count));
+      xw.writeAttribute("COUNT",Integer.toString(ect));
+      xw.writeAttribute("TOP",Integer.toString(tbl.takeTopCount(idx)));
       if (calls_count != null) {
 	 for (Map.Entry<RtMethod,Counter> ent : calls_count.entrySet()) {
 	    RtMethod cm = ent.getKey();
@@ -526,10 +677,9 @@ private static class RtMethod extends RtItem {
 	  }
        }
       for (RtBlock rb : basic_blocks) {
-	 rb.outputCounts(xw);
+	 rb.outputCounts(tbl,xw);
        }
       xw.writeEndElement();
-      entry_count = 0;
       calls_count = null;
     }
 
@@ -556,11 +706,8 @@ private static class RtMethod extends RtItem {
 private static class RtBlock extends RtItem {
 
    private int code_offset;
-   private int use_count;
-   private RtBlock next_block;
-   private int next_count;
-   private RtBlock alt_block;
-   private int alt_count;
+   private volatile RtBlock next_block;
+   private volatile RtBlock alt_block;
    private Map<RtBlock,Counter> other_blocks;
 
    RtBlock(int idx,int off) {
@@ -568,26 +715,29 @@ private static class RtBlock extends RtItem {
       code_offset = off;
       start_line = -1;
       end_line = -1;
-      use_count = 0;
       next_block = null;
-      next_count = 0;
       alt_block = null;
-      alt_count = 0;
       other_blocks = null;
     }
 
-   void markEntry()				{ ++use_count; }
+   int getOffset()				{ return code_offset; }
+
+   void markBranch(RtBlock tb,IndexTable tbl,int stripe) {
+      if (tb == next_block) tbl.markNext(getIndex(),stripe);
+      else if (tb == alt_block) tbl.markAlt(getIndex(),stripe);
+      else addBranch(tb,tbl,stripe);
+    }
 
-   void markBranch(RtBlock tb) {
-      if (tb == next_block) ++next_count;
-      else if (tb == alt_block) ++alt_count;
+   private synchronized void addBranch(RtBlock tb,IndexTable tbl,int stripe) {
+      if (tb == next_block) tbl.markNext(getIndex(),stripe);
+      else if (tb == alt_block) tbl.markAlt(getIndex(),stripe);
       else if (next_block == null) {
 	 next_block = tb;
-	 next_count = 1;
+	 tbl.markNext(getIndex(),stripe);
        }
       else if (alt_block == null) {
 	 alt_block = tb;
-	 alt_count = 1;
+	 tbl.markAlt(getIndex(),stripe);
        }
       else {
 	 if (other_blocks == null) other_blocks = new HashMap<RtBlock,Counter>();
@@ -600,8 +750,10 @@ private static class RtBlock extends RtItem {
        }
     }
 
-   void outputCounts(XMLStreamWriter xw) throws XMLStreamException {
-      if (use_count == 0) return;
+   synchronized void outputCounts(IndexTable tbl,XMLStreamWriter xw) throws XMLStreamException {
+      int idx = getIndex();
+      int uct = tbl.takeEntryCount(idx);
+      if (uct == 0) return;
 
       xw.writeStartElement("BLOCK");
       xw.writeAttribute("INDEX",Integer.toString(getIndex()));
@@ -610,9 +762,12 @@ private static class RtBlock extends RtItem {
 	 xw.writeAttribute("START",Integer.toString(start_line));
 	 xw.writeAttribute("END",Integer.toString(end_line));
        }
-      xw.writeAttribute("COUNT",Integer.toString(use_count));
-      if (next_block != null) outputBranch(xw,next_block,next_count);
-      if (alt_block != null) outputBranch(xw,alt_block,alt_count);
+      xw.writeAttribute("COUNT",Integer.toString(uct));
+      // next_block and alt_block are kept since probes read them unlocked
+      int nct = tbl.takeNextCount(idx);
+      if (next_block != null && nct > 0) outputBranch(xw,next_block,nct);
+      int act = tbl.takeAltCount(idx);
+      if (alt_block != null && act > 0) outputBranch(xw,alt_block,act);
       if (other_blocks != null) {
 	 for (Map.Entry<RtBlock,Counter> ent : other_blocks.entrySet()) {
 	    RtBlock nb = ent.getKey();
@@ -622,10 +777,6 @@ private static class RtBlock extends RtItem {
        }
       xw.writeEndElement();
 
-      next_block = null;
-      next_count = 0;
-      alt_block = null;
-      alt_count = 0;
       other_blocks = null;
     }
 
@@ -670,31 +821,41 @@ private static class Counter {
 
 private ThreadData getThreadData()
 {
-   Thread th = Thread.currentThread();
-   ThreadData td = thread_stack.get(th);
-   if (td == null) {
-      synchronized (thread_stack) {
-	 td = new ThreadData();
-	 thread_stack.put(th,td);
-       }
-    }
-   return td;
+   return thread_stack.get();
 }
 
 
 
+private static class ThreadStack extends ThreadLocal<ThreadData> {
+
+   private AtomicInteger thread_counter;
+
+   ThreadStack() {
+      thread_counter = new AtomicInteger();
+    }
+
+   @Override protected ThreadData initialValue() {
+      return new ThreadData(thread_counter.getAndIncrement());
+    }
+
+}	// end of inner class ThreadStack
+
+
+
 private static class ThreadData {
 
    private RtMethod method_id;
    private RtBlock block_id;
    private ThreadData from_data;
    private int call_level;
+   private int count_stripe;
 
-   ThreadData() {
+   ThreadData(int stripe) {
       method_id = null;
       block_id = null;
       from_data = null;
       call_level = 0;
+      count_stripe = stripe;
     }
 
    private ThreadData(RtMethod rm,RtBlock rb,ThreadData td) {
@@ -702,9 +863,11 @@ private static class ThreadData {
       block_id = rb;
       from_data = td;
       call_level = 0;
+      count_stripe = 0;
     }
 
    int getLevel()			{ return call_level; }
+   int getStripe()			{ return count_stripe; }
 
    RtMethod enterMethod(RtMethod rm) {
       from_data = new ThreadData(rm,block_id,from_data);
@@ -0,0 +1,221 @@
+/********************************************************************************/
+/*										*/
+/*		BattAgentTest.java						*/
+/*										*/
+/*	Bubbles Automated Testing Tool agent probe benchmark			*/
+/*										*/
+/********************************************************************************/
+/*	Copyright 2011 Brown University -- Steven P. Reiss		      */
+/*********************************************************************************
+ *  Copyright 2011, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+/* RCS: $Header$ */
+
+/*********************************************************************************
+ *
+ * $Log$
+ *
+ ********************************************************************************/
+
+
+package edu.brown.cs.bubbles.batt;
+
+import edu.brown.cs.ivy.xml.IvyXml;
+
+import org.w3c.dom.Element;
+
+import java.io.File;
+import java.io.IOException;
+
+
+/**
+ *	Time the agent's probes with several threads hitting the same method
+ *	and blocks, then check that no counts were lost.  Arguments are the
+ *	number of threads and the number of iterations per thread.
+ **/
+
+public class BattAgentTest implements BattConstants
+{
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Main program								*/
+/*										*/
+/********************************************************************************/
+
+public static void main(String [] args)
+{
+   BattAgentTest bt = new BattAgentTest(args);
+
+   bt.runTest();
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Private storage 							*/
+/*										*/
+/********************************************************************************/
+
+private int	num_threads;
+private int	num_iterations;
+private int	method_id;
+private int	first_block;
+private int	second_block;
+
+private static final int	PAD_METHODS = 3000;
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Constructors								*/
+/*										*/
+/********************************************************************************/
+
+private BattAgentTest(String [] args)
+{
+   num_threads = 8;
+   num_iterations = 1000000;
+
+   if (args.length > 0) num_threads = Integer.parseInt(args[0]);
+   if (args.length > 1) num_iterations = Integer.parseInt(args[1]);
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Testing methods 							*/
+/*										*/
+/********************************************************************************/
+
+private void runTest()
+{
+   File f = null;
+   try {
+      f = File.createTempFile("battagent",".xml");
+      f.deleteOnExit();
+    }
+   catch (IOException e) {
+      System.err.println("BATTAGENTTEST: Can't create output file: " + e);
+      System.exit(1);
+    }
+
+   BattAgent.premain("COUNTS=" + f.getPath(),null);
+   BattAgent ag = BattAgent.getAgent();
+
+   method_id = ag.getMethodId("test/Bench","probe","()V");
+   first_block = ag.getBlockId(method_id,0);
+   second_block = ag.getBlockId(method_id,4);
+   // spread the ids over several count chunks
+   for (int i = 0; i < PAD_METHODS; ++i) ag.getMethodId("test/Pad","m" + i,"()V");
+
+   BattAgent.handleStartTest("bench");
+
+   Thread [] thrds = new Thread[num_threads];
+   long start = System.nanoTime();
+   for (int i = 0; i < num_threads; ++i) {
+      thrds[i] = new Prober();
+      thrds[i].start();
+    }
+   for (Thread t : thrds) {
+      try {
+	 t.join();
+       }
+      catch (InterruptedException e) { }
+    }
+   long time = System.nanoTime() - start;
+
+   BattAgent.handleFinishTest("bench");
+   BattAgent.handleFinishRun();
+
+   double nprobe = 4.0 * num_threads * num_iterations;
+   System.err.println("BATTAGENTTEST: " + num_threads + " threads, " +
+			 String.format("%.2f",time / nprobe) + " ns/probe");
+
+   System.exit(checkCounts(f) ? 0 : 1);
+}
+
+
+
+private boolean checkCounts(File f)
+{
+   Element xml = IvyXml.loadXmlFromFile(f);
+   Element me = IvyXml.getChild(xml,"METHOD");
+   if (me == null) {
+      System.err.println("BATTAGENTTEST: No counts reported");
+      return false;
+    }
+
+   long expect = ((long) num_threads) * num_iterations;
+   boolean ok = checkCount("method",IvyXml.getAttrLong(me,"COUNT"),expect);
+   for (Element be : IvyXml.children(me,"BLOCK")) {
+      int idx = IvyXml.getAttrInt(be,"INDEX");
+      ok &= checkCount("block " + idx,IvyXml.getAttrLong(be,"COUNT"),expect);
+      if (idx == first_block) {
+	 Element br = IvyXml.getChild(be,"BRANCH");
+	 long bct = (br == null ? 0 : IvyXml.getAttrLong(br,"COUNT"));
+	 ok &= checkCount("branch " + idx,bct,expect);
+       }
+    }
+
+   return ok;
+}
+
+
+
+private boolean checkCount(String what,long ct,long expect)
+{
+   if (ct == expect) return true;
+
+   System.err.println("BATTAGENTTEST: Count for " + what + " is " + ct + " rather than " + expect);
+   return false;
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Thread to run probes							*/
+/*										*/
+/********************************************************************************/
+
+private class Prober extends Thread {
+
+   Prober() {
+      super("BattAgentTestProber");
+    }
+
+   @Override public void run() {
+      for (int i = 0; i < num_iterations; ++i) {
+	 BattAgent.handleEntry(method_id);
+	 BattAgent.handleBlockEntry(first_block);
+	 BattAgent.handleBlockEntry(second_block);
+	 BattAgent.handleExit(method_id);
+       }
+    }
+
+}	// end of inner class Prober
+
+
+
+}	// end of class BattAgentTest
+
+
+
+
+/* end of BattAgentTest.java */
@@ -106,6 +106,21 @@ enum RunType {
 
 
 
+
+/********************************************************************************/
+/*										*/
+/*	Test sharding definitions						*/
+/*										*/
+/********************************************************************************/
+
+long	MIN_SHARD_TIME = 2000;		// least expected work worth a process (ms)
+long	DEFAULT_TEST_TIME = 100;	// assumed time for a test with no history
+long	DEFAULT_CLASS_TIME = 500;	// assumed time for a class with no known tests
+
+long	WORKER_START_TIME = 30000;	// time to wait for a test worker to connect
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Menu and button definitions						*/
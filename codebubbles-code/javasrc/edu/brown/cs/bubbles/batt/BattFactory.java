@@ -336,6 +336,12 @@ void startBattServer()
       else args.add("-S");
       args.add("-m");
       args.add(bs.getMintName());
+      if (!batt_props.getBoolean("Batt.workers",true)) args.add("-F");
+      int nshard = batt_props.getInt("Batt.shards",0);
+      if (nshard > 0) {
+	 args.add("-s");
+	 args.add(Integer.toString(nshard));
+       }
 
       String s0 = bs.getLibraryPath("junit.jar");
       String s1 = bs.getLibraryPath("battjunit.jar");
@@ -53,6 +53,7 @@ private int		method_id;
 private int		block_id;
 private CodeSizeEvaluator size_eval;
 private Set<String>	user_classes;
+private Map<String,CachedClass> class_cache;
 
 private static boolean	do_debug = false;
 
@@ -60,6 +61,7 @@ private static boolean	do_debug = false;
 private static final String [] SYSTEM_PACKAGES = new String [] {
    "java/",
    "javax/",
+   "jdk/",
    "org/junit/",
    "org/hamcrest/",
    "junit/",
@@ -83,6 +85,7 @@ BattInstrument(BattAgent agt)
    for_agent = agt;
    class_name = null;
    user_classes = null;
+   class_cache = new HashMap<String,CachedClass>();
 }
 
 
@@ -104,12 +107,15 @@ void setClasses(String [] clsset)
       // System.err.println("BATTAGENT: ADD CLASS " + s);
     }
 
+   // a test worker loads user classes through the context class loader
+   ClassLoader ldr = Thread.currentThread().getContextClassLoader();
    for (String s : user_classes) {
       String s1 = s.replace("/",".");
       String s2 = s1.replace("$",".");
       try {
 	 // System.err.println("BATTAGENT: TRY " + s2);
-	 Class.forName(s2);
+	 if (ldr == null) Class.forName(s2);
+	 else Class.forName(s2,true,ldr);
        }
       catch (Throwable t) { }
     }
@@ -136,7 +142,7 @@ public byte [] transform(ClassLoader ldr,String name,Class<?> cls,
    else if (!user_classes.contains(name)) return null;
 
    try {
-      return instrument(name,buf);
+      return instrumentCached(name,buf);
     }
    catch (Throwable t) {
       System.err.println("BATT: Instrumentation issue: " + t);
@@ -147,6 +153,26 @@ public byte [] transform(ClassLoader ldr,String name,Class<?> cls,
 
 
 
+/**
+ *	A test worker reloads the project classes for each run.  Classes whose
+ *	bytes have not changed get the same instrumented code, and so the same
+ *	ids, without being instrumented again.
+ **/
+
+private synchronized byte [] instrumentCached(String name,byte [] buf)
+{
+   CachedClass cc = class_cache.get(name);
+   if (cc != null && cc.matches(buf)) return cc.getResult();
+
+   byte [] rslt = instrument(name,buf);
+   if (rslt != null) class_cache.put(name,new CachedClass(buf,rslt));
+   else class_cache.remove(name);
+
+   return rslt;
+}
+
+
+
 private byte [] instrument(String name,byte [] buf)
 {
    // System.err.println("BATTAGENT: INSTRUMENT " + name + " " + buf.length);
@@ -422,6 +448,30 @@ private static class Tracer extends TraceMethodVisitor {
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Cache of instrumented class files					*/
+/*										*/
+/********************************************************************************/
+
+private static class CachedClass {
+
+   private byte [] original_code;
+   private byte [] result_code;
+
+   CachedClass(byte [] orig,byte [] rslt) {
+      original_code = orig.clone();
+      result_code = rslt;
+    }
+
+   boolean matches(byte [] buf)			{ return Arrays.equals(original_code,buf); }
+
+   byte [] getResult()				{ return result_code.clone(); }
+
+}	// end of inner class CachedClass
+
+
+
 }	// end of class BattInstrument
 
 
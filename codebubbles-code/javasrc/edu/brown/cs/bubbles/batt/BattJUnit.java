@@ -57,7 +57,8 @@ public static void main(String [] args)
 {
    BattJUnit bj = new BattJUnit(args);
 
-   bj.process();
+   if (bj.worker_id != null) bj.processRequests();
+   else bj.process();
 }
 
 
@@ -72,8 +73,12 @@ public static void main(String [] args)
 private boolean 	list_only;
 private String		result_file;
 private OutputStream	result_stream;
+private Socket		result_socket;
 private Class<?> []	class_set;
 private Map<Description,JunitTest> test_cases;
+private String		worker_id;
+private String		project_path;
+private ClassLoader	class_loader;
 
 private static final JunitTestStatus STATUS_RUNNING;
 private static final JunitTestStatus STATUS_UNKNOWN;
@@ -125,7 +130,11 @@ private BattJUnit(String [] args)
    class_set = null;
    result_file = "batt.out";
    result_stream = null;
+   result_socket = null;
    test_cases = new HashMap<Description,JunitTest>();
+   worker_id = null;
+   project_path = null;
+   class_loader = BattJUnit.class.getClassLoader();
 
    scanArgs(args);
 }
@@ -143,7 +152,6 @@ private void scanArgs(String [] args)
 {
    List<String> clsstr = new ArrayList<String>();
    List<String> tststr = new ArrayList<String>();
-   List<Class<?>> clss = new ArrayList<Class<?>>();
 
    boolean havecls = false;
    boolean useall = false;
@@ -163,6 +171,12 @@ private void scanArgs(String [] args)
 	 else if (args[i].startsWith("-a")) {                           // -all
 	    useall = true;
 	  }
+	 else if (args[i].startsWith("-d") && i+1 < args.length) {      // -daemon <id>
+	    worker_id = args[++i];
+	  }
+	 else if (args[i].startsWith("-p") && i+1 < args.length) {      // -path <classpath>
+	    project_path = args[++i];
+	  }
 	 else badArgs();
        }
       else {
@@ -179,6 +193,25 @@ private void scanArgs(String [] args)
 
     }
 
+   if (worker_id == null) setupClasses(clsstr,tststr);
+
+   if (result_stream == null && result_file != null) {
+      try {
+	 result_stream = new FileOutputStream(result_file);
+       }
+      catch (IOException e) {
+	 System.err.println("BATT: Couldn't open output file: " + e);
+	 System.exit(1);
+       }
+    }
+}
+
+
+
+private void setupClasses(List<String> clsstr,List<String> tststr)
+{
+   List<Class<?>> clss = new ArrayList<Class<?>>();
+
    try {
       Class<?> ac = Class.forName("edu.brown.cs.bubbles.batt.BattAgent");
       Method mac = ac.getMethod("handleUserClasses",String [].class);
@@ -198,7 +231,7 @@ private void scanArgs(String [] args)
       try {
 	 // TODO: if this can be done without actually calling the static initializer
 	 // it would be better
-	 Class<?> c = Class.forName(cnm);
+	 Class<?> c = Class.forName(cnm,true,class_loader);
 	 new TestClass(c);
 	 c.getConstructor();
 	 clss.add(c);
@@ -231,17 +264,6 @@ private void scanArgs(String [] args)
 
    class_set = new Class<?>[clss.size()];
    class_set = clss.toArray(class_set);
-
-   if (result_stream == null && result_file != null) {
-      try {
-	 result_stream = new FileOutputStream(result_file);
-       }
-      catch (IOException e) {
-	 System.err.println("BATT: Couldn't open output file: " + e);
-	 System.exit(1);
-       }
-    }
-
 }
 
 
@@ -264,6 +286,7 @@ private void setupSocket(String ph)
    try {
       @SuppressWarnings("resource")
       Socket s = new Socket(host,port);
+      result_socket = s;
       result_stream = s.getOutputStream();
     }
    catch (IOException e) {
@@ -298,6 +321,7 @@ private static String fixHost(String h)
 private void badArgs()
 {
    System.err.println("BATT: battjunit [-list] [-o output] class...");
+   System.err.println("BATT: battjunit -s port@host -daemon <id> -path <classpath>");
 }
 
 
@@ -310,6 +334,23 @@ private void badArgs()
 /********************************************************************************/
 
 private void process()
+{
+   runTests();
+
+   if (result_stream != null) {
+      try {
+	 result_stream.close();
+       }
+      catch (IOException e) { }
+    }
+
+// System.exit(0);
+   Runtime.getRuntime().halt(0);
+}
+
+
+
+private void runTests()
 {
    Request rq = null;
    rq = Request.classes(class_set);
@@ -328,16 +369,120 @@ private void process()
    juc.run(rq);
 
    System.err.println("BATTJ: FINISH RUN: " + list_only);
+}
 
-   if (result_stream != null) {
+
+
+/********************************************************************************/
+/*										*/
+/*	Worker processing methods						*/
+/*										*/
+/********************************************************************************/
+
+/**
+ *	Stay around and run tests as requested over the result socket.  Each
+ *	request is a set of lines: RUN <id>, an optional RELOAD, USER <class>
+ *	for each project class, TEST <class> for each class to run, and END.
+ *	Project classes come from a class loader over the project path that is
+ *	replaced when a request says RELOAD; the JVM, JUnit and the agent stay
+ *	warm across requests.
+ **/
+
+private void processRequests()
+{
+   if (result_socket == null) {
+      System.err.println("BATT: Worker mode requires a socket");
+      Runtime.getRuntime().halt(1);
+    }
+
+   outputWorkerMessage("WORKER",worker_id);
+
+   try {
+      BufferedReader rdr = new BufferedReader(new InputStreamReader(result_socket.getInputStream()));
+      String rid = null;
+      boolean reload = false;
+      List<String> clsstr = new ArrayList<String>();
+      List<String> tststr = new ArrayList<String>();
+      for ( ; ; ) {
+	 String ln = rdr.readLine();
+	 if (ln == null || ln.equals("EXIT")) break;
+	 if (ln.startsWith("RUN ")) {
+	    rid = ln.substring(4).trim();
+	    reload = false;
+	    clsstr.clear();
+	    tststr.clear();
+	  }
+	 else if (ln.equals("RELOAD")) reload = true;
+	 else if (ln.startsWith("USER ")) clsstr.add(ln.substring(5).trim());
+	 else if (ln.startsWith("TEST ")) {
+	    String cnm = ln.substring(5).trim();
+	    clsstr.add(cnm);
+	    tststr.add(cnm);
+	  }
+	 else if (ln.equals("END") && rid != null) {
+	    long start = System.currentTimeMillis();
+	    if (reload || class_loader == BattJUnit.class.getClassLoader()) setupLoader();
+	    // tests expect their own classes to be found through the context loader
+	    Thread th = Thread.currentThread();
+	    ClassLoader octx = th.getContextClassLoader();
+	    th.setContextClassLoader(class_loader);
+	    try {
+	       setupClasses(clsstr,tststr);
+	       runTests();
+	     }
+	    finally {
+	       th.setContextClassLoader(octx);
+	     }
+	    System.err.println("BATTJ: REQUEST " + rid + " " + (System.currentTimeMillis() - start));
+	    outputWorkerMessage("RUNDONE",rid);
+	    rid = null;
+	  }
+       }
+    }
+   catch (IOException e) {
+      System.err.println("BATT: Problem reading worker request: " + e);
+    }
+
+   noteDone();
+
+   try {
+      result_socket.close();
+    }
+   catch (IOException e) { }
+
+   Runtime.getRuntime().halt(0);
+}
+
+
+
+private void setupLoader()
+{
+   ClassLoader par = BattJUnit.class.getClassLoader();
+
+   if (class_loader instanceof URLClassLoader && class_loader != par) {
       try {
-	 result_stream.close();
+	 ((URLClassLoader) class_loader).close();
        }
       catch (IOException e) { }
     }
 
-// System.exit(0);
-   Runtime.getRuntime().halt(0);
+   List<URL> urls = new ArrayList<URL>();
+   if (project_path != null) {
+      StringTokenizer tok = new StringTokenizer(project_path,File.pathSeparator);
+      while (tok.hasMoreTokens()) {
+	 try {
+	    urls.add(new File(tok.nextToken()).toURI().toURL());
+	  }
+	 catch (MalformedURLException e) { }
+       }
+    }
+
+   URL [] uarr = new URL[urls.size()];
+   uarr = urls.toArray(uarr);
+   class_loader = new URLClassLoader(uarr,par);
+
+   // descriptions from the old loader refer to stale classes
+   test_cases.clear();
 }
 
 
@@ -464,6 +609,24 @@ private void outputSingleTest(JunitTest jt)
 
 
 
+private void outputWorkerMessage(String what,String id)
+{
+   try {
+      XMLOutputFactory xof = XMLOutputFactory.newInstance();
+      XMLStreamWriter xw = xof.createXMLStreamWriter(result_stream);
+      xw.writeStartElement(what);
+      xw.writeAttribute("ID",id);
+      xw.writeEndElement();
+      xw.flush();
+      result_stream.flush();
+    }
+   catch (Exception e) {
+      System.err.println("BATT: Problem writing worker message: " + e);
+    }
+}
+
+
+
 void outputTestCase(JunitTest btc,XMLStreamWriter xw) throws XMLStreamException
 {
    Description d = btc.getDescription();
@@ -487,6 +650,7 @@ void outputTestCase(JunitTest btc,XMLStreamWriter xw) throws XMLStreamException
    xw.writeAttribute("STATUS",btc.getStatus().getType().toString());
    xw.writeAttribute("NAME",d.getDisplayName());
    xw.writeAttribute("HASH",Integer.toString(d.hashCode()));
+   if (btc.getRunTime() >= 0) xw.writeAttribute("TIME",Long.toString(btc.getRunTime()));
 
    Failure f = btc.getStatus().getFailure();
    if (f != null) {
@@ -580,6 +744,7 @@ private class TestListener extends RunListener {
       System.err.println("BATT: START " + d);
       JunitTestStatus bts = getTestStatus(d);
       JunitTest jt = addTestCase(d,STATUS_RUNNING);
+      jt.noteStart();
       noteStart(d);
       switch (bts.getType()) {
 	 case FAILURE :
@@ -602,6 +767,7 @@ private class TestListener extends RunListener {
       JunitTest jt = test_cases.get(d);
       if (jt == null) return;
 
+      jt.noteFinish();
       noteFinish(d);
 
       JunitTestStatus bts = getTestStatus(d);
@@ -624,7 +790,8 @@ private class TestListener extends RunListener {
 
    @Override public void testRunFinished(Result r) {
       System.setSecurityManager(null);
-      noteDone();
+      // a worker keeps the agent's output open for later requests
+      if (worker_id == null) noteDone();
     }
 
    @Override public void testFailure(Failure f) {
@@ -691,15 +858,26 @@ private static class JunitTest {
 
    private Description test_info;
    private JunitTestStatus test_status;
+   private long start_time;
+   private long run_time;
 
    JunitTest(Description d) {
       test_info = d;
       test_status = STATUS_UNKNOWN;
+      start_time = 0;
+      run_time = -1;
     }
 
    Description getDescription() 		{ return test_info; }
    JunitTestStatus getStatus()			{ return test_status; }
    void setStatus(JunitTestStatus sts)		{ test_status = sts; }
+   long getRunTime()				{ return run_time; }
+
+   void noteStart()				{ start_time = System.currentTimeMillis(); }
+
+   void noteFinish() {
+      if (start_time > 0) run_time = System.currentTimeMillis() - start_time;
+    }
 
 }	// end of inner class JunitTest
 
@@ -79,7 +79,12 @@ private boolean 	test_busy;
 private boolean 	find_new;
 private BattThread	server_thread;
 private Set<String>	error_classes;
-private IvyExec 	current_test;
+private Set<IvyExec>	current_tests;
+private LinkedList<TestShard> pending_shards;
+private Map<String,TestWorker> test_workers;
+private boolean 	use_workers;
+private int		worker_counter;
+private int		shard_count;
 private long		last_report;
 
 
@@ -115,7 +120,12 @@ private BattMain(String [] args)
    test_busy = false;
    find_new = false;
    error_classes = new HashSet<String>();
-   current_test = null;
+   current_tests = new HashSet<IvyExec>();
+   pending_shards = new LinkedList<TestShard>();
+   test_workers = new HashMap<String,TestWorker>();
+   use_workers = true;
+   worker_counter = 0;
+   shard_count = Runtime.getRuntime().availableProcessors();
    last_report = 0;
 
    junit_jar = null;
@@ -169,6 +179,16 @@ private void scanArgs(String [] args)
 	 else if (args[i].startsWith("-b") && i+1 < args.length) {      // -j <java arg>
 	    java_args.add(args[++i]);
 	  }
+	 else if (args[i].startsWith("-s") && i+1 < args.length) {      // -s <#shards>
+	    try {
+	       shard_count = Integer.parseInt(args[++i]);
+	     }
+	    catch (NumberFormatException e) { badArgs(); }
+	    if (shard_count <= 0) shard_count = Runtime.getRuntime().availableProcessors();
+	  }
+	 else if (args[i].startsWith("-F")) {                           // -Fork each run
+	    use_workers = false;
+	  }
 	 else if (args[i].startsWith("-C")) {                           // -Continuous
 	    process_mode = ProcessMode.SERVER;
 	    start_mode = TestMode.CONTINUOUS;
@@ -192,7 +212,7 @@ private void scanArgs(String [] args)
 
 private void badArgs()
 {
-   System.err.println("BATT: battmain [-m <mint>] [-List] [-Run]");
+   System.err.println("BATT: battmain [-m <mint>] [-s <#shards>] [-Fork] [-List] [-Run]");
    System.exit(1);
 }
 
@@ -342,7 +362,16 @@ void stopTests()
 {
    // if (test_mode != TestMode.ON_DEMAND) setMode(TestMode.ON_DEMAND);
 
-   if (current_test != null) {
+   synchronized (pending_shards) {
+      pending_shards.clear();
+    }
+
+   List<IvyExec> run;
+   synchronized (current_tests) {
+      run = new ArrayList<IvyExec>(current_tests);
+    }
+
+   if (!run.isEmpty()) {
       for (BattTestCase btc : test_cases.values()) {
 	 if (btc.getState() == TestState.RUNNING) {
 	    btc.setStatus(TestStatus.UNKNOWN);
@@ -350,7 +379,7 @@ void stopTests()
 	    btc.handleTestCounts(null);
 	  }
        }
-      current_test.destroy();
+      for (IvyExec ex : run) ex.destroy();
     }
 }
 
@@ -520,8 +549,18 @@ private boolean canRunAny(Collection<BattTestCase> tests)
 /*										*/
 /********************************************************************************/
 
+/**
+ *	Run the given test classes (or all tests if null).  The classes of each
+ *	project are split into shards that are run by separate JUnit processes,
+ *	up to shard_count at a time.  Shards are balanced using the time each
+ *	test took the last time it ran.  Results come back over the socket as
+ *	each test finishes so nothing has to wait for the whole run.
+ **/
+
 private void processRun(boolean listonly,Set<String> testclss)
 {
+   List<TestShard> shards = new ArrayList<TestShard>();
+
    for (BattProject bp : batt_monitor.getProjects()) {
       boolean err = false;
       boolean use = false;
@@ -544,59 +583,20 @@ private void processRun(boolean listonly,Set<String> testclss)
        }
       if (!use) continue;
 
-      String fnm = "BATT_" + bp.getName() + ".xml";
-      String cntfnm = "BATT_" + bp.getName() + "_counts" + ".xml";
-      if (server_socket != null) {
-	 String nm = Integer.toString(server_socket.getLocalPort());
-	 String host = "127.0.0.1";
-	 try {
-	    host = InetAddress.getLocalHost().getHostName();
-	  }
-	 catch (UnknownHostException e) { }
-	 nm += "@" + host;
-	 fnm = cntfnm = nm;
-       }
-
-      StringBuffer buf = new StringBuffer();
-      buf.append(junit_jar);
-      for (String p : bp.getClassPath()) {
-	 buf.append(File.pathSeparator);
-	 buf.append(p);
+      run = new HashSet<String>();
+      for (String s : bp.getClassNames()) {
+	 if (testclss == null || testclss.contains(s)) run.add(s);
        }
-      buf.append(File.pathSeparator);
-      buf.append(bubbles_junitjar);
-
-      List<String> args = new ArrayList<String>();
-      args.add("java");
-      if (!listonly && bubbles_agentjar != null) {
-	 String agent = "-javaagent:" + bubbles_agentjar;
-	 agent += "=COUNTS=" + cntfnm;
-	 args.add(agent);
 
+      if (listonly) {
+	 shards.add(new TestShard(bp,true,testclss == null,run,0));
        }
-      for (String s : java_args) {
-	 args.add(s);
-       }
-
-      args.add("-cp");
-      args.add(buf.toString());
-      args.add("edu.brown.cs.bubbles.batt.BattJUnit");
-      if (testclss == null) args.add("-all");
-      if (listonly) args.add("-list");
-      if (server_socket != null) args.add("-socket");
-      else args.add("-output");
-      args.add(fnm);
-
-      run = new HashSet<String>();
-      for (String s : bp.getClassNames()) {
-	 if (testclss != null && testclss.contains(s)) {
-	    run.add(s);
-	    s = "@" + s;
-	  }
-	 else if (testclss == null) {
-	    run.add(s);
+      else {
+	 List<Set<String>> parts = splitTests(run);
+	 for (int i = 0; i < parts.size(); ++i) {
+	    boolean all = (testclss == null && parts.size() == 1);
+	    shards.add(new TestShard(bp,false,all,parts.get(i),i));
 	  }
-	 args.add(s);
        }
 
       synchronized (run_tests) {
@@ -614,10 +614,427 @@ private void processRun(boolean listonly,Set<String> testclss)
 	     }
 	  }
        }
+    }
+
+   reportTestStatus(false);
+
+   runShards(shards);
+
+   reportTestStatus(false);
+}
+
+
+
+/**
+ *	Split a set of test classes into shards of roughly equal expected time.
+ *	Classes are handed out longest first, each to the least loaded shard.
+ **/
+
+private List<Set<String>> splitTests(Set<String> clss)
+{
+   Map<String,Long> times = estimateTimes(clss);
+   long tot = 0;
+   for (Long v : times.values()) tot += v;
+
+   // don't start a process for less work than it takes to start it
+   int nshard = Math.min(shard_count,clss.size());
+   nshard = (int) Math.min(nshard,tot / MIN_SHARD_TIME);
+   if (nshard <= 1) {
+      List<Set<String>> rslt = new ArrayList<Set<String>>();
+      rslt.add(clss);
+      return rslt;
+    }
+
+   List<String> order = new ArrayList<String>(clss);
+   Collections.sort(order,new TimeComparator(times));
+
+   List<Set<String>> rslt = new ArrayList<Set<String>>();
+   long [] load = new long[nshard];
+   for (int i = 0; i < nshard; ++i) rslt.add(new HashSet<String>());
+   for (String cnm : order) {
+      int idx = 0;
+      for (int i = 1; i < nshard; ++i) {
+	 if (load[i] < load[idx]) idx = i;
+       }
+      rslt.get(idx).add(cnm);
+      load[idx] += times.get(cnm);
+    }
+
+   System.err.println("BATT: Split " + clss.size() + " classes into " + nshard + " shards");
+
+   return rslt;
+}
+
+
+
+private synchronized Map<String,Long> estimateTimes(Set<String> clss)
+{
+   Map<String,Long> rslt = new HashMap<String,Long>();
+   Map<String,Integer> unknown = new HashMap<String,Integer>();
+   long known = 0;
+   int nknown = 0;
+
+   for (BattTestCase btc : test_cases.values()) {
+      String cnm = btc.getClassName();
+      if (cnm == null || !clss.contains(cnm)) continue;
+      long t = btc.getRunTime();
+      if (t >= 0) {
+	 Long v = rslt.get(cnm);
+	 rslt.put(cnm,(v == null ? 0 : v) + t);
+	 known += t;
+	 ++nknown;
+       }
+      else {
+	 Integer v = unknown.get(cnm);
+	 unknown.put(cnm,(v == null ? 0 : v) + 1);
+       }
+    }
+
+   // tests that have not run yet are assumed to take the average time
+   long avg = (nknown > 0 ? known / nknown : DEFAULT_TEST_TIME);
+   for (Map.Entry<String,Integer> ent : unknown.entrySet()) {
+      Long v = rslt.get(ent.getKey());
+      rslt.put(ent.getKey(),(v == null ? 0 : v) + avg * ent.getValue());
+    }
+   for (String cnm : clss) {
+      if (!rslt.containsKey(cnm)) rslt.put(cnm,DEFAULT_CLASS_TIME);
+    }
+
+   return rslt;
+}
+
+
+
+private void runShards(List<TestShard> shards)
+{
+   if (shards.isEmpty()) return;
 
-      reportTestStatus(false);
+   removeIdleWorkers(shards);
 
-      System.err.print("BATT: RUN" );
+   if (shards.size() == 1 || shard_count <= 1) {
+      for (TestShard ts : shards) ts.run();
+      return;
+    }
+
+   // start the longest shards first so the short ones fill in at the end
+   Collections.sort(shards);
+   synchronized (pending_shards) {
+      pending_shards.addAll(shards);
+    }
+   int nthread = Math.min(shard_count,shards.size());
+   List<Thread> threads = new ArrayList<Thread>();
+   for (int i = 0; i < nthread; ++i) {
+      ShardRunner sr = new ShardRunner(i);
+      threads.add(sr);
+      sr.start();
+    }
+
+   for (Thread th : threads) {
+      for ( ; ; ) {
+	 try {
+	    th.join();
+	    break;
+	  }
+	 catch (InterruptedException e) { }
+       }
+    }
+}
+
+
+
+private List<String> setupShardArgs(TestShard ts)
+{
+   BattProject bp = ts.getProject();
+
+   String fnm = "BATT_" + bp.getName() + ".xml";
+   String cntfnm = "BATT_" + bp.getName() + "_counts" + ".xml";
+   if (ts.getIndex() > 0) {
+      fnm = "BATT_" + bp.getName() + "_" + ts.getIndex() + ".xml";
+      cntfnm = "BATT_" + bp.getName() + "_" + ts.getIndex() + "_counts" + ".xml";
+    }
+   if (server_socket != null) {
+      String nm = Integer.toString(server_socket.getLocalPort());
+      String host = "127.0.0.1";
+      try {
+	 host = InetAddress.getLocalHost().getHostName();
+       }
+      catch (UnknownHostException e) { }
+      nm += "@" + host;
+      fnm = cntfnm = nm;
+    }
+
+   StringBuffer buf = new StringBuffer();
+   buf.append(junit_jar);
+   for (String p : bp.getClassPath()) {
+      buf.append(File.pathSeparator);
+      buf.append(p);
+    }
+   buf.append(File.pathSeparator);
+   buf.append(bubbles_junitjar);
+
+   List<String> args = new ArrayList<String>();
+   args.add("java");
+   if (!ts.isListOnly() && bubbles_agentjar != null) {
+      String agent = "-javaagent:" + bubbles_agentjar;
+      agent += "=COUNTS=" + cntfnm;
+      args.add(agent);
+
+    }
+   for (String s : java_args) {
+      args.add(s);
+    }
+
+   args.add("-cp");
+   args.add(buf.toString());
+   args.add("edu.brown.cs.bubbles.batt.BattJUnit");
+   if (ts.useAll()) args.add("-all");
+   if (ts.isListOnly()) args.add("-list");
+   if (server_socket != null) args.add("-socket");
+   else args.add("-output");
+   args.add(fnm);
+
+   // all the project classes are passed so the agent knows what to instrument
+   for (String s : bp.getClassNames()) {
+      if (!ts.useAll() && ts.getClasses().contains(s)) s = "@" + s;
+      args.add(s);
+    }
+
+   return args;
+}
+
+
+
+private void runShard(TestShard ts)
+{
+   if (use_workers && !ts.isListOnly() && server_socket != null) {
+      if (runShardInWorker(ts)) return;
+    }
+
+   List<String> args = setupShardArgs(ts);
+
+   System.err.print("BATT: RUN" );
+   for (String s : args) {
+      System.err.print(" " + s);
+    }
+   System.err.println();
+
+   try {
+      String [] argv = new String[args.size()];
+      argv = args.toArray(argv);
+      IvyExec ex = new IvyExec(argv,null,0);
+      synchronized (current_tests) {
+	 current_tests.add(ex);
+       }
+      // should handle input and output here
+      int sts = ex.waitFor();
+      System.err.println("BATT: Test status " + sts + " for shard " + ts.getIndex() +
+			    " of " + ts.getProject().getName());
+      synchronized (current_tests) {
+	 current_tests.remove(ex);
+       }
+    }
+   catch (IOException e) {
+      System.err.println("BATT: Problem running junit java: " + e);
+    }
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Persistent test worker methods						*/
+/*										*/
+/********************************************************************************/
+
+private boolean runShardInWorker(TestShard ts)
+{
+   TestWorker tw = findWorker(ts);
+   if (tw == null) return false;
+
+   IvyExec ex = tw.getExec();
+   synchronized (current_tests) {
+      current_tests.add(ex);
+    }
+
+   long start = System.currentTimeMillis();
+   boolean fg = tw.runTests(ts);
+   System.err.println("BATT: Worker " + tw.getId() + " ran shard " + ts.getIndex() + " of " +
+			 ts.getProject().getName() + " in " + (System.currentTimeMillis() - start));
+
+   synchronized (current_tests) {
+      current_tests.remove(ex);
+    }
+
+   // a worker that died while running (e.g. stopped) is replaced next time
+   if (!fg) removeWorker(tw);
+
+   return true;
+}
+
+
+
+private TestWorker findWorker(TestShard ts)
+{
+   String key = getWorkerKey(ts);
+
+   // the worker is told what to run; its command line only has the setup
+   List<String> args = setupShardArgs(new TestShard(ts.getProject(),false,false,
+							  new HashSet<String>(),ts.getIndex()));
+   List<String> cargs = new ArrayList<String>();
+   String path = null;
+   for (int i = 0; i < args.size(); ++i) {
+      String s = args.get(i);
+      if (s.equals("-cp") && i+1 < args.size()) {
+	 path = args.get(++i);
+	 cargs.add(s);
+	 cargs.add(junit_jar + File.pathSeparator + bubbles_junitjar);
+       }
+      else if (s.equals("edu.brown.cs.bubbles.batt.BattJUnit")) {
+	 cargs.add(s);
+	 break;
+       }
+      else cargs.add(s);
+    }
+   String cfg = cargs.toString() + path;
+
+   TestWorker tw = null;
+   synchronized (test_workers) {
+      tw = test_workers.get(key);
+      if (tw != null && (!tw.isAlive() || !tw.getConfig().equals(cfg))) {
+	 tw.shutdown();
+	 test_workers.remove(key);
+	 tw = null;
+       }
+      if (tw == null) {
+	 String id = "BATTW_" + (++worker_counter);
+	 cargs.add("-socket");
+	 cargs.add(args.get(args.indexOf("-socket")+1));
+	 cargs.add("-daemon");
+	 cargs.add(id);
+	 cargs.add("-path");
+	 cargs.add(path);
+	 tw = new TestWorker(id,ts.getProject().getName(),cfg);
+	 test_workers.put(key,tw);
+	 // register first so the worker's connection can find it
+	 tw.start(cargs);
+       }
+    }
+
+   if (!tw.waitForStart()) {
+      removeWorker(tw);
+      return null;
+    }
+
+   return tw;
+}
+
+
+
+private static String getWorkerKey(TestShard ts)
+{
+   return ts.getProject().getName() + "_" + ts.getIndex();
+}
+
+
+
+/**
+ *	Shut down the workers for shards that a run no longer has, either
+ *	because the project is gone or because its tests were split into
+ *	fewer shards.  Workers for other projects are kept for their next run.
+ **/
+
+private void removeIdleWorkers(List<TestShard> shards)
+{
+   Set<String> keys = new HashSet<String>();
+   Set<String> runprojs = new HashSet<String>();
+   for (TestShard ts : shards) {
+      // listing doesn't use workers
+      if (ts.isListOnly()) return;
+      keys.add(getWorkerKey(ts));
+      runprojs.add(ts.getProject().getName());
+    }
+
+   Set<String> projs = new HashSet<String>();
+   for (BattProject bp : batt_monitor.getProjects()) {
+      projs.add(bp.getName());
+    }
+
+   List<TestWorker> idle = new ArrayList<TestWorker>();
+   synchronized (test_workers) {
+      for (Map.Entry<String,TestWorker> ent : test_workers.entrySet()) {
+	 if (keys.contains(ent.getKey())) continue;
+	 String pnm = ent.getValue().getProject();
+	 if (runprojs.contains(pnm) || !projs.contains(pnm)) idle.add(ent.getValue());
+       }
+    }
+
+   for (TestWorker tw : idle) {
+      System.err.println("BATT: Stop idle worker " + tw.getId());
+      removeWorker(tw);
+    }
+}
+
+
+
+private TestWorker findWorkerById(String id)
+{
+   synchronized (test_workers) {
+      for (TestWorker tw : test_workers.values()) {
+	 if (tw.getId().equals(id)) return tw;
+       }
+    }
+
+   return null;
+}
+
+
+
+private void removeWorker(TestWorker tw)
+{
+   synchronized (test_workers) {
+      test_workers.values().remove(tw);
+    }
+   tw.shutdown();
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Persistent test worker							*/
+/*										*/
+/********************************************************************************/
+
+/**
+ *	A BattJUnit process left running in worker mode.  It connects back over
+ *	the test socket and then runs each request sent on that socket, so a
+ *	run after a save doesn't pay for starting java, JUnit and the agent.
+ **/
+
+private class TestWorker {
+
+   private String worker_id;
+   private String worker_project;
+   private String worker_config;
+   private IvyExec worker_exec;
+   private PrintWriter worker_writer;
+   private boolean is_alive;
+   private int request_counter;
+   private String done_id;
+
+   TestWorker(String id,String proj,String cfg) {
+      worker_id = id;
+      worker_project = proj;
+      worker_config = cfg;
+      worker_exec = null;
+      worker_writer = null;
+      is_alive = true;
+      request_counter = 0;
+      done_id = null;
+    }
+
+   synchronized void start(List<String> args) {
+      System.err.print("BATT: START WORKER" );
       for (String s : args) {
 	 System.err.print(" " + s);
        }
@@ -626,20 +1043,187 @@ private void processRun(boolean listonly,Set<String> testclss)
       try {
 	 String [] argv = new String[args.size()];
 	 argv = args.toArray(argv);
-	 IvyExec ex = new IvyExec(argv,null,0);
-	 current_test = ex;
-	 // should handle input and output here
-	 int sts = ex.waitFor();
-	 System.err.println("BATT: Test status " + sts);
-	 current_test = null;
+	 worker_exec = new IvyExec(argv,null,0);
        }
       catch (IOException e) {
-	 System.err.println("BATT: Problem running junit java: " + e);
+	 System.err.println("BATT: Problem starting test worker: " + e);
+	 is_alive = false;
        }
     }
 
-   reportTestStatus(false);
-}
+   String getId()				{ return worker_id; }
+   String getProject()				{ return worker_project; }
+   String getConfig()				{ return worker_config; }
+   IvyExec getExec()				{ return worker_exec; }
+
+   synchronized boolean isAlive() {
+      if (is_alive && worker_exec != null && !worker_exec.isRunning()) is_alive = false;
+      return is_alive;
+    }
+
+   synchronized void attach(Socket s) {
+      try {
+	 worker_writer = new PrintWriter(new OutputStreamWriter(s.getOutputStream()));
+       }
+      catch (IOException e) {
+	 is_alive = false;
+       }
+      notifyAll();
+    }
+
+   synchronized void noteDone(String id) {
+      done_id = id;
+      notifyAll();
+    }
+
+   synchronized void noteClosed() {
+      is_alive = false;
+      notifyAll();
+    }
+
+   synchronized boolean waitForStart() {
+      long end = System.currentTimeMillis() + WORKER_START_TIME;
+      while (worker_writer == null && isAlive()) {
+	 long delta = end - System.currentTimeMillis();
+	 if (delta <= 0) return false;
+	 try {
+	    wait(Math.min(delta,1000));
+	  }
+	 catch (InterruptedException e) { }
+       }
+      return worker_writer != null && is_alive;
+    }
+
+   synchronized boolean runTests(TestShard ts) {
+      if (worker_writer == null || !isAlive()) return false;
+
+      String rid = Integer.toString(++request_counter);
+
+      // A fresh loader each time: a reused loader keeps the static state the
+      // last run left in test and project classes, which changes results.
+      // The agent caches instrumented code for unchanged classes and reuses
+      // ids for changed ones, so a reload neither re-instruments nor grows
+      // the agent's tables.
+      worker_writer.println("RUN " + rid);
+      worker_writer.println("RELOAD");
+      for (String s : ts.getProject().getClassNames()) {
+	 if (ts.getClasses().contains(s)) worker_writer.println("TEST " + s);
+	 else worker_writer.println("USER " + s);
+       }
+      worker_writer.println("END");
+      worker_writer.flush();
+      if (worker_writer.checkError()) {
+	 is_alive = false;
+	 return false;
+       }
+
+      while (!rid.equals(done_id)) {
+	 if (!isAlive()) return false;
+	 try {
+	    wait(1000);
+	  }
+	 catch (InterruptedException e) { }
+       }
+
+      return true;
+    }
+
+   synchronized void shutdown() {
+      if (worker_writer != null) {
+	 worker_writer.println("EXIT");
+	 worker_writer.flush();
+	 worker_writer = null;
+       }
+      if (worker_exec != null) worker_exec.destroy();
+      is_alive = false;
+      notifyAll();
+    }
+
+}	// end of inner class TestWorker
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Test shard information							*/
+/*										*/
+/********************************************************************************/
+
+private class TestShard implements Comparable<TestShard> {
+
+   private BattProject for_project;
+   private boolean list_only;
+   private boolean use_all;
+   private Set<String> test_classes;
+   private int shard_index;
+   private long shard_time;
+
+   TestShard(BattProject bp,boolean list,boolean all,Set<String> clss,int idx) {
+      for_project = bp;
+      list_only = list;
+      use_all = all;
+      test_classes = clss;
+      shard_index = idx;
+      shard_time = 0;
+      for (Long v : estimateTimes(clss).values()) shard_time += v;
+    }
+
+   BattProject getProject()			{ return for_project; }
+   boolean isListOnly() 			{ return list_only; }
+   boolean useAll()				{ return use_all; }
+   Set<String> getClasses()			{ return test_classes; }
+   int getIndex()				{ return shard_index; }
+
+   void run()					{ runShard(this); }
+
+   @Override public int compareTo(TestShard ts) {
+      if (shard_time > ts.shard_time) return -1;
+      if (shard_time < ts.shard_time) return 1;
+      return 0;
+    }
+
+}	// end of inner class TestShard
+
+
+
+private static class TimeComparator implements Comparator<String> {
+
+   private Map<String,Long> time_map;
+
+   TimeComparator(Map<String,Long> times) {
+      time_map = times;
+    }
+
+   @Override public int compare(String s1,String s2) {
+      long t1 = time_map.get(s1);
+      long t2 = time_map.get(s2);
+      if (t1 > t2) return -1;
+      if (t1 < t2) return 1;
+      return s1.compareTo(s2);
+    }
+
+}	// end of inner class TimeComparator
+
+
+
+private class ShardRunner extends Thread {
+
+   ShardRunner(int idx) {
+      super("BattShardRunner_" + idx);
+    }
+
+   @Override public void run() {
+      for ( ; ; ) {
+	 TestShard ts = null;
+	 synchronized (pending_shards) {
+	    if (pending_shards.isEmpty()) break;
+	    ts = pending_shards.removeFirst();
+	  }
+	 ts.run();
+       }
+    }
+
+}	// end of inner class ShardRunner
 
 
 
@@ -773,17 +1357,19 @@ void updateTestsForClasses(Map<String,FileState> chng)
 void reportTestStatus(boolean force)
 {
    Collection<BattTestCase> rpt;
-   long now;
+   long since;
 
+   // shards report concurrently; each update must go out in some report
    synchronized (this) {
       rpt = new ArrayList<BattTestCase>(test_cases.values());
-      now = System.currentTimeMillis();
+      since = last_report;
+      last_report = System.currentTimeMillis();
     }
 
    int ctr = 0;
    IvyXmlWriter xw = new IvyXmlWriter();
    for (BattTestCase btc : rpt) {
-      if (force || btc.getUpdateTime() >= last_report) {
+      if (force || btc.getUpdateTime() >= since) {
 	 // btc.shortReport(xw);
 	 // System.err.println("BATT: WORK ON TEST CASE " + btc.getName());
 	 btc.longReport(xw);
@@ -794,8 +1380,6 @@ void reportTestStatus(boolean force)
    if (ctr > 0) {
       batt_monitor.sendMessageAndWait("STATUS",xw.toString());
     }
-
-   last_report = now;
 }
 
 
@@ -866,10 +1450,12 @@ private class SocketListener extends Thread {
 private class Client extends IvyXmlReaderThread {
 
    private Socket client_socket;
+   private TestWorker for_worker;
 
    Client(Socket s) throws IOException {
       super("BATT_client_" + s.getRemoteSocketAddress(),new InputStreamReader(s.getInputStream()));
       client_socket = s;
+      for_worker = null;
     }
 
    @Override protected void processXmlMessage(String msg) {
@@ -887,12 +1473,20 @@ private class Client extends IvyXmlReaderThread {
          BattTestCase btc = findTestCase(nm);
          btc.handleTestCounts(e);
        }
+      else if (IvyXml.isElement(e,"WORKER")) {
+	 for_worker = findWorkerById(IvyXml.getAttrString(e,"ID"));
+	 if (for_worker != null) for_worker.attach(client_socket);
+       }
+      else if (IvyXml.isElement(e,"RUNDONE")) {
+	 if (for_worker != null) for_worker.noteDone(IvyXml.getAttrString(e,"ID"));
+       }
    }
 
 
 
 
    @Override protected void processDone() {
+      if (for_worker != null) for_worker.noteClosed();
       if (client_socket == null) return;
       try {
 	 client_socket.close();
@@ -56,6 +56,7 @@ private String		fail_message;
 private String		fail_trace;
 private CountData	count_data;
 private long		update_time;
+private long		run_time;
 private String		test_class;
 private Set<String>	annotation_types;
 
@@ -75,6 +76,7 @@ BattTestCase(String name)
    fail_message = null;
    fail_trace = null;
    update_time = System.currentTimeMillis();
+   run_time = -1;
    annotation_types = new HashSet<String>();
 }
 
@@ -92,6 +94,7 @@ BattTestCase(String name)
 
 synchronized TestStatus getStatus()				{ return test_status; }
 synchronized TestState getState()				{ return test_state; }
+synchronized long getRunTime()					{ return run_time; }
 
 synchronized void setStatus(TestStatus sts)
 {
@@ -173,6 +176,10 @@ synchronized boolean handleTestState(Element e)
       fail_trace = null;
     }
 
+   // keep the last known time so unfinished runs don't lose the history
+   long rt = IvyXml.getAttrLong(e,"TIME",-1);
+   if (rt >= 0) run_time = rt;
+
    String st = IvyXml.getAttrString(e,"STATE");
    if (st != null) {
       try {
@@ -52,6 +52,7 @@ class BconRepository implements BconConstants, BassConstants, BassUpdatableRepos
 /********************************************************************************/
 
 private Map<String,BconName> active_names;
+private long		loaded_version;
 
 
 
@@ -64,6 +65,7 @@ private Map<String,BconName> active_names;
 BconRepository()
 {
    active_names = new HashMap<String,BconName>();
+   loaded_version = -1;
 
    switch (BoardSetup.getSetup().getLanguage()) {
       case JAVA :
@@ -260,6 +262,11 @@ private void reload()
 
    synchronized (active_names) {
       BassRepository br = BassFactory.getRepository(BudaConstants.SearchType.SEARCH_CODE);
+      if (br instanceof BassVersionedRepository) {
+	 long ver = ((BassVersionedRepository) br).getVersion();
+	 if (ver >= 0 && ver == loaded_version) return;
+	 loaded_version = ver;
+       }
       for (BassName bn : br.getAllNames()) {
 	 switch (bn.getNameType()) {
 	    case CLASS :
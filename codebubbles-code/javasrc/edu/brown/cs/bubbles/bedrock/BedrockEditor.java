@@ -51,6 +51,7 @@ import org.w3c.dom.Element;
 import org.eclipse.jdt.ui.PreferenceConstants;
 
 import java.io.File;
+import java.lang.ref.SoftReference;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -70,15 +71,34 @@ private BedrockPlugin our_plugin;
 private Map<String,FileData> file_map;
 private ThreadPoolExecutor thread_pool;
 private BlockingQueue<Runnable> edit_queue;
+private ScheduledThreadPoolExecutor edit_scheduler;
+private Map<String,EditTask> pending_edits;	// latest unstarted edit for each buffer
+private Set<String> running_edits;		// buffers being reconciled
+private String focus_key;			// buffer most recently edited
+private long task_counter;
 private Map<String,ParamSettings> param_map;
 private CodeFormatter code_formatter;
 private int active_edits;
 private WorkingCopyOwner default_owner;
+private AstCache ast_cache;
+
+private int reconcile_count;
+private int cancel_count;
+private long reconcile_time;
+private long max_reconcile_time;
+
+private enum EditState {
+   WAITING,		// waiting out the typing delay
+   DEFERRED,		// ready, but the buffer is still being reconciled
+   QUEUED,		// in the thread pool queue
+   RUNNING,
+   CANCELLED
+}
 
 private static final int	QUEUE_SIZE = 1000;
-private static final int	CORE_SIZE = 1;
 private static final int	MAX_SIZE = 8;
 private static final long	KEEP_ALIVE = 1000l;
+private static final int	AST_CACHE_SIZE = 32;
 private static final TimeUnit	KEEP_ALIVE_UNIT = TimeUnit.SECONDS;
 
 
@@ -95,12 +115,22 @@ BedrockEditor(BedrockPlugin bp)
    our_plugin = bp;
 
    file_map = new HashMap<String,FileData>();
-   edit_queue = new ArrayBlockingQueue<Runnable>(QUEUE_SIZE,true);
+   edit_queue = new PriorityBlockingQueue<Runnable>(QUEUE_SIZE,new TaskComparator());
    param_map = new HashMap<String,ParamSettings>();
    code_formatter = null;
    thread_pool = null;
+   edit_scheduler = null;
+   pending_edits = new HashMap<String,EditTask>();
+   running_edits = new HashSet<String>();
+   focus_key = null;
+   task_counter = 0;
    active_edits = 0;
+   reconcile_count = 0;
+   cancel_count = 0;
+   reconcile_time = 0;
+   max_reconcile_time = 0;
    default_owner = new DefaultCopyOwner();
+   ast_cache = new AstCache();
 }
 
 
@@ -115,8 +145,13 @@ BedrockEditor(BedrockPlugin bp)
 
 void start()
 {
-   thread_pool = new ThreadPoolExecutor(CORE_SIZE,MAX_SIZE,KEEP_ALIVE,KEEP_ALIVE_UNIT,
+   // the queue is unbounded, so the pool never grows beyond its core size
+   thread_pool = new ThreadPoolExecutor(MAX_SIZE,MAX_SIZE,KEEP_ALIVE,KEEP_ALIVE_UNIT,
 					   edit_queue);
+   thread_pool.allowCoreThreadTimeOut(true);
+
+   edit_scheduler = new ScheduledThreadPoolExecutor(1);
+   edit_scheduler.setRemoveOnCancelPolicy(true);
 }
 
 
@@ -239,32 +274,143 @@ void handleEdit(String proj,String sid,String file,String id,List<EditData> edit
 
    fd.applyEdit(sid,xe);
 
-   EditTask et = new EditTask(fd,sid,id);
+   scheduleEdit(new EditTask(fd,sid,id));
+
+   xw.emptyElement("SUCCESS");
+}
+
+
+
+/**
+ *	Schedule a reconcile for an edited buffer after the typing delay.  A
+ *	newer edit to the same buffer cancels any reconcile that has not started
+ *	yet, and only one reconcile per buffer runs at a time.	Different
+ *	buffers are reconciled in parallel, the one being edited first.
+ **/
+
+private void scheduleEdit(EditTask et)
+{
+   String key = et.getKey();
+
+   synchronized (thread_pool) {
+      focus_key = key;
+      EditTask old = pending_edits.put(key,et);
+      if (old != null && old.cancel()) {
+	 ++cancel_count;
+	 doneEdit(old);
+       }
+      ++active_edits;
+    }
+
+   long delay = getElideDelay(et.getBedrockId());
    try {
+      et.setFuture(edit_scheduler.schedule(new EditStarter(et),delay,TimeUnit.MILLISECONDS));
+    }
+   catch (RejectedExecutionException ex) {
+      BedrockPlugin.logE("Edit task rejected " + ex);
       synchronized (thread_pool) {
-	 thread_pool.execute(et);
-	 ++active_edits;
+	 et.cancel();
+	 pending_edits.remove(key,et);
        }
+      doneEdit(et);
+    }
+}
+
+
+
+private void startEdit(EditTask et)
+{
+   synchronized (thread_pool) {
+      if (!et.setReady(running_edits.contains(et.getKey()))) return;
+      running_edits.add(et.getKey());
+    }
+
+   try {
+      thread_pool.execute(et);
     }
    catch (RejectedExecutionException ex) {
       BedrockPlugin.logE("Edit task rejected " + ex + " " +
 			    edit_queue.size() + " " + thread_pool.getActiveCount());
+      finishEdit(et,true);
     }
+}
 
-   xw.emptyElement("SUCCESS");
+
+
+private void finishEdit(EditTask et,boolean cancelled)
+{
+   EditTask next = null;
+
+   synchronized (thread_pool) {
+      running_edits.remove(et.getKey());
+      pending_edits.remove(et.getKey(),et);
+      if (!cancelled) {
+	 long t = System.currentTimeMillis() - et.getCreateTime();
+	 ++reconcile_count;
+	 reconcile_time += t;
+	 if (t > max_reconcile_time) max_reconcile_time = t;
+       }
+      EditTask pnd = pending_edits.get(et.getKey());
+      if (pnd != null && pnd.isDeferred()) next = pnd;
+    }
+
+   if (next != null) startEdit(next);
+   doneEdit(et);
 }
 
 
 
-private void doneEdit()
+/**
+ *	Note that an edit will not be reconciled any further.  This can be
+ *	called more than once for a task, but only counts it the first time.
+ **/
+
+private void doneEdit(EditTask et)
 {
    synchronized (thread_pool) {
+      if (!et.retire()) return;
       --active_edits;
       if (active_edits == 0) thread_pool.notifyAll();
     }
 }
 
 
+
+/**
+ *	Note that resources changed or a build finished.  Resolved ASTs for
+ *	any file can depend on these, so none of the cached ones are reused.
+ **/
+
+void noteResourcesChanged()
+{
+   ast_cache.noteEnvironmentChanged();
+}
+
+
+
+/**
+ *	Report the state of the reconcile queue:  the number of edits waiting to
+ *	be reconciled and the time from an edit to the end of its reconcile.
+ **/
+
+void handleEditStatistics(IvyXmlWriter xw)
+{
+   synchronized (thread_pool) {
+      xw.begin("EDITSTATS");
+      xw.field("PENDING",pending_edits.size());
+      xw.field("QUEUED",edit_queue.size());
+      xw.field("RUNNING",running_edits.size());
+      xw.field("ACTIVE",active_edits);
+      xw.field("COUNT",reconcile_count);
+      xw.field("CANCELLED",cancel_count);
+      if (reconcile_count > 0) xw.field("AVGTIME",reconcile_time / reconcile_count);
+      xw.field("MAXTIME",max_reconcile_time);
+      ast_cache.outputStatistics(xw);
+      xw.end("EDITSTATS");
+    }
+}
+
+
 void waitForEdits()
 {
    synchronized (thread_pool) {
@@ -349,7 +495,7 @@ void elisionSetup(String proj,String bid,String file,boolean compute,
 
    if (compute) {
       xw.begin("ELISION");
-      if (be != null) be.computeElision(cu,xw);
+      if (be != null && be.computeElision(cu,xw)) be.noteElisionSent();
       xw.end("ELISION");
     }
    else xw.emptyElement("SUCCESS");
@@ -372,12 +518,17 @@ void fileElide(byte [] bytes,IvyXmlWriter xw)
 
    // would really like to resolvie bindings here using JCOMP
 
-   ASTParser ap = ASTParser.newParser(AST.JLS4);
    String s1 = new String(bytes);
    char [] cdata = s1.toCharArray();
    be.addElideRegion(0,cdata.length);
-   ap.setSource(cdata);
-   CompilationUnit cu = (CompilationUnit) ap.createAST(null);
+   TextKey tk = new TextKey(cdata);
+   CompilationUnit cu = ast_cache.getAst(tk);
+   if (cu == null) {
+      ASTParser ap = ASTParser.newParser(AST.JLS4);
+      ap.setSource(cdata);
+      cu = (CompilationUnit) ap.createAST(null);
+      ast_cache.putAst(tk,cu);
+    }
 
    be.computeElision(cu,xw);
 }
@@ -1665,24 +1816,141 @@ private synchronized FileData findFile(String proj,String file,String bid,String
 /*										*/
 /********************************************************************************/
 
-private class EditTask implements Runnable {
+private abstract class EditorTask implements Runnable {
+
+   private long task_sequence;
+   private boolean is_focus;
+
+   EditorTask() {
+      synchronized (edit_queue) {
+	 task_sequence = ++task_counter;
+       }
+      is_focus = false;
+    }
+
+   long getSequence()				{ return task_sequence; }
+   boolean isFocus()				{ return is_focus; }
+   void setFocus(boolean fg)			{ is_focus = fg; }
+
+}	// end of inner class EditorTask
+
+
+
+private static class TaskComparator implements Comparator<Runnable> {
+
+   @Override public int compare(Runnable r1,Runnable r2) {
+      if (!(r1 instanceof EditorTask) || !(r2 instanceof EditorTask)) return 0;
+      EditorTask t1 = (EditorTask) r1;
+      EditorTask t2 = (EditorTask) r2;
+      if (t1.isFocus() != t2.isFocus()) return (t1.isFocus() ? -1 : 1);
+      return Long.compare(t1.getSequence(),t2.getSequence());
+    }
+
+}	// end of inner class TaskComparator
+
+
+
+private class EditStarter implements Runnable {
+
+   private EditTask edit_task;
+
+   EditStarter(EditTask et) {
+      edit_task = et;
+    }
+
+   @Override public void run() {
+      startEdit(edit_task);
+    }
+
+}	// end of inner class EditStarter
+
+
+
+private class EditTask extends EditorTask {
 
    private FileData file_data;
    private String bedrock_id;
    private String for_id;
+   private String task_key;
+   private long create_time;
+   private EditState edit_state;
+   private Future<?> start_future;
+   private boolean is_retired;
 
    EditTask(FileData fd,String bid,String id) {
       file_data = fd;
       bedrock_id = bid;
       for_id = id;
+      task_key = fd.getFileName() + "@" + bid;
+      create_time = System.currentTimeMillis();
+      edit_state = EditState.WAITING;
+      start_future = null;
+      is_retired = false;
+    }
+
+   String getKey()				{ return task_key; }
+   String getBedrockId()			{ return bedrock_id; }
+   long getCreateTime() 			{ return create_time; }
+   boolean isDeferred() 			{ return edit_state == EditState.DEFERRED; }
+
+   void setFuture(Future<?> f) {
+      synchronized (thread_pool) {
+	 if (edit_state == EditState.CANCELLED) f.cancel(false);
+	 else start_future = f;
+       }
+    }
+
+   // these are called while holding the thread_pool lock
+
+   boolean cancel() {
+      switch (edit_state) {
+	 case WAITING :
+	 case DEFERRED :
+	 case QUEUED :
+	    if (start_future != null) start_future.cancel(false);
+	    edit_state = EditState.CANCELLED;
+	    return true;
+	 default :
+	    return false;
+       }
+    }
+
+   boolean setReady(boolean busy) {
+      if (edit_state != EditState.WAITING && edit_state != EditState.DEFERRED) return false;
+      if (busy) {
+	 edit_state = EditState.DEFERRED;
+	 return false;
+       }
+      edit_state = EditState.QUEUED;
+      setFocus(task_key.equals(focus_key));
+      return true;
+    }
+
+   boolean retire() {
+      if (is_retired) return false;
+      is_retired = true;
+      return true;
     }
 
-   public void run() {
+   @Override public void run() {
+      boolean cancelled = false;
+      synchronized (thread_pool) {
+	 if (edit_state == EditState.CANCELLED) cancelled = true;
+	 else {
+	    edit_state = EditState.RUNNING;
+	    pending_edits.remove(task_key,this);
+	  }
+       }
+      if (cancelled) {
+	 finishEdit(this,true);
+	 return;
+       }
+
       try {
 	 performEdit();
        }
       finally {
-	 doneEdit();
+	 finishEdit(this,false);
        }
     }
 
@@ -1691,15 +1959,6 @@ private class EditTask implements Runnable {
 	     !file_data.getCurrentId(bedrock_id).equals(for_id))
 	 return;
 
-      long delay = getElideDelay(bedrock_id);
-
-      if (delay > 0) {
-	 synchronized (this) {
-	    try { wait(delay); }
-	    catch (InterruptedException e) { }
-	  }
-       }
-
       file_data.getEditableUnit(bedrock_id);
       if (file_data.getCurrentId(bedrock_id) != null &&
 	     !file_data.getCurrentId(bedrock_id).equals(for_id))
@@ -1728,11 +1987,12 @@ private class EditTask implements Runnable {
 	    xw.field("FILE",file_data.getFileName());
 	    xw.field("ID",for_id);
 	    xw.begin("ELISION");
-	    if (be.computeElision(cu,xw)) {
+	    if (be.computeElision(cu,xw,true)) {
 	       if (file_data.getCurrentId(bedrock_id) == null ||
 		      file_data.getCurrentId(bedrock_id).equals(for_id)) {
 		  xw.end("ELISION");
 		  our_plugin.finishMessage(xw);
+		  be.noteElisionSent();
 		}
 	     }
 	  }
@@ -1743,7 +2003,7 @@ private class EditTask implements Runnable {
 
 
 
-private class OpenTask implements Runnable {
+private class OpenTask extends EditorTask {
 
    private FileData file_data;
    private String bedrock_id;
@@ -2045,6 +2305,7 @@ private class FileData implements IBufferChangedListener {
 	    our_plugin.finishMessage(xw);
 	    BedrockPlugin.logD("SENDING EDIT " + xw.toString());
 	    bdb.replace(off,xlen,txt);
+	    bd.noteChanged();
 	  }
 
 	 setupDefaultBuffer();
@@ -2150,7 +2411,10 @@ private class BufferData {
    private String current_id;
    private BedrockElider elision_data;
    private CopyOwner copy_owner;
-   private CompilationUnit last_ast;
+   private volatile long ast_version;	// key for cached asts of current contents
+   private long ast_environment;	// environment the version was set in
+   private long reconcile_version;
+   private String reconcile_id;
    private boolean is_private;
    private IBuffer prior_buffer;
 
@@ -2162,7 +2426,10 @@ private class BufferData {
       is_setup = false;
       current_id = null;
       elision_data = null;
-      last_ast = null;
+      ast_environment = ast_cache.getEnvironment();
+      ast_version = ast_cache.nextVersion();
+      reconcile_version = -1;
+      reconcile_id = null;
       is_private = pvt;
       copy_owner = new CopyOwner(file_data,bedrock_id,is_private);
       prior_buffer = null;
@@ -2201,26 +2468,42 @@ private class BufferData {
     }
 
    synchronized CompilationUnit getDefaultRoot() {
-      if (last_ast != null) return last_ast;
+      long v = getAstVersion();
+      CompilationUnit cu = ast_cache.getAst(v);
+      if (cu != null) return cu;
       ASTParser p = ASTParser.newParser(AST.JLS4);
       p.setKind(ASTParser.K_COMPILATION_UNIT);
       p.setResolveBindings(true);
       p.setSource(comp_unit);
-      CompilationUnit cu = (CompilationUnit) p.createAST(null);
-      last_ast = cu;
+      cu = (CompilationUnit) p.createAST(null);
+      ast_cache.putAst(v,cu);
       return cu;
     }
 
+   /**
+    *	Return a resolved AST for the current contents.  If these contents have
+    *	already been reconciled (for the same id if one is given), the cached AST
+    *	is used rather than reconciling again.
+    **/
+
    synchronized CompilationUnit getAstRoot(String id) {
+      long v = getAstVersion();
+      if (reconcile_version == v && (id == null || id.equals(reconcile_id))) {
+	 CompilationUnit cu = ast_cache.getAst(v);
+	 if (cu != null) return cu;
+       }
+      else ast_cache.noteMiss();
+
       ICompilationUnit icu = getEditableUnit();
       CompilationUnit cu = null;
       try {
 	 if (!is_private) copy_owner.setId(id);
 	 copy_owner.suppressErrors(false);
 	 cu = icu.reconcile(AST.JLS4,true,true,copy_owner,null);
-	 if (cu == null) cu = last_ast;
-	 else last_ast = cu;
-	 if (last_ast == null) getDefaultRoot();
+	 reconcile_version = v;
+	 reconcile_id = id;
+	 if (cu != null) ast_cache.putAst(v,cu);
+	 else cu = getDefaultRoot();
        }
       catch (JavaModelException e) {
 	 BedrockPlugin.logE("Problem getting AST for file " +
@@ -2230,7 +2513,7 @@ private class BufferData {
 	 BedrockPlugin.logE("Problem getting AST for file " +
 			       file_data.getFileName() + ": " + t,t);
        }
-      return last_ast;
+      return cu;
     }
 
    synchronized void applyEdit(TextEdit xe) throws BedrockException {
@@ -2241,7 +2524,21 @@ private class BufferData {
       catch (JavaModelException e) {
 	 throw new BedrockException("Problem editing source file " + file_data.getFileName(),e);
        }
-      last_ast = null;
+      noteChanged();
+    }
+
+   void noteChanged() {
+      ast_version = ast_cache.nextVersion();
+    }
+
+   private long getAstVersion() {
+      // resource changes or a build can change bindings and problems
+      long env = ast_cache.getEnvironment();
+      if (env != ast_environment) {
+	 ast_environment = env;
+	 ast_version = ast_cache.nextVersion();
+       }
+      return ast_version;
     }
 
    IBuffer getBuffer() {
@@ -2308,6 +2605,7 @@ private class BufferData {
 	  }
 
 	 prior_buffer = null;
+	 noteChanged();
        }
     }
 
@@ -2316,6 +2614,124 @@ private class BufferData {
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Cache of ASTs shared by all buffers					*/
+/*										*/
+/********************************************************************************/
+
+/**
+ *	ASTs are keyed by a buffer's content version, which changes on every
+ *	edit to the buffer and whenever the environment (other files or the
+ *	build state) changes, so stale entries are never returned; they just
+ *	age out.  The number of entries is bounded and the ASTs themselves are
+ *	softly held.
+ **/
+
+private static class AstCache {
+
+   private AstMap cache_map;
+   private long version_counter;
+   private volatile long environment_counter;
+   private long hit_count;
+   private long miss_count;
+
+   AstCache() {
+      cache_map = new AstMap();
+      version_counter = 0;
+      environment_counter = 0;
+      hit_count = 0;
+      miss_count = 0;
+    }
+
+   synchronized long nextVersion()		{ return ++version_counter; }
+
+   long getEnvironment()			{ return environment_counter; }
+
+   synchronized void noteEnvironmentChanged()	{ ++environment_counter; }
+
+   synchronized CompilationUnit getAst(Object key) {
+      SoftReference<CompilationUnit> r = cache_map.get(key);
+      CompilationUnit cu = (r == null ? null : r.get());
+      if (cu != null) ++hit_count;
+      else {
+	 if (r != null) cache_map.remove(key);
+	 ++miss_count;
+       }
+      return cu;
+    }
+
+   synchronized void putAst(Object key,CompilationUnit cu) {
+      if (cu == null) return;
+      cache_map.put(key,new SoftReference<CompilationUnit>(cu));
+    }
+
+   synchronized void noteMiss() 		{ ++miss_count; }
+
+   synchronized void outputStatistics(IvyXmlWriter xw) {
+      xw.field("ASTSIZE",cache_map.size());
+      xw.field("ASTHITS",hit_count);
+      xw.field("ASTMISSES",miss_count);
+      long tot = hit_count + miss_count;
+      if (tot > 0) xw.field("ASTHITRATE",((double) hit_count) / tot);
+    }
+
+}	// end of innerclass AstCache
+
+
+
+private static class AstMap extends LinkedHashMap<Object,SoftReference<CompilationUnit>> {
+
+   private static final long serialVersionUID = 1;
+
+   AstMap() {
+      super(AST_CACHE_SIZE,0.75f,true);
+    }
+
+   @Override protected boolean removeEldestEntry(Map.Entry<Object,SoftReference<CompilationUnit>> e) {
+      return size() > AST_CACHE_SIZE;
+    }
+
+}	// end of innerclass AstMap
+
+
+
+/**
+ *	Key for the AST of a piece of text that does not hold on to the text.
+ **/
+
+private static class TextKey {
+
+   private int text_length;
+   private int text_hash;
+   private long text_check;
+
+   TextKey(char [] text) {
+      text_length = text.length;
+      int h = 0;
+      long c = 0xcbf29ce484222325L;
+      for (int i = 0; i < text.length; ++i) {
+	 h = 31*h + text[i];
+	 c = (c ^ text[i]) * 0x100000001b3L;
+       }
+      text_hash = h;
+      text_check = c;
+    }
+
+   @Override public int hashCode()		{ return text_hash; }
+
+   @Override public boolean equals(Object o) {
+      if (!(o instanceof TextKey)) return false;
+      TextKey tk = (TextKey) o;
+      return text_length == tk.text_length && text_hash == tk.text_hash &&
+	 text_check == tk.text_check;
+    }
+
+}	// end of innerclass TextKey
+
+
+
+
 
 /********************************************************************************/
 /*										*/
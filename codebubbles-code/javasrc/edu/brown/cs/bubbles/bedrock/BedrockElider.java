@@ -50,6 +50,11 @@ class BedrockElider implements BedrockConstants {
 private List<ElidePriority> elide_pdata;
 private List<ElideRegion> elide_rdata;
 
+private List<EditRange> edit_ranges;		// edits since last elision sent
+private boolean have_base;			// front end has our last elision
+private int edit_count;
+private int compute_count;
+
 //TODO: replace up_map, scaleUp, and merge with Prioritizer methods
 private static Map<StructuralPropertyDescriptor,Double>      up_map;
 
@@ -92,6 +97,10 @@ BedrockElider()
 {
    elide_pdata = new ArrayList<ElidePriority>();
    elide_rdata = new ArrayList<ElideRegion>();
+   edit_ranges = new ArrayList<EditRange>();
+   have_base = false;
+   edit_count = 0;
+   compute_count = 0;
 }
 
 
@@ -107,6 +116,10 @@ void clearElideData()
 {
    elide_pdata.clear();
    elide_rdata.clear();
+   synchronized (edit_ranges) {
+      have_base = false;
+      edit_ranges.clear();
+    }
 }
 
 
@@ -133,9 +146,35 @@ void noteEdit(int soff,int len,int rlen)
       if (!ed.noteEdit(soff,len,rlen)) it.remove();
     }
 
+   boolean rgnchng = false;
    for (Iterator<ElideRegion> it = elide_rdata.iterator(); it.hasNext(); ) {
       ElideRegion ed = it.next();
-      if (!ed.noteEdit(soff,len,rlen)) it.remove();
+      if (!ed.noteEdit(soff,len,rlen)) {
+	 it.remove();
+	 rgnchng = true;
+       }
+    }
+
+   synchronized (edit_ranges) {
+      ++edit_count;
+      if (rgnchng) have_base = false;
+      for (EditRange er : edit_ranges) er.noteEdit(soff,len,rlen);
+      edit_ranges.add(new EditRange(soff,soff+rlen));
+    }
+}
+
+
+
+/**
+ *	Note that the last computed elision was delivered to the front end.  Further
+ *	incremental elisions are relative to it.
+ **/
+
+void noteElisionSent()
+{
+   synchronized (edit_ranges) {
+      have_base = true;
+      if (compute_count == edit_count) edit_ranges.clear();
     }
 }
 
@@ -148,16 +187,49 @@ void noteEdit(int soff,int len,int rlen)
 /********************************************************************************/
 
 boolean computeElision(CompilationUnit cu,IvyXmlWriter xw)
+{
+   return computeElision(cu,xw,false);
+}
+
+
+
+/**
+ *	Compute elision information.  If delta is set and the front end has our
+ *	prior output, only the smallest declarations containing the edits made
+ *	since then are generated and the result is flagged with DELTA.	Priorities
+ *	of the declarations that are not sent are not recomputed.  Returns false
+ *	if there is nothing to send.
+ **/
+
+boolean computeElision(CompilationUnit cu,IvyXmlWriter xw,boolean delta)
 {
    if (cu == null || elide_rdata.isEmpty()) return false;
 
+   List<EditRange> edits = null;
+   synchronized (edit_ranges) {
+      compute_count = edit_count;
+      if (delta && have_base && elide_pdata.isEmpty()) {
+	 edits = new ArrayList<EditRange>();
+	 for (EditRange er : edit_ranges) edits.add(new EditRange(er));
+       }
+    }
+
+   Set<ASTNode> units = null;
+   if (edits != null) {
+      if (edits.isEmpty()) return false;
+      UnitFinder uf = new UnitFinder(cu,edits);
+      cu.accept(uf);
+      units = uf.getUnits();
+    }
+   if (units != null) xw.field("DELTA",true);
+
    ElidePass1 ep1 = null;
    if (!elide_pdata.isEmpty()) {
       ep1 = new ElidePass1();
       cu.accept(ep1);
     }
 
-   ElidePass2 ep2 = new ElidePass2(ep1,xw);
+   ElidePass2 ep2 = new ElidePass2(ep1,xw,units);
    cu.accept(ep2);
 
    return true;
@@ -205,6 +277,17 @@ private boolean isRootRegion(int soff,int len)
 
 
 
+private boolean isInsideRoot(ASTNode n)
+{
+   for (ASTNode p = n; p != null; p = p.getParent()) {
+      if (isRootRegion(p.getStartPosition(),p.getLength())) return true;
+    }
+
+   return false;
+}
+
+
+
 private double scaleUp(ASTNode n)
 {
    Double v = up_map.get(n.getLocationInParent());
@@ -510,6 +593,62 @@ private class ElidePass1 extends ASTVisitor {
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Tree walk for finding declarations affected by edits			*/
+/*										*/
+/********************************************************************************/
+
+private class UnitFinder extends ASTVisitor {
+
+   private CompilationUnit tree_root;
+   private List<EditRange> edit_ranges;
+   private ASTNode [] edit_units;
+
+   UnitFinder(CompilationUnit cu,List<EditRange> edits) {
+      tree_root = cu;
+      edit_ranges = edits;
+      edit_units = new ASTNode[edits.size()];
+    }
+
+   public boolean preVisit2(ASTNode n) {
+      int sp = tree_root.getExtendedStartPosition(n);
+      int ep = sp + tree_root.getExtendedLength(n);
+      boolean fnd = false;
+      for (int i = 0; i < edit_units.length; ++i) {
+	 EditRange er = edit_ranges.get(i);
+	 if (er.getStart() >= sp && er.getEnd() <= ep) {
+	    fnd = true;
+	    if (n instanceof BodyDeclaration) edit_units[i] = n;
+	  }
+       }
+      return fnd;
+    }
+
+   Set<ASTNode> getUnits() {
+      Set<ASTNode> rslt = new HashSet<ASTNode>();
+      for (ASTNode n : edit_units) {
+	 // edits outside of any declaration or above the root need everything
+	 if (n == null || !isInsideRoot(n)) return null;
+	 rslt.add(n);
+       }
+      for (Iterator<ASTNode> it = rslt.iterator(); it.hasNext(); ) {
+	 ASTNode n = it.next();
+	 for (ASTNode p = n.getParent(); p != null; p = p.getParent()) {
+	    if (rslt.contains(p)) {
+	       it.remove();
+	       break;
+	     }
+	  }
+       }
+      return rslt;
+    }
+
+}	// end of innerclass UnitFinder
+
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Tree walk for setting final priorities					*/
@@ -525,10 +664,16 @@ private class ElidePass2 extends ASTVisitor {
    private IvyXmlWriter xml_writer;
    private boolean last_case;
    private Stack<ASTNode> switch_stack;
+   private Set<ASTNode> delta_units;
+   private IvyXmlWriter output_writer;
+   private ASTNode output_node;
 
-   ElidePass2(ElidePass1 pass1,IvyXmlWriter xw) {
+   ElidePass2(ElidePass1 pass1,IvyXmlWriter xw,Set<ASTNode> units) {
       up_values = pass1;
-      xml_writer = xw;
+      delta_units = units;
+      output_writer = xw;
+      output_node = null;
+      xml_writer = (units == null ? xw : null);
       result_value = new HashMap<ASTNode,Double>();
       tree_root = null;
       active_node = null;
@@ -538,6 +683,10 @@ private class ElidePass2 extends ASTVisitor {
 
    public void preVisit(ASTNode n) {
       if (tree_root == null && n instanceof CompilationUnit) tree_root = (CompilationUnit) n;
+      if (xml_writer == null && delta_units != null && delta_units.contains(n)) {
+	 xml_writer = output_writer;
+	 output_node = n;
+       }
       if (active_node == null) {
 	 if (isRootRegion(n.getStartPosition(),n.getLength())) {
 	    active_node = n;
@@ -565,16 +714,30 @@ private class ElidePass2 extends ASTVisitor {
 	 xml_writer.end("ELIDE");
        }
       checkEndSwitchBlock(n);
+      if (n == output_node) {
+	 xml_writer = null;
+	 output_node = null;
+       }
     }
 
    public boolean visit(MethodDeclaration n) {
-      return isActiveRegion(n.getStartPosition(),n.getLength());
+      return isActiveRegion(n.getStartPosition(),n.getLength()) && isDeltaActive(n);
     }
    public boolean visit(TypeDeclaration n) {
-      return isActiveRegion(n.getStartPosition(),n.getLength());
+      return isActiveRegion(n.getStartPosition(),n.getLength()) && isDeltaActive(n);
     }
    public boolean visit(Initializer n) {
-      return isActiveRegion(n.getStartPosition(),n.getLength());
+      return isActiveRegion(n.getStartPosition(),n.getLength()) && isDeltaActive(n);
+    }
+
+   private boolean isDeltaActive(ASTNode n) {
+      if (delta_units == null || xml_writer != null) return true;
+      for (ASTNode u : delta_units) {
+	 for (ASTNode p = u; p != null; p = p.getParent()) {
+	    if (p == n) return true;
+	  }
+       }
+      return false;
     }
 
    double getPriority(ASTNode n) {
@@ -816,6 +979,47 @@ private class ElidePriority extends ElideData {
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Class for tracking edited regions					*/
+/*										*/
+/********************************************************************************/
+
+private static class EditRange {
+
+   private int start_offset;
+   private int end_offset;
+
+   EditRange(int soff,int eoff) {
+      start_offset = soff;
+      end_offset = eoff;
+    }
+
+   EditRange(EditRange er) {
+      start_offset = er.start_offset;
+      end_offset = er.end_offset;
+    }
+
+   int getStart()				{ return start_offset; }
+   int getEnd() 				{ return end_offset; }
+
+   void noteEdit(int soff,int len,int rlen) {
+      if (end_offset < soff) return;			// before the change
+      if (start_offset > soff + len) {			// after the change
+	 start_offset += rlen - len;
+	 end_offset += rlen - len;
+	 return;
+       }
+      if (start_offset > soff) start_offset = soff;
+      if (end_offset >= soff + len) end_offset += rlen - len;
+      else end_offset = soff + rlen;
+    }
+
+}	// end of innerclass EditRange
+
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Priority computation classes						*/
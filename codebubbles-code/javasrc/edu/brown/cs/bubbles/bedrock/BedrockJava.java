@@ -57,6 +57,8 @@ class BedrockJava implements BedrockConstants {
 
 private BedrockPlugin our_plugin;
 
+private static final long	NAME_TIME_SLACK = 2000;
+
 
 
 
@@ -80,11 +82,19 @@ BedrockJava(BedrockPlugin bp)
 /*										*/
 /********************************************************************************/
 
-void getAllNames(String proj,String bid,Set<String> files,String bkg,IvyXmlWriter xw) throws BedrockException
+/**
+ *	Output all names.  If the request is in the background and includes the
+ *	epoch returned by a prior request, files that have not changed since then
+ *	are reported as UNCHANGED rather than with their names.  The new epoch is
+ *	returned with ENDNAMES.
+ **/
+
+void getAllNames(String proj,String bid,Set<String> files,String bkg,String epoch,
+		    IvyXmlWriter xw) throws BedrockException
 {
    NameThread nt = null;
 
-   if (bkg != null) nt = new NameThread(bid,bkg,files);
+   if (bkg != null) nt = new NameThread(bid,bkg,files,epoch);
 
    if (proj != null) {
       IJavaProject jp = getJavaProject(proj);
@@ -118,13 +128,21 @@ private class NameThread extends Thread {
    private String name_id;
    private Map<IJavaElement,Boolean> separate_elements;
    private Set<String> file_set;
+   private long since_time;
 
-   NameThread(String bid,String nid,Set<String> fset) {
+   NameThread(String bid,String nid,Set<String> fset,String epoch) {
       super("Bedrock_GetNames");
       bump_id = bid;
       name_id = nid;
       separate_elements = new HashMap<IJavaElement,Boolean>();
       file_set = fset;
+      since_time = -1;
+      if (epoch != null) {
+	 try {
+	    since_time = Long.parseLong(epoch);
+	  }
+	 catch (NumberFormatException e) { }
+       }
     }
 
    void addElement(IJavaElement je) {
@@ -189,8 +207,11 @@ private class NameThread extends Thread {
     }
 
    @Override public void run() {
-      BedrockPlugin.logD("START NAMES FOR " + name_id);
+      BedrockPlugin.logD("START NAMES FOR " + name_id + " " + since_time);
 
+      // anything modified after this point will be resent next time
+      long epoch = System.currentTimeMillis();
+      int unchanged = 0;
       IvyXmlWriter xw = null;
 
       try {
@@ -200,7 +221,8 @@ private class NameThread extends Thread {
 	       xw.field("NID",name_id);
 	     }
 	    boolean cfg = ent.getValue();
-	    BedrockUtil.outputJavaElement(ent.getKey(),file_set,cfg,xw);
+	    if (cfg && outputUnchanged(ent.getKey(),xw)) ++unchanged;
+	    else BedrockUtil.outputJavaElement(ent.getKey(),file_set,cfg,xw);
 	    if (xw.getLength() <= 0 || xw.getLength() > 1000000) {
 	       our_plugin.finishMessageWait(xw,15000);
 	       // BedrockPlugin.logD("OUTPUT NAMES: " + xw.toString());
@@ -216,13 +238,35 @@ private class NameThread extends Thread {
 	 BedrockPlugin.logE("Problem getting names",t);
        }
       finally {
-	 BedrockPlugin.logD("FINISH NAMES FOR " + name_id);
+	 BedrockPlugin.logD("FINISH NAMES FOR " + name_id + " " + unchanged + " UNCHANGED");
 	 xw = our_plugin.beginMessage("ENDNAMES",bump_id);
 	 xw.field("NID",name_id);
+	 xw.field("EPOCH",epoch);
 	 our_plugin.finishMessage(xw);
        }
     }
 
+   private boolean outputUnchanged(IJavaElement je,IvyXmlWriter xw) {
+      if (since_time <= 0 || je.getElementType() != IJavaElement.COMPILATION_UNIT) return false;
+
+      // names come from the saved file, so its time stamp tells if they can differ
+      IResource ir = je.getResource();
+      if (ir == null) return false;
+      long ts = ir.getLocalTimeStamp();
+      if (ts == IResource.NULL_STAMP || ts + NAME_TIME_SLACK >= since_time) return false;
+
+      IProject ip = je.getJavaProject().getProject();
+      File f = BedrockUtil.getFileForPath(je.getPath(),ip);
+      if (file_set != null && !file_set.contains(f.getPath()) &&
+	     !file_set.contains(f.getAbsolutePath()))
+	 return true;
+
+      xw.begin("UNCHANGED");
+      xw.textElement("PATH",f.getAbsolutePath());
+      xw.end("UNCHANGED");
+      return true;
+    }
+
 }	// end of inner class NameThread
 
 
@@ -221,6 +221,12 @@ void waitForEdits()
 }
 
 
+void noteResourcesChanged()
+{
+   if (bedrock_editor != null) bedrock_editor.noteResourcesChanged();
+}
+
+
 void getWorkingElements(IJavaElement elt,List<ICompilationUnit> rslt)
 {
    bedrock_editor.getWorkingElements(elt,rslt);
@@ -490,7 +496,8 @@ private String handleCommand(String cmd,String proj,Element xml) throws BedrockE
    else if (cmd.equals("GETALLNAMES")) {
       bedrock_java.getAllNames(proj,IvyXml.getAttrString(xml,"BID","*"),
 				  getSet(xml,"FILE"),
-				  IvyXml.getAttrString(xml,"BACKGROUND"),xw);
+				  IvyXml.getAttrString(xml,"BACKGROUND"),
+				  IvyXml.getAttrString(xml,"EPOCH"),xw);
     }
    else if (cmd.equals("FINDDEFINITIONS")) {
       bedrock_java.handleFindAll(proj,IvyXml.getAttrString(xml,"FILE"),
@@ -678,6 +685,9 @@ private String handleCommand(String cmd,String proj,Element xml) throws BedrockE
 				   IvyXml.getAttrString(xml,"ID"),
 				   getEditSet(xml),xw);
     }
+   else if (cmd.equals("EDITSTATS")) {
+      bedrock_editor.handleEditStatistics(xw);
+    }
    else if (cmd.equals("COMMIT")) {
       bedrock_editor.handleCommit(proj,IvyXml.getAttrString(xml,"BID","*"),
 				     IvyXml.getAttrBool(xml,"REFRESH",false),
@@ -1022,6 +1032,35 @@ private class CommandHandler implements MintHandler {
 
       String rslt = null;
 
+      if (cmd.equals("BATCH")) rslt = processBatch(xml);
+      else rslt = processCommand(cmd,proj,xml);
+
+      msg.replyTo(rslt);
+
+      if (shutdown_mint) mint_control.shutDown();
+    }
+
+   private String processBatch(Element xml) {
+      IvyXmlWriter xw = new IvyXmlWriter();
+      xw.begin("BATCH");
+      for (Element cxml : IvyXml.children(xml,"COMMAND")) {
+	 String cmd = IvyXml.getAttrString(cxml,"DO");
+	 String proj = IvyXml.getAttrString(cxml,"PROJECT");
+	 String rslt = processCommand(cmd,proj,cxml);
+	 xw.begin("REPLY");
+	 xw.field("INDEX",IvyXml.getAttrInt(cxml,"INDEX"));
+	 xw.xmlText(rslt);
+	 xw.end("REPLY");
+       }
+      xw.end("BATCH");
+      String rslt = xw.toString();
+      xw.close();
+      return rslt;
+    }
+
+   private String processCommand(String cmd,String proj,Element xml) {
+      String rslt = null;
+
       try {
 	 rslt = handleCommand(cmd,proj,xml);
        }
@@ -1053,9 +1092,7 @@ private class CommandHandler implements MintHandler {
 	 rslt += "</ERROR>";
        }
 
-      msg.replyTo(rslt);
-
-      if (shutdown_mint) mint_control.shutDown();
+      return rslt;
     }
 
 }	// end of subclass CommandHandler
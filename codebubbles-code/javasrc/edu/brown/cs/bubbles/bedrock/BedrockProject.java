@@ -1572,6 +1572,11 @@ private void handleBuild(IProject p,boolean clean,boolean full,boolean refresh)
 			    evt.getSource() + " " + evt.getResource());
     }
 
+   if (evt.getType() == IResourceChangeEvent.POST_CHANGE ||
+	  evt.getType() == IResourceChangeEvent.POST_BUILD) {
+      our_plugin.noteResourcesChanged();
+    }
+
    if (evt.getType() == IResourceChangeEvent.POST_CHANGE) {
       try {
 	 IvyXmlWriter xw = our_plugin.beginMessage("RESOURCE");
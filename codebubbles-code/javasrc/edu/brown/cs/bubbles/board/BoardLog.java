@@ -355,6 +355,18 @@ public static void logD(String src,String msg,Throwable t)
 
 
 
+/**
+ *	Check if messages at the given level are being logged.	This lets callers
+ *	avoid building expensive log messages that would be discarded.
+ **/
+
+public static boolean isLogging(LogLevel lvl)
+{
+   return lvl.ordinal() <= the_logger.log_level.ordinal();
+}
+
+
+
 /**
  *	Get the current log level
  **/
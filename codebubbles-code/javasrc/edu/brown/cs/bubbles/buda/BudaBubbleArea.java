@@ -1456,9 +1456,15 @@ void configure(Element xml,Rectangle delta)
    Map<String,BudaBubble> bubblemap = new HashMap<String,BudaBubble>();
 
    Element bbls = IvyXml.getChild(xml,"BUBBLES");
-   for (Element bbl : IvyXml.children(bbls,"BUBBLE")) {
-      BudaBubble bb = for_root.createBubble(this,bbl,delta);
-      if (bb != null) bubblemap.put(IvyXml.getAttrString(bbl,"ID"),bb);
+   for_root.preloadBubbles(this,bbls);
+   try {
+      for (Element bbl : IvyXml.children(bbls,"BUBBLE")) {
+	 BudaBubble bb = for_root.createBubble(this,bbl,delta);
+	 if (bb != null) bubblemap.put(IvyXml.getAttrString(bbl,"ID"),bb);
+       }
+    }
+   finally {
+      for_root.endPreload();
     }
       
    Element grps = IvyXml.getChild(xml,"GROUPS");
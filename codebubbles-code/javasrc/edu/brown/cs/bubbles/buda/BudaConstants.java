@@ -43,6 +43,7 @@ import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
 import java.io.*;
 import java.util.EventListener;
+import java.util.List;
 
 
 /**
@@ -1051,6 +1052,22 @@ interface BubbleConfigurator {
 
 
 
+/**
+ *	A bubble configurator can also implement this interface if it can fetch
+ *	the data for a set of bubbles more efficiently before they are created
+ *	one at a time.	The preload is called with all the bubble descriptions
+ *	about to be restored and endPreload is called once they have been created.
+ **/
+
+interface BubblePreloader {
+
+   void preloadBubbles(BudaBubbleArea bba,List<Element> xmls);
+   void endPreload();
+
+}	// end of inner interface BubblePreloader
+
+
+
 /**
  *	A port configurator is used by Buda to create specialized LinkPorts that
  *	may be defined in other modules.  There job is to recreate the port from
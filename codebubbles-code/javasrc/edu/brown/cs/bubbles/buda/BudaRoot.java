@@ -1814,6 +1814,49 @@ BudaBubble createBubble(BudaBubbleArea bba,Element e,Rectangle delta,int dx)
 }
 
 
+/**
+ *	Let the configurators fetch what they need for a set of bubbles about to
+ *	be created from the configuration XML.
+ **/
+
+void preloadBubbles(BudaBubbleArea bba,Element bbls)
+{
+   Map<String,List<Element>> bykey = new HashMap<String,List<Element>>();
+   for (Element bbl : IvyXml.children(bbls,"BUBBLE")) {
+      String key = IvyXml.getAttrString(bbl,"CONFIG");
+      if (key == null) continue;
+      List<Element> xmls = bykey.get(key);
+      if (xmls == null) {
+	 xmls = new ArrayList<Element>();
+	 bykey.put(key,xmls);
+       }
+      xmls.add(bbl);
+    }
+
+   for (Map.Entry<String,List<Element>> ent : bykey.entrySet()) {
+      BubbleConfigurator bc = bubble_config.get(ent.getKey());
+      if (bc instanceof BubblePreloader) {
+	 try {
+	    ((BubblePreloader) bc).preloadBubbles(bba,ent.getValue());
+	  }
+	 catch (Throwable t) {
+	    BoardLog.logE("BUDA","Problem preloading bubbles",t);
+	  }
+       }
+    }
+}
+
+
+
+void endPreload()
+{
+   for (BubbleConfigurator bc : bubble_config.values()) {
+      if (bc instanceof BubblePreloader) ((BubblePreloader) bc).endPreload();
+    }
+}
+
+
+
 int matchConfiguration(String key,Element e,BudaBubble bb)
 {
    if (key == null) return 0;
@@ -171,9 +171,15 @@ BudaWorkingSetImpl loadTask(BudaBubbleArea bba,int offset)
 
    Map<String,BudaBubble> bubblemap = new HashMap<String,BudaBubble>();
    Element bbls = IvyXml.getChild(te,"BUBBLES");
-   for (Element bbl : IvyXml.children(bbls,"BUBBLE")) {
-      BudaBubble bb = root.createBubble(bba,bbl,null,dx);
-      if (bb != null) bubblemap.put(IvyXml.getAttrString(bbl,"ID"),bb);
+   root.preloadBubbles(bba,bbls);
+   try {
+      for (Element bbl : IvyXml.children(bbls,"BUBBLE")) {
+	 BudaBubble bb = root.createBubble(bba,bbl,null,dx);
+	 if (bb != null) bubblemap.put(IvyXml.getAttrString(bbl,"ID"),bb);
+       }
+    }
+   finally {
+      root.endPreload();
     }
 
    Element grps = IvyXml.getChild(te,"GROUPS");
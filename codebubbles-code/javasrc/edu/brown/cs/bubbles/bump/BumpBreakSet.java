@@ -51,7 +51,7 @@ class BumpBreakSet implements BumpConstants, BumpConstants.BumpBreakModel {
 /********************************************************************************/
 
 private Map<String,BumpBreakImpl>	current_breakpoints;
-private Map<BumpBreakpointHandler,File> break_handlers;
+private BumpHandlerRegistry<BumpBreakpointHandler> break_handlers;
 
 private BumpClient		bump_client;
 private BumpBreakMode		break_mode;
@@ -68,7 +68,7 @@ private BumpExceptionMode	exception_mode;
 BumpBreakSet(BumpClient bc)
 {
    current_breakpoints = new HashMap<String,BumpBreakImpl>();
-   break_handlers = new HashMap<BumpBreakpointHandler,File>();
+   break_handlers = new BumpHandlerRegistry<BumpBreakpointHandler>();
    break_mode = BumpBreakMode.SUSPEND_THREAD;
    exception_mode = BumpExceptionMode.ALL;
    bump_client = bc;
@@ -294,18 +294,14 @@ BumpBreakSet(BumpClient bc)
 
 void addBreakpointHandler(File f,BumpBreakpointHandler bh)
 {
-   synchronized (break_handlers) {
-      break_handlers.put(bh,f);
-    }
+   break_handlers.addHandler(f,bh);
 }
 
 
 
 synchronized void removeBreakpointHandler(BumpBreakpointHandler bh)
 {
-   synchronized (break_handlers) {
-      break_handlers.remove(bh);
-    }
+   break_handlers.removeHandler(bh);
 }
 
 
@@ -368,9 +364,15 @@ void handleUpdate(Element ep)
        }
     }
 
-   for (Map.Entry<BumpBreakpointHandler,File> ent : break_handlers.entrySet()) {
-      BumpBreakpointHandler hdlr = ent.getKey();
-      File f = ent.getValue();
+   Set<File> files = new HashSet<File>();
+   for (BumpBreakImpl bbi : rem) files.add(bbi.getFile());
+   for (BumpBreakImpl bbi : add) files.add(bbi.getFile());
+   for (BumpBreakImpl bbi : upd) files.add(bbi.getFile());
+   Set<BumpBreakpointHandler> hdlrs = new LinkedHashSet<BumpBreakpointHandler>();
+   for (File bf : files) hdlrs.addAll(break_handlers.getHandlers(bf));
+
+   for (BumpBreakpointHandler hdlr : hdlrs) {
+      File f = break_handlers.getFile(hdlr);
       for (BumpBreakImpl bbi : rem) {
 	 if (fileMatch(f,bbi)) hdlr.handleBreakpointRemoved(bbi);
        }
@@ -393,8 +395,7 @@ void handleUpdate(Element ep)
 
 private boolean fileMatch(File forfile,BumpBreakImpl bp)
 {
-   if (forfile == null) return true;
-   return forfile.equals(bp.getFile());
+   return BumpHandlerRegistry.fileMatch(forfile,bp.getFile());
 }
 
 
@@ -41,7 +41,11 @@ import javax.swing.JOptionPane;
 import java.io.*;
 import java.net.InetAddress;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 
 
@@ -70,12 +74,19 @@ private String		source_id;
 private BumpProblemSet	problem_set;
 private BumpBreakSet	break_set;
 private BumpRunManager	run_manager;
-private Map<BumpFileHandler,File> file_handlers;
+private BumpHandlerRegistry<BumpFileHandler> file_handlers;
 private Map<String,String> option_map;
 private Map<String,NameCollector> name_collects;
 private Map<String,EvalData> eval_handlers;
 private int		collect_id;
 private Map<BumpChangeHandler,Boolean> change_handlers;
+private Map<Integer,AsyncReply<?>> pending_requests;
+private AtomicInteger	request_counter;
+private Timer		reply_timer;
+private boolean 	batch_supported;
+private ThreadLocal<MessageWriter> message_writers;
+private Map<String,IdeCommand> ide_commands;
+private ExecutorService run_executor;
 private SwingEventListenerList<BumpOpenEditorBubbleHandler> open_editor_bubble_handlers;
 private SwingEventListenerList<BumpProgressHandler> progress_handlers;
 
@@ -88,6 +99,8 @@ private static BumpClient default_client = null;
 
 private static final int MAX_DELAY = 30000;
 private static final int BUILD_DELAY = 600000;
+private static final int LATENCY_BUCKETS = 12;
+private static final int NAME_WINDOW = 4;
 
 
 
@@ -154,14 +167,24 @@ protected BumpClient()
    mint_control = BoardSetup.getSetup().getMintControl();
    mint_name = BoardSetup.getSetup().getMintName();
 
-   file_handlers = new ConcurrentHashMap<BumpFileHandler,File>();
+   file_handlers = new BumpHandlerRegistry<BumpFileHandler>();
    option_map = new HashMap<String,String>();
-   name_collects = new HashMap<String,NameCollector>();
+   name_collects = new ConcurrentHashMap<String,NameCollector>();
    eval_handlers = new HashMap<String,EvalData>();
    change_handlers = new ConcurrentHashMap<BumpChangeHandler,Boolean>();
+   pending_requests = new ConcurrentHashMap<Integer,AsyncReply<?>>();
+   request_counter = new AtomicInteger();
+   reply_timer = new Timer("BumpReplyTimer",true);
+   batch_supported = true;
+   message_writers = new ThreadLocal<MessageWriter>() {
+      @Override protected MessageWriter initialValue() {
+	 return new MessageWriter();
+       }
+    };
    open_editor_bubble_handlers = new SwingEventListenerList<BumpOpenEditorBubbleHandler>(
       BumpOpenEditorBubbleHandler.class);
    progress_handlers = new SwingEventListenerList<BumpProgressHandler>(BumpProgressHandler.class);
+   setupIdeCommands();
 
    collect_id = (int)(Math.random() * 10000);
 
@@ -319,11 +342,22 @@ public void stopIDE()
 {
    run_manager.terminateAll();
 
+   boolean active;
+   synchronized (this) {
+      active = ide_active;
+    }
+   Element estats = (active ? getEditStatistics() : null);
+
    synchronized (this) {
       ide_active = false;
       doing_exit = true;
     }
 
+   BoardLog.logI("BUMP","IDE message statistics:\n" + getIdeCommandStatistics());
+   if (estats != null) {
+      BoardLog.logI("BUMP","IDE edit statistics: " + IvyXml.convertXmlToString(estats));
+    }
+
    sendMessage("EXIT");
 }
 
@@ -403,6 +437,44 @@ public Element startFile(String pname,File file,boolean getcnts,int id) throws B
 
 
 
+/**
+ *	Open a set of files in one request to the IDE.  The result maps each file
+ *	that was opened successfully to the reply that startFile would have
+ *	returned for it.  Files that could not be opened are omitted so that
+ *	the caller can retry them individually.
+ **/
+
+public Map<File,Element> startFiles(String pname,Collection<File> files,boolean getcnts,int id)
+{
+   Map<File,Element> rslt = new HashMap<File,Element>();
+
+   waitForIDE();
+
+   List<File> order = new ArrayList<File>(files);
+   List<BatchCommand> cmds = new ArrayList<BatchCommand>();
+   for (File file : order) {
+      String flds = "FILE='" + file.getPath() + "'";
+      if (id >= 0) flds += " ID='" + id + "'";
+      if (getcnts || !same_host) flds += " CONTENTS='T'";
+      cmds.add(new BatchCommand("STARTFILE",pname,flds,null));
+    }
+
+   List<Element> rply = getXmlReplies(cmds,0);
+   for (int i = 0; i < order.size(); ++i) {
+      Element x = rply.get(i);
+      if (!IvyXml.isElement(x,"RESULT")) continue;
+      File file = order.get(i);
+      rslt.put(file,x);
+      for (BumpChangeHandler bch : change_handlers.keySet()) {
+	 bch.handleFileStarted(pname,file.getPath());
+       }
+    }
+
+   return rslt;
+}
+
+
+
 /**
  *	Note an edit to the specified file.  The region from start to end is first
  *	deleted and then the given string is inserted in its place.  If start == end,
@@ -432,22 +504,19 @@ public void editFile(String pname,File file,int id,int start,int end,String txt)
    if (id >= 0) flds += " ID='" + id + "'";
    flds += " NEWLINE='true'";
 
-   IvyXmlWriter xw = new IvyXmlWriter();
-   xw.begin("EDIT");
-   xw.field("START",start);
-   xw.field("END",end);
+   MessageWriter mw = startMessage("EDITFILE",pname,flds);
+   mw.append("<EDIT START='").append(start).append("' END='").append(end).append("'");
    if (txt != null && txt.contains("@@@]@@@]@@@>")) {
-      xw.field("ENCODE",true);
-      xw.text(IvyXml.byteArrayToString(txt.getBytes()));
+      mw.append(" ENCODE='true'>");
+      mw.append(IvyXml.byteArrayToString(txt.getBytes()));
     }
    else if (txt != null) {
-      xw.cdata(txt);
+      mw.append(">").cdata(txt);
     }
-   xw.end("EDIT");
-   String edit = xw.toString();
-   xw.close();
+   else mw.append(">");
+   mw.append("</EDIT>");
 
-   sendMessage("EDITFILE",pname,flds,edit);
+   sendMessage(mw,null,MINT_MSG_NO_REPLY);
 }
 
 
@@ -1110,6 +1179,44 @@ public List<BumpLocation> findMethods(String proj,String pat,boolean refs,boolea
 protected String localFixupName(String nm)		{ return nm; }
 
 
+/**
+ *	Find the definitions of a set of methods in one request to the IDE.  The
+ *	result maps each name to its locations; names whose search failed are
+ *	omitted.
+ **/
+
+public Map<String,List<BumpLocation>> findMethods(String proj,Collection<String> names,boolean system)
+{
+   Map<String,List<BumpLocation>> rslt = new HashMap<String,List<BumpLocation>>();
+   List<String> order = new ArrayList<String>();
+   List<BatchCommand> cmds = new ArrayList<BatchCommand>();
+
+   waitForIDE();
+
+   for (String name : names) {
+      String pat = localFixupName(name);
+      if (pat == null) continue;
+      StringWriter sw = new StringWriter();
+      sw.write("PATTERN='");
+      IvyXml.outputXmlString(pat,sw);
+      sw.write("' DEFS='true' REFS='false' FOR='METHOD'");
+      if (system) sw.write(" SYSTEM='T'");
+      order.add(name);
+      cmds.add(new BatchCommand("PATTERNSEARCH",proj,sw.toString(),null));
+    }
+
+   List<Element> rply = getXmlReplies(cmds,0);
+   for (int i = 0; i < order.size(); ++i) {
+      Element x = rply.get(i);
+      if (!IvyXml.isElement(x,"RESULT")) continue;
+      rslt.put(order.get(i),getSearchResults(proj,x,false));
+    }
+
+   return rslt;
+}
+
+
+
 
 /**
  *	Return a list of BumpLocations containing the definitions of all the fields
@@ -1603,16 +1710,40 @@ public List<BumpLocation> findReferences(String proj,File file,int spos,int epos
 {
    waitForIDE();
 
-   String q = "FILE='" + file.getPath() + "' START='" + spos + "' END='" + epos + "'";
-   q += " EXACT='true' EQUIV='true'";
+   String q = getReferenceQuery(file,spos,epos);
 
    Element xml = getXmlReply("FINDREFERENCES",proj,q,null,delay);
 
-   if (!IvyXml.isElement(xml,"RESULT")) return null;
+   return new SearchConverter(proj).convert(xml);
+}
 
-   return getSearchResults(proj,xml,true);
+
+
+/**
+ *	Asynchronous version of findReferences.  The returned future is completed
+ *	with the result, or with null if there is no valid reply within the delay.
+ **/
+
+public CompletableFuture<List<BumpLocation>> findReferencesAsync(String proj,File file,
+	 int spos,int epos,long delay)
+{
+   waitForIDE();
+
+   String q = getReferenceQuery(file,spos,epos);
+
+   return getXmlReplyAsync("FINDREFERENCES",proj,q,null,delay,new SearchConverter(proj));
+}
+
+
+
+private static String getReferenceQuery(File file,int spos,int epos)
+{
+   String q = "FILE='" + file.getPath() + "' START='" + spos + "' END='" + epos + "'";
+   q += " EXACT='true' EQUIV='true'";
+   return q;
 }
 
+
 /**
  *	Open an editor in eclipse with specified file and lineNumber
  **/
@@ -1644,16 +1775,38 @@ public List<BumpLocation> findRWReferences(String proj,File file,int spos,int ep
 {
    waitForIDE();
 
-   String q = "FILE='" + file.getPath() + "' START='" + spos + "' END='" + epos + "'";
-   if (write) q += " WONLY='T'";
-   else q+= " RONLY='T'";
-   q += " EXACT='true' EQUIV='true'";
+   String q = getRWReferenceQuery(file,spos,epos,write);
 
    Element xml = getXmlReply("FINDREFERENCES",proj,q,null,delay);
 
-   if (!IvyXml.isElement(xml,"RESULT")) return null;
+   return new SearchConverter(proj).convert(xml);
+}
 
-   return getSearchResults(proj,xml,true);
+
+
+/**
+ *	Asynchronous version of findRWReferences.
+ **/
+
+public CompletableFuture<List<BumpLocation>> findRWReferencesAsync(String proj,File file,
+	 int spos,int epos,boolean write,long delay)
+{
+   waitForIDE();
+
+   String q = getRWReferenceQuery(file,spos,epos,write);
+
+   return getXmlReplyAsync("FINDREFERENCES",proj,q,null,delay,new SearchConverter(proj));
+}
+
+
+
+private static String getRWReferenceQuery(File file,int spos,int epos,boolean write)
+{
+   String q = "FILE='" + file.getPath() + "' START='" + spos + "' END='" + epos + "'";
+   if (write) q += " WONLY='T'";
+   else q+= " RONLY='T'";
+   q += " EXACT='true' EQUIV='true'";
+   return q;
 }
 
 
@@ -1678,9 +1831,23 @@ public List<BumpLocation> findDefinition(String proj,File file,int spos,int epos
 
    Element xml = getXmlReply("FINDDEFINITIONS",proj,q,null,delay);
 
-   if (!IvyXml.isElement(xml,"RESULT")) return null;
+   return new SearchConverter(proj).convert(xml);
+}
 
-   return getSearchResults(proj,xml,true);
+
+
+/**
+ *	Asynchronous version of findDefinition.
+ **/
+
+public CompletableFuture<List<BumpLocation>> findDefinitionAsync(String proj,File file,
+	 int spos,int epos,long delay)
+{
+   waitForIDE();
+
+   String q = "FILE='" + file.getPath() + "' START='" + spos + "' END='" + epos + "'";
+
+   return getXmlReplyAsync("FINDDEFINITIONS",proj,q,null,delay,new SearchConverter(proj));
 }
 
 
@@ -1745,48 +1912,89 @@ public Collection<BumpLocation> findAllNames(String proj)
 
 public Collection<BumpLocation> findAllNames(String proj,List<String> files,boolean bkg)
 {
-   if (doing_exit) return null;
+   if (!bkg) return findAllNamesDirect(proj,files);
+
+   NameAccumulator na = new NameAccumulator();
+   if (!findAllNames(proj,files,na)) return null;
+
+   return na.getNames();
+}
+
+
+
+/**
+ *	Find all names as with findAllNames, but deliver them to the given handler
+ *	as they arrive.  The back end is allowed to get a bounded number of messages
+ *	ahead of the handler.  Returns false if the request could not be started,
+ *	in which case the handler is not called.
+ **/
+
+public boolean findAllNames(String proj,List<String> files,BumpNameHandler hdlr)
+{
+   if (doing_exit) return false;
 
    waitForIDE();
 
-   String nid = null;
-   if (bkg) nid = "NAME_" + (++collect_id);
-   NameCollector nc = null;
+   BumpNameCache cache = null;
+   if (proj == null && files == null) {
+      File f1 = BoardSetup.getBubblesWorkingDirectory();
+      cache = new BumpNameCache(new File(f1,"namecache.xml"));
+    }
+
+   String nid = "NAME_" + (++collect_id);
+   NameCollector nc = new NameCollector(nid,hdlr,cache);
+   name_collects.put(nid,nc);
 
-   String q = null;
-   if (nid != null) {
-      nc = new NameCollector();
-      name_collects.put(nid,nc);
-      q = "BACKGROUND='" + nid + "'";
+   String q = "BACKGROUND='" + nid + "'";
+   if (cache != null && cache.getEpoch() != null) {
+      q += " EPOCH='" + cache.getEpoch() + "'";
     }
 
-   String fls = null;
-   if (files != null) {
-      fls = "";
-      for (String s : files) {
-	 fls += "<FILE>" + s + "</FILE>\n";
-       }
+   Element xml = getXmlReply("GETALLNAMES",proj,q,getNameFiles(files),0);
+   if (!IvyXml.isElement(xml,"RESULT")) {
+      name_collects.remove(nid);
+      return false;
     }
 
-   Element xml = getXmlReply("GETALLNAMES",proj,q,fls,0);
+   return true;
+}
+
+
+
+private Collection<BumpLocation> findAllNamesDirect(String proj,List<String> files)
+{
+   if (doing_exit) return null;
+
+   waitForIDE();
+
+   Element xml = getXmlReply("GETALLNAMES",proj,null,getNameFiles(files),0);
    if (!IvyXml.isElement(xml,"RESULT")) return null;
 
-   if (nid == null || nc == null) {
-      Collection<BumpLocation> rslt = new ArrayList<BumpLocation>();
-      for (Element fe : IvyXml.children(xml,"FILE")) {
-	 String path = IvyXml.getTextElement(fe,"PATH");
-	 for (Element itm : IvyXml.children(fe,"ITEM")) {
-	    int offset = IvyXml.getAttrInt(itm,"STARTOFFSET");
-	    int length = IvyXml.getAttrInt(itm,"LENGTH");
-	    String pnm = IvyXml.getAttrString(itm,"PROJECT");
-	    BumpLocation bl = new BumpLocation(pnm,path,offset,length,itm);
-	    rslt.add(bl);
-	  }
+   Collection<BumpLocation> rslt = new ArrayList<BumpLocation>();
+   for (Element fe : IvyXml.children(xml,"FILE")) {
+      String path = IvyXml.getTextElement(fe,"PATH");
+      for (Element itm : IvyXml.children(fe,"ITEM")) {
+	 int offset = IvyXml.getAttrInt(itm,"STARTOFFSET");
+	 int length = IvyXml.getAttrInt(itm,"LENGTH");
+	 String pnm = IvyXml.getAttrString(itm,"PROJECT");
+	 BumpLocation bl = new BumpLocation(pnm,path,offset,length,itm);
+	 rslt.add(bl);
        }
-      return rslt;
     }
+   return rslt;
+}
+
 
-   return nc.getNames();
+
+private String getNameFiles(List<String> files)
+{
+   if (files == null) return null;
+
+   StringBuffer buf = new StringBuffer();
+   for (String s : files) {
+      buf.append("<FILE>" + s + "</FILE>\n");
+    }
+   return buf.toString();
 }
 
 
@@ -1805,27 +2013,23 @@ public String getFullyQualifiedName(String proj,File file,int start,int end)
    String flds = "FILE='" + file.getPath() + "' START='" + start + "' END='" + end + "'";
    Element xml = getXmlReply("GETFULLYQUALIFIEDNAME",proj,flds,null,0);
 
-   Element cnt = IvyXml.getElementByTag(xml,"FULLYQUALIFIEDNAME");
-   if (cnt == null) return null;
-   String nm = IvyXml.getTextElement(cnt,"NAME");
-   String sgn = IvyXml.getTextElement(cnt,"TYPE");
-   if (sgn != null) {
-      int idx0 = sgn.indexOf('(');
-      if (idx0 >= 0) {
-	 int idx1 = sgn.lastIndexOf(')');
-	 String ps = sgn.substring(idx0,idx1+1);
-	 try {
-	    String p = IvyFormat.formatTypeName(ps);
-	    nm += p;
-	  }
-	 catch (Throwable t) {
-	    BoardLog.logE("BUMP","Problem formating type " + ps,t);
-	  }
+   return new NameConverter().convert(xml);
+}
 
-      }
-    }
 
-   return nm;
+
+/**
+ *	Asynchronous version of getFullyQualifiedName.  The returned future is
+ *	completed with null if the name can't be found.
+ **/
+
+public CompletableFuture<String> getFullyQualifiedNameAsync(String proj,File file,int start,int end)
+{
+   waitForIDE();
+
+   String flds = "FILE='" + file.getPath() + "' START='" + start + "' END='" + end + "'";
+
+   return getXmlReplyAsync("GETFULLYQUALIFIEDNAME",proj,flds,null,0,new NameConverter());
 }
 
 
@@ -2254,7 +2458,7 @@ public Element computeQuickFix(BumpProblem bp,int off,int len)
 
 public void addFileHandler(File file,BumpFileHandler hdlr)
 {
-   file_handlers.put(hdlr,file);
+   file_handlers.addHandler(file,hdlr);
 }
 
 
@@ -2265,7 +2469,7 @@ public void addFileHandler(File file,BumpFileHandler hdlr)
 
 public void removeFileHandler(BumpFileHandler hdlr)
 {
-   file_handlers.remove(hdlr);
+   file_handlers.removeHandler(hdlr);
 }
 
 
@@ -2942,6 +3146,103 @@ protected Element getXmlReply(String cmd,String proj,String flds,String cnts,lon
 
 
 
+/**
+ *	Send a message without waiting for the reply.  The returned future is
+ *	completed with the converted reply, or with the conversion of null if
+ *	no reply arrives within the delay.  Each request is given an id so that
+ *	outstanding requests can be tracked.
+ **/
+
+protected <T> CompletableFuture<T> getXmlReplyAsync(String cmd,String proj,String flds,String cnts,
+						       long delay,ReplyConverter<T> cvt)
+{
+   int rid = request_counter.incrementAndGet();
+   AsyncReply<T> ar = new AsyncReply<T>(rid,cvt);
+   pending_requests.put(rid,ar);
+
+   String xflds = "RID='" + rid + "'";
+   if (flds != null) xflds = flds + " " + xflds;
+   sendMessage(cmd,proj,xflds,cnts,ar,MINT_MSG_FIRST_NON_NULL);
+
+   if (delay <= 0) delay = MAX_DELAY;
+   ar.startTimeout(delay);
+
+   return ar.getFuture();
+}
+
+
+
+/**
+ *	Send a set of commands as a single BATCH message.  The result contains
+ *	one reply per command, in the order of the commands; a reply is null if
+ *	the back end did not respond to that command.  If the back end does not
+ *	understand batches, the commands are sent individually.
+ **/
+
+protected List<Element> getXmlReplies(List<BatchCommand> cmds,long delay)
+{
+   Element [] rslt = new Element[cmds.size()];
+
+   if (cmds.size() > 1 && batch_supported) {
+      MessageWriter mw = startMessage("BATCH",null,null);
+      for (int i = 0; i < cmds.size(); ++i) {
+	 BatchCommand bc = cmds.get(i);
+	 mw.append("<COMMAND DO='").append(bc.getCommand()).append("'");
+	 mw.append(" INDEX='").append(i).append("'");
+	 mw.append(" BID='").append(source_id).append("'");
+	 if (bc.getProject() != null && bc.getProject().length() > 0) {
+	    mw.append(" PROJECT='").append(bc.getProject()).append("'");
+	  }
+	 if (bc.getFields() != null) mw.append(" ").append(bc.getFields());
+	 mw.append(" LANG='").append(getName()).append("'");
+	 mw.append(">");
+	 if (bc.getContents() != null) mw.append(bc.getContents());
+	 mw.append("</COMMAND>");
+       }
+
+      MintDefaultReply mdr = new ReplyHandler();
+      sendMessage(mw,mdr,MINT_MSG_FIRST_NON_NULL);
+      Element xml = mdr.waitForXml(delay <= 0 ? MAX_DELAY : delay);
+      if (IvyXml.isElement(xml,"BATCH")) {
+	 for (Element re : IvyXml.children(xml,"REPLY")) {
+	    int idx = IvyXml.getAttrInt(re,"INDEX");
+	    if (idx < 0 || idx >= rslt.length) continue;
+	    for (Element ce : IvyXml.children(re)) {
+	       rslt[idx] = ce;
+	       break;
+	     }
+	  }
+	 return Arrays.asList(rslt);
+       }
+      else if (xml == null) {
+	 return Arrays.asList(rslt);
+       }
+
+      BoardLog.logI("BUMP","Back end does not support batched commands");
+      batch_supported = false;
+    }
+
+   for (int i = 0; i < cmds.size(); ++i) {
+      BatchCommand bc = cmds.get(i);
+      rslt[i] = getXmlReply(bc.getCommand(),bc.getProject(),bc.getFields(),bc.getContents(),delay);
+    }
+
+   return Arrays.asList(rslt);
+}
+
+
+
+/**
+ *	Return the number of asynchronous requests awaiting a reply.
+ **/
+
+public int getPendingRequestCount()
+{
+   return pending_requests.size();
+}
+
+
+
 protected boolean getStatusReply(String cmd,String proj,String flds,String cnts,long delay)
 {
    Element e = getXmlReply(cmd,proj,flds,cnts,delay);
@@ -2963,16 +3264,34 @@ protected boolean getStatusReply(String cmd,String proj,String flds,String cnts,
 
 protected void sendMessage(String cmd,String proj,String flds,String cnts,MintReply rply,int flags)
 {
-   String xml = "<BUBBLES DO='" + cmd + "'";
-   xml += " BID='" + source_id + "'";
-   if (proj != null && proj.length() > 0) xml += " PROJECT='" + proj + "'";
-   if (flds != null) xml += " " + flds;
-   xml += " LANG='" + getName() + "'";
-   xml += ">";
-   if (cnts != null) xml += cnts;
-   xml += "</BUBBLES>";
+   MessageWriter mw = startMessage(cmd,proj,flds);
+   if (cnts != null) mw.append(cnts);
+
+   sendMessage(mw,rply,flags);
+}
+
+
+
+/**
+ *	Start building a message in a reusable per-thread buffer.  The caller
+ *	can then write the contents directly into the buffer and send it with
+ *	sendMessage(MessageWriter,...).
+ **/
+
+protected MessageWriter startMessage(String cmd,String proj,String flds)
+{
+   MessageWriter mw = message_writers.get();
+   mw.begin(cmd,source_id,proj,flds,getName());
+   return mw;
+}
+
+
+
+protected void sendMessage(MessageWriter mw,MintReply rply,int flags)
+{
+   String xml = mw.finish();
 
-   BoardLog.logD("BUMP","SEND: " + xml);
+   if (BoardLog.isLogging(LogLevel.DEBUG)) BoardLog.logD("BUMP","SEND: " + xml);
 
    mint_control.send(xml,rply,flags);
 }
@@ -3008,72 +3327,294 @@ private static class ReplyHandler extends MintDefaultReply {
 
 
 
-
 /********************************************************************************/
 /*										*/
-/*	Property methods							*/
+/*	Asynchronous reply handling						*/
 /*										*/
 /********************************************************************************/
 
-private static void loadProperties()
-{
-   BoardSetup bs = BoardSetup.getSetup();
-   bs.doSetup();
+private class AsyncReply<T> extends ReplyHandler implements BiConsumer<T,Throwable> {
 
-   board_properties = BoardProperties.getProperties("System");
-}
+   private int request_id;
+   private ReplyConverter<T> reply_converter;
+   private CompletableFuture<T> reply_future;
+   private TimerTask timeout_task;
 
+   AsyncReply(int rid,ReplyConverter<T> cvt) {
+      request_id = rid;
+      reply_converter = cvt;
+      reply_future = new CompletableFuture<T>();
+      timeout_task = null;
+      // cleanup has to happen however the future ends, including cancel
+      reply_future.whenComplete(this);
+    }
 
+   CompletableFuture<T> getFuture()			{ return reply_future; }
 
+   synchronized void startTimeout(long delay) {
+      // the reply may already have arrived
+      if (reply_future.isDone()) return;
+      timeout_task = new ReplyTimeout(this);
+      reply_timer.schedule(timeout_task,delay);
+    }
 
-/********************************************************************************/
-/*										*/
-/*	Methods to send elision data to editors via callbacks			*/
-/*										*/
-/********************************************************************************/
+   @Override public synchronized void handleReply(MintMessage msg,MintMessage rply) {
+      super.handleReply(msg,rply);
+      if (rply != null) finish(rply.getXml());
+    }
 
-private void handleElision(String bid,String fnm,int id,Element data)
-{
-   File f = new File(fnm);
-   for (Map.Entry<BumpFileHandler,File> ent : file_handlers.entrySet()) {
-      BumpFileHandler hdlr = ent.getKey();
-      File hf = ent.getValue();
-      if (hf == null || f.equals(hf)) {
-	 hdlr.handleElisionData(f,id,data);
+   @Override public synchronized void handleReplyDone(MintMessage msg) {
+      super.handleReplyDone(msg);
+      finish(null);
+    }
+
+   @Override public synchronized void accept(T rslt,Throwable t) {
+      pending_requests.remove(request_id);
+      if (timeout_task != null) timeout_task.cancel();
+      timeout_task = null;
+    }
+
+   synchronized void finish(Element xml) {
+      if (reply_future.isDone()) return;
+      try {
+	 reply_future.complete(reply_converter.convert(xml));
+       }
+      catch (Throwable t) {
+	 BoardLog.logE("BUMP","Problem handling reply " + request_id,t);
+	 reply_future.completeExceptionally(t);
        }
     }
-}
 
+}	// end of inner class AsyncReply
 
 
-/********************************************************************************/
-/*										*/
-/*	Handle remote edits							*/
-/*										*/
-/********************************************************************************/
 
-private void handleEdit(String bid,String fnm,int len,int off,boolean complete,String txt)
-{
-   if (bid != null && !bid.equals(source_id)) return;
-   if (fnm == null) return;
+private static class ReplyTimeout extends TimerTask {
 
-   int xlen = len;
-   if (complete) xlen = -len;
+   private AsyncReply<?> for_reply;
 
-   File f = new File(fnm);
-   for (Map.Entry<BumpFileHandler,File> ent : file_handlers.entrySet()) {
-      BumpFileHandler hdlr = ent.getKey();
-      File hf = ent.getValue();
-      if (hf == null || f.equals(hf)) {
-	 hdlr.handleRemoteEdit(f,xlen,off,txt);
-       }
+   ReplyTimeout(AsyncReply<?> ar) {
+      for_reply = ar;
     }
-}
 
+   @Override public void run() {
+      for_reply.finish(null);
+    }
 
+}	// end of inner class ReplyTimeout
 
-/********************************************************************************/
-/*										*/
+
+
+/**
+ *	A single command to be sent as part of a BATCH message.
+ **/
+
+protected static class BatchCommand {
+
+   private String command_name;
+   private String for_project;
+   private String command_fields;
+   private String command_contents;
+
+   BatchCommand(String cmd,String proj,String flds,String cnts) {
+      command_name = cmd;
+      for_project = proj;
+      command_fields = flds;
+      command_contents = cnts;
+    }
+
+   String getCommand()				{ return command_name; }
+   String getProject()				{ return for_project; }
+   String getFields()				{ return command_fields; }
+   String getContents() 			{ return command_contents; }
+
+}	// end of inner class BatchCommand
+
+
+
+/**
+ *	Buffer for building an outgoing message.  One buffer is kept per thread
+ *	and reused so that sending a message only allocates the final string.
+ **/
+
+protected static class MessageWriter {
+
+   private StringBuilder message_buffer;
+
+   private static final int MAX_RETAINED = 64*1024;
+
+   MessageWriter() {
+      message_buffer = new StringBuilder(1024);
+    }
+
+   void begin(String cmd,String bid,String proj,String flds,String lang) {
+      message_buffer.setLength(0);
+      message_buffer.append("<BUBBLES DO='").append(cmd).append("'");
+      message_buffer.append(" BID='").append(bid).append("'");
+      if (proj != null && proj.length() > 0) {
+	 message_buffer.append(" PROJECT='").append(proj).append("'");
+       }
+      if (flds != null) message_buffer.append(" ").append(flds);
+      message_buffer.append(" LANG='").append(lang).append("'");
+      message_buffer.append(">");
+    }
+
+   MessageWriter append(String s) {
+      message_buffer.append(s);
+      return this;
+    }
+
+   MessageWriter append(int v) {
+      message_buffer.append(v);
+      return this;
+    }
+
+   MessageWriter cdata(String s) {
+      // same escapes as IvyXmlWriter.cdata so control characters stay legal
+      s = IvyXml.cdataSanitize(s);
+      message_buffer.append("<![CDATA[");
+      int pos = 0;
+      for ( ; ; ) {
+	 int idx = s.indexOf("]]>",pos);
+	 if (idx < 0) break;
+	 message_buffer.append(s,pos,idx).append("@@@]@@@]@@@>");
+	 pos = idx+3;
+       }
+      message_buffer.append(s,pos,s.length());
+      message_buffer.append("]]>");
+      return this;
+    }
+
+   String finish() {
+      message_buffer.append("</BUBBLES>");
+      String rslt = message_buffer.toString();
+      if (message_buffer.capacity() > MAX_RETAINED) {
+	 message_buffer = new StringBuilder(1024);
+       }
+      else message_buffer.setLength(0);
+      return rslt;
+    }
+
+}	// end of inner class MessageWriter
+
+
+
+/**
+ *	Convert the XML reply of a request into its result.  The reply is null
+ *	if the request failed or timed out.
+ **/
+
+protected static abstract class ReplyConverter<T> {
+
+   abstract T convert(Element xml);
+
+}	// end of inner class ReplyConverter
+
+
+
+private static class SearchConverter extends ReplyConverter<List<BumpLocation>> {
+
+   private String for_project;
+
+   SearchConverter(String proj) {
+      for_project = proj;
+    }
+
+   @Override List<BumpLocation> convert(Element xml) {
+      if (!IvyXml.isElement(xml,"RESULT")) return null;
+      return getSearchResults(for_project,xml,true);
+    }
+
+}	// end of inner class SearchConverter
+
+
+
+private static class NameConverter extends ReplyConverter<String> {
+
+   @Override String convert(Element xml) {
+      Element cnt = IvyXml.getElementByTag(xml,"FULLYQUALIFIEDNAME");
+      if (cnt == null) return null;
+      String nm = IvyXml.getTextElement(cnt,"NAME");
+      String sgn = IvyXml.getTextElement(cnt,"TYPE");
+      if (sgn != null) {
+	 int idx0 = sgn.indexOf('(');
+	 if (idx0 >= 0) {
+	    int idx1 = sgn.lastIndexOf(')');
+	    String ps = sgn.substring(idx0,idx1+1);
+	    try {
+	       String p = IvyFormat.formatTypeName(ps);
+	       nm += p;
+	     }
+	    catch (Throwable t) {
+	       BoardLog.logE("BUMP","Problem formating type " + ps,t);
+	     }
+	  }
+       }
+      return nm;
+    }
+
+}	// end of inner class NameConverter
+
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Property methods							*/
+/*										*/
+/********************************************************************************/
+
+private static void loadProperties()
+{
+   BoardSetup bs = BoardSetup.getSetup();
+   bs.doSetup();
+
+   board_properties = BoardProperties.getProperties("System");
+}
+
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Methods to send elision data to editors via callbacks			*/
+/*										*/
+/********************************************************************************/
+
+private void handleElision(String bid,String fnm,int id,Element data)
+{
+   File f = new File(fnm);
+   for (BumpFileHandler hdlr : file_handlers.getHandlers(f)) {
+      hdlr.handleElisionData(f,id,data);
+    }
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Handle remote edits							*/
+/*										*/
+/********************************************************************************/
+
+private void handleEdit(String bid,String fnm,int len,int off,boolean complete,String txt)
+{
+   if (bid != null && !bid.equals(source_id)) return;
+   if (fnm == null) return;
+
+   int xlen = len;
+   if (complete) xlen = -len;
+
+   File f = new File(fnm);
+   for (BumpFileHandler hdlr : file_handlers.getHandlers(f)) {
+      hdlr.handleRemoteEdit(f,xlen,off,txt);
+    }
+}
+
+
+
+/********************************************************************************/
+/*										*/
 /*	Methods to handle resource changes					*/
 /*										*/
 /********************************************************************************/
@@ -3245,157 +3786,499 @@ protected class IDEHandler implements MintHandler {
       String cmd = args.getArgument(0);
       Element e = msg.getXml();
 
+      if (cmd == null) {
+	 BoardLog.logE("BUMP","Bad eclipse message:" + msg.getText());
+	 return;
+       }
+
       BoardLog.logD("BUMP","Eclipse command " + cmd);
 
-      try {
-	 if (cmd == null) {
-	    BoardLog.logE("BUMP","Bad eclipse message:" + msg.getText());
-	  }
-	 else if (doing_exit) {
-	    if (cmd.equals("PING")) msg.replyTo();
-	    else msg.replyTo("<OK/>");
-	  }
-	 else if (cmd.equals("ELISION")) {
-	    handleElision(IvyXml.getAttrString(e,"BID"),
-			     IvyXml.getAttrString(e,"FILE"),
-			     IvyXml.getAttrInt(e,"ID"),
-			     IvyXml.getChild(e,"ELISION"));
-	  }
-	 else if (cmd.equals("EDITERROR")) {
-	    problem_set.handleErrors(IvyXml.getAttrString(e,"PROJECT"),
-					new File(IvyXml.getAttrString(e,"FILE")),
-					IvyXml.getAttrInt(e,"ID"),
-					IvyXml.getChild(e,"MESSAGES"));
-	  }
-	 else if (cmd.equals("FILEERROR")) {
-	    problem_set.handleErrors(IvyXml.getAttrString(e,"PROJECT"),
-					new File(IvyXml.getAttrString(e,"FILE")),
-					-1,
-					IvyXml.getChild(e,"MESSAGES"));
-	  }
-	 else if (cmd.equals("PRIVATEERROR")) {
-	    problem_set.handlePrivateErrors(IvyXml.getAttrString(e,"PROJECT"),
-		  new File(IvyXml.getAttrString(e,"FILE")),
-		  IvyXml.getAttrString(e,"ID"),
-		  IvyXml.getAttrBool(e,"FAILURE"),
-		  IvyXml.getChild(e,"MESSAGES"));
-	  }
-	 else if (cmd.equals("EDIT")) {
-	    BoardLog.logD("BUMP","REMOTE EDIT: " + IvyXml.convertXmlToString(e));
-	    String txt = IvyXml.getText(e);
-	    boolean complete = IvyXml.getAttrBool(e,"COMPLETE");
-	    if (complete) {
-	       byte [] data = IvyXml.getBytesElement(e,"CONTENTS");
-	       if (data != null) txt = new String(data);
-	     }
-	    handleEdit(IvyXml.getAttrString(e,"BID"),
-			  IvyXml.getAttrString(e,"FILE"),
-			  IvyXml.getAttrInt(e,"LENGTH"),
-			  IvyXml.getAttrInt(e,"OFFSET"),
-			  complete,
-			  txt);
-	  }
-	 else if (cmd.equals("BREAKEVENT")) {
-	    BoardLog.logD("BUMP","BREAK EVENT: " + IvyXml.convertXmlToString(e));
-	    break_set.handleUpdate(IvyXml.getChild(e,"BREAKPOINTS"));
-	  }
-	 else if (cmd.equals("LAUNCHCONFIGEVENT")) {
-	    BoardLog.logD("BUMP","LAUNCH EVENT: " + IvyXml.convertXmlToString(e));
-	    run_manager.handleLaunchEvent(IvyXml.getChild(e,"LAUNCH"));
-	  }
-	 else if (cmd.equals("RUNEVENT")) {
-	    long when = IvyXml.getAttrLong(e,"TIME");
-	    for (Element re : IvyXml.children(e,"RUNEVENT")) {
-	       run_manager.handleRunEvent(re,when);
-	     }
-	    msg.replyTo("<OK/>");
-	  }
-	 else if (cmd.equals("NAMES") && name_collects != null) {
-//	    BoardLog.logD("BUMP","NAMES: " + IvyXml.convertXmlToString(e));
-	    String nid = IvyXml.getAttrString(e,"NID");
-	    NameCollector nc = name_collects.get(nid);
-	    if (nc != null) {
-	       nc.addNames(e);
-	       BoardLog.logD("BUMP","NAMES: " + nc.getSize());
-	    }
-	    msg.replyTo("<OK/>");       // wait until add to ensure end doesn't come before we are all processed
-	  }
-	 else if (cmd.equals("ENDNAMES")) {
-	    msg.replyTo("<OK/>");
-//	    BoardLog.logD("BUMP","ENDNAMES: " + IvyXml.convertXmlToString(e));
-	    String nid = IvyXml.getAttrString(e,"NID");
-	    NameCollector nc = name_collects.remove(nid);
-	    if (nc != null) nc.noteDone();
-	  }
-	 else if (cmd.equals("PING")) {
-	    msg.replyTo("<PONG/>");
-	  }
-	 else if (cmd.equals("PROGRESS")) {
-	    long sid = IvyXml.getAttrLong(e,"S");
-	    String id = IvyXml.getAttrString(e,"ID");
-	    String kind = IvyXml.getAttrString(e,"KIND");
-	    String task = IvyXml.getAttrString(e,"TASK");
-	    String subtask = IvyXml.getAttrString(e,"SUBTASK","");
-	    double work = IvyXml.getAttrDouble(e,"WORK",0);
-	    BoardLog.logD("BUMP","Progress " + sid + " " + id + " " + kind + " " + task + " " + subtask + " " + work);
-	    for (BumpProgressHandler hdlr : progress_handlers) {
-	       hdlr.handleProgress(sid,id,kind,task,subtask,work);
-	     }
-	    msg.replyTo("<OK/>");
-	  }
-	 else if (cmd.equals("RESOURCE")) {
-	    BoardLog.logD("BUMP","RESOURCE: " + IvyXml.convertXmlToString(e));
-	    for (Element re : IvyXml.children(e,"DELTA")) {
-	       handleResourceChange(re);
-	     }
-	  }
-	 else if (cmd.equals("CONSOLE"))   {
-	    // BoardLog.logD("BUMP","CONSOLE: " + IvyXml.convertXmlToString(e));
-	    run_manager.handleConsoleEvent(e);
-	    msg.replyTo("<OK/>");
-	  }
-	 else if (cmd.equals("OPENEDITOR")) {
-	    String projname = IvyXml.getAttrString(e,"PROJECT");
-	    String filepath = IvyXml.getAttrString(e,"RESOURCEPATH");
-	    String type = IvyXml.getAttrString(e,"RESOURCETYPE");
+      if (doing_exit) {
+	 if (cmd.equals("PING")) msg.replyTo();
+	 else msg.replyTo("<OK/>");
+	 return;
+       }
 
-	    for(BumpOpenEditorBubbleHandler handler : open_editor_bubble_handlers)
-	       handler.handleOpenEditorBubble(projname, filepath, type);
-	  }
-	 else if (cmd.equals("EVALUATION")) {
-	    BoardLog.logD("BUMP","EVALUATION RESULT: " + IvyXml.convertXmlToString(e));
-	    String bid = IvyXml.getAttrString(e,"BID");
-	    String id = IvyXml.getAttrString(e,"ID");
-	    if ((bid == null || bid.equals(source_id)) && id != null) {
-	       EvalData ed = eval_handlers.remove(id);
-	       if (ed != null) {
-		  ed.handleResult(e);
-		}
-	     }
-	    msg.replyTo("<OK/>");
-	  }
-	 else if (cmd.equals("BUILDDONE")) { }
-	 else if (cmd.equals("FILECHANGE")) { }
-	 else if (cmd.equals("PROJECTDATA")) { }
-	 else if (cmd.equals("PROJECTOPEN")) {
-	    String proj = IvyXml.getAttrString(e,"PROJECT");
-	    if (proj != null) handleProjectOpen(proj);
-	  }
-	 else if (cmd.equals("STOP")) {
+      IdeCommand ic = ide_commands.get(cmd);
+      if (ic == null) {
+	 BoardLog.logX("BUMP","Received " + cmd + " FROM ECLIPSE: " + IvyXml.convertXmlToString(e));
+	 return;
+       }
 
-	    BoardLog.logI("BUMP","STOP received from eclipse");
-	    // possibly shut down if eclipse is running in foreground
-	  }
-	 else {
-	    BoardLog.logX("BUMP","Received " + cmd + " FROM ECLIPSE: " + IvyXml.convertXmlToString(e));
-	  }
+      ic.dispatch(msg,e);
+    }
+
+}	// end of inner class IDEHandler
+
+
+
+/********************************************************************************/
+/*										*/
+/*	IDE command table							*/
+/*										*/
+/********************************************************************************/
+
+private void setupIdeCommands()
+{
+   ide_commands = new ConcurrentHashMap<String,IdeCommand>();
+   run_executor = Executors.newSingleThreadExecutor(new IdeThreadFactory("BumpRunEvents"));
+
+   registerIdeCommand("ELISION",new ElisionCommand(),null);
+   registerIdeCommand("EDITERROR",new ErrorCommand(true),null);
+   registerIdeCommand("FILEERROR",new ErrorCommand(false),null);
+   registerIdeCommand("PRIVATEERROR",new PrivateErrorCommand(),null);
+   registerIdeCommand("EDIT",new EditCommand(),null);
+   registerIdeCommand("BREAKEVENT",new BreakCommand(),null);
+   registerIdeCommand("LAUNCHCONFIGEVENT",new LaunchCommand(),null);
+   registerIdeCommand("RUNEVENT",new RunEventCommand(),run_executor);
+   registerIdeCommand("CONSOLE",new ConsoleCommand(),run_executor);
+   registerIdeCommand("NAMES",new NamesCommand(),null);
+   registerIdeCommand("ENDNAMES",new EndNamesCommand(),null);
+   registerIdeCommand("PING",new PingCommand(),null);
+   registerIdeCommand("PROGRESS",new ProgressCommand(),null);
+   registerIdeCommand("RESOURCE",new ResourceCommand(),null);
+   registerIdeCommand("OPENEDITOR",new OpenEditorCommand(),null);
+   registerIdeCommand("EVALUATION",new EvaluationCommand(),null);
+   registerIdeCommand("BUILDDONE",new IgnoreCommand(),null);
+   registerIdeCommand("FILECHANGE",new IgnoreCommand(),null);
+   registerIdeCommand("PROJECTDATA",new IgnoreCommand(),null);
+   registerIdeCommand("PROJECTOPEN",new ProjectOpenCommand(),null);
+   registerIdeCommand("STOP",new StopCommand(),null);
+}
+
+
+
+/**
+ *	Register the handler for a message from the back end.  If an executor is
+ *	given, the command is handled there rather than on the message thread
+ *	so that heavy traffic for it does not delay other messages.  Commands
+ *	sharing an executor are handled in the order they arrive.
+ **/
+
+protected void registerIdeCommand(String cmd,IdeCommandHandler hdlr,Executor exec)
+{
+   ide_commands.put(cmd,new IdeCommand(cmd,hdlr,exec));
+}
+
+
+
+/**
+ *	Return a report of the number of messages of each type received from
+ *	the back end and how long they took to process.
+ **/
+
+public String getIdeCommandStatistics()
+{
+   StringBuffer buf = new StringBuffer();
+   List<String> cmds = new ArrayList<String>(ide_commands.keySet());
+   Collections.sort(cmds);
+   for (String cmd : cmds) {
+      IdeCommand ic = ide_commands.get(cmd);
+      if (ic != null && ic.getCount() > 0) ic.outputStatistics(buf);
+    }
+   return buf.toString();
+}
+
+
+
+/**
+ *	Return the back end's statistics on reconciling edits:  the state of its
+ *	edit queue, the reconcile times, and how well its AST cache is doing.
+ *	This returns null if the back end doesn't keep them.
+ **/
+
+public Element getEditStatistics()
+{
+   waitForIDE();
+
+   Element xml = getXmlReply("EDITSTATS",null,null,null,5000);
+   if (!IvyXml.isElement(xml,"RESULT")) return null;
+
+   return IvyXml.getChild(xml,"EDITSTATS");
+}
+
+
+
+private class IdeCommand {
+
+   private String command_name;
+   private IdeCommandHandler command_handler;
+   private Executor command_executor;
+   private AtomicLong command_count;
+   private AtomicLong total_time;
+   private AtomicLong max_time;
+   private AtomicLongArray latency_counts;
+
+   IdeCommand(String cmd,IdeCommandHandler hdlr,Executor exec) {
+      command_name = cmd;
+      command_handler = hdlr;
+      command_executor = exec;
+      command_count = new AtomicLong();
+      total_time = new AtomicLong();
+      max_time = new AtomicLong();
+      latency_counts = new AtomicLongArray(LATENCY_BUCKETS);
+    }
+
+   long getCount()			{ return command_count.get(); }
+
+   void dispatch(MintMessage msg,Element e) {
+      long start = System.nanoTime();
+      if (command_executor == null) process(msg,e,start);
+      else command_executor.execute(new IdeTask(this,msg,e,start));
+    }
+
+   void process(MintMessage msg,Element e,long start) {
+      try {
+	 command_handler.handle(msg,e);
        }
       catch (Throwable t) {
-	 BoardLog.logE("BUMP","Problem processing eclipse message " + cmd,t);
+	 BoardLog.logE("BUMP","Problem processing eclipse message " + command_name,t);
        }
+      noteTime(System.nanoTime() - start);
     }
 
-}	// end of inner class IDEHandler
+   private void noteTime(long nanos) {
+      long ms = nanos / 1000000;
+      command_count.incrementAndGet();
+      total_time.addAndGet(ms);
+      long mx = max_time.get();
+      while (ms > mx && !max_time.compareAndSet(mx,ms)) mx = max_time.get();
+      int bkt = 0;
+      while (bkt < LATENCY_BUCKETS-1 && ms >= (1L << bkt)) ++bkt;
+      latency_counts.incrementAndGet(bkt);
+    }
+
+   void outputStatistics(StringBuffer buf) {
+      long ct = command_count.get();
+      buf.append(command_name + ": " + ct + " messages, avg " + (total_time.get()/ct) +
+		    "ms, max " + max_time.get() + "ms, histogram");
+      for (int i = 0; i < LATENCY_BUCKETS; ++i) {
+	 buf.append(" " + latency_counts.get(i));
+       }
+      buf.append("\n");
+    }
+
+}	// end of inner class IdeCommand
+
+
+
+private static class IdeTask implements Runnable {
+
+   private IdeCommand for_command;
+   private MintMessage for_message;
+   private Element message_xml;
+   private long start_time;
+
+   IdeTask(IdeCommand ic,MintMessage msg,Element e,long start) {
+      for_command = ic;
+      for_message = msg;
+      message_xml = e;
+      start_time = start;
+    }
+
+   @Override public void run() {
+      for_command.process(for_message,message_xml,start_time);
+    }
+
+}	// end of inner class IdeTask
+
+
+
+private static class IdeThreadFactory implements ThreadFactory {
+
+   private String thread_name;
+
+   IdeThreadFactory(String nm) {
+      thread_name = nm;
+    }
+
+   @Override public Thread newThread(Runnable r) {
+      Thread t = new Thread(r,thread_name);
+      t.setDaemon(true);
+      return t;
+    }
+
+}	// end of inner class IdeThreadFactory
+
+
+
+/********************************************************************************/
+/*										*/
+/*	IDE command handlers							*/
+/*										*/
+/********************************************************************************/
+
+/**
+ *	Handler for a particular message from the back end.
+ **/
+
+protected abstract class IdeCommandHandler {
+
+   abstract void handle(MintMessage msg,Element e);
+
+}	// end of inner class IdeCommandHandler
+
+
+
+private class ElisionCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      handleElision(IvyXml.getAttrString(e,"BID"),
+		       IvyXml.getAttrString(e,"FILE"),
+		       IvyXml.getAttrInt(e,"ID"),
+		       IvyXml.getChild(e,"ELISION"));
+    }
+
+}	// end of inner class ElisionCommand
+
+
+
+private class ErrorCommand extends IdeCommandHandler {
+
+   private boolean use_id;
+
+   ErrorCommand(boolean useid) {
+      use_id = useid;
+    }
+
+   @Override void handle(MintMessage msg,Element e) {
+      problem_set.handleErrors(IvyXml.getAttrString(e,"PROJECT"),
+				  new File(IvyXml.getAttrString(e,"FILE")),
+				  (use_id ? IvyXml.getAttrInt(e,"ID") : -1),
+				  IvyXml.getChild(e,"MESSAGES"));
+    }
+
+}	// end of inner class ErrorCommand
+
+
+
+private class PrivateErrorCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      problem_set.handlePrivateErrors(IvyXml.getAttrString(e,"PROJECT"),
+	    new File(IvyXml.getAttrString(e,"FILE")),
+	    IvyXml.getAttrString(e,"ID"),
+	    IvyXml.getAttrBool(e,"FAILURE"),
+	    IvyXml.getChild(e,"MESSAGES"));
+    }
+
+}	// end of inner class PrivateErrorCommand
+
+
+
+private class EditCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      if (BoardLog.isLogging(LogLevel.DEBUG)) {
+	 BoardLog.logD("BUMP","REMOTE EDIT: " + IvyXml.convertXmlToString(e));
+       }
+      String txt = IvyXml.getText(e);
+      boolean complete = IvyXml.getAttrBool(e,"COMPLETE");
+      if (complete) {
+	 byte [] data = IvyXml.getBytesElement(e,"CONTENTS");
+	 if (data != null) txt = new String(data);
+       }
+      handleEdit(IvyXml.getAttrString(e,"BID"),
+		    IvyXml.getAttrString(e,"FILE"),
+		    IvyXml.getAttrInt(e,"LENGTH"),
+		    IvyXml.getAttrInt(e,"OFFSET"),
+		    complete,
+		    txt);
+    }
+
+}	// end of inner class EditCommand
+
+
+
+private class BreakCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      if (BoardLog.isLogging(LogLevel.DEBUG)) {
+	 BoardLog.logD("BUMP","BREAK EVENT: " + IvyXml.convertXmlToString(e));
+       }
+      break_set.handleUpdate(IvyXml.getChild(e,"BREAKPOINTS"));
+    }
+
+}	// end of inner class BreakCommand
+
+
+
+private class LaunchCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      if (BoardLog.isLogging(LogLevel.DEBUG)) {
+	 BoardLog.logD("BUMP","LAUNCH EVENT: " + IvyXml.convertXmlToString(e));
+       }
+      run_manager.handleLaunchEvent(IvyXml.getChild(e,"LAUNCH"));
+    }
+
+}	// end of inner class LaunchCommand
+
+
+
+private class RunEventCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      long when = IvyXml.getAttrLong(e,"TIME");
+      for (Element re : IvyXml.children(e,"RUNEVENT")) {
+	 run_manager.handleRunEvent(re,when);
+       }
+      msg.replyTo("<OK/>");
+    }
+
+}	// end of inner class RunEventCommand
+
+
+
+private class ConsoleCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      run_manager.handleConsoleEvent(e);
+      msg.replyTo("<OK/>");
+    }
+
+}	// end of inner class ConsoleCommand
+
+
+
+private class NamesCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      String nid = IvyXml.getAttrString(e,"NID");
+      NameCollector nc = name_collects.get(nid);
+      if (nc != null) {
+	 // the collector acknowledges the message once there is room for it
+	 nc.addNames(msg,e);
+	 BoardLog.logD("BUMP","NAMES: " + nc.getSize());
+       }
+      else msg.replyTo("<OK/>");
+    }
+
+}	// end of inner class NamesCommand
+
+
+
+private class EndNamesCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      msg.replyTo("<OK/>");
+      String nid = IvyXml.getAttrString(e,"NID");
+      NameCollector nc = name_collects.remove(nid);
+      if (nc != null) nc.noteDone(IvyXml.getAttrString(e,"EPOCH"));
+    }
+
+}	// end of inner class EndNamesCommand
+
+
+
+private class PingCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      msg.replyTo("<PONG/>");
+    }
+
+}	// end of inner class PingCommand
+
+
+
+private class ProgressCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      long sid = IvyXml.getAttrLong(e,"S");
+      String id = IvyXml.getAttrString(e,"ID");
+      String kind = IvyXml.getAttrString(e,"KIND");
+      String task = IvyXml.getAttrString(e,"TASK");
+      String subtask = IvyXml.getAttrString(e,"SUBTASK","");
+      double work = IvyXml.getAttrDouble(e,"WORK",0);
+      BoardLog.logD("BUMP","Progress " + sid + " " + id + " " + kind + " " + task + " " + subtask + " " + work);
+      for (BumpProgressHandler hdlr : progress_handlers) {
+	 hdlr.handleProgress(sid,id,kind,task,subtask,work);
+       }
+      msg.replyTo("<OK/>");
+    }
+
+}	// end of inner class ProgressCommand
+
+
+
+private class ResourceCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      if (BoardLog.isLogging(LogLevel.DEBUG)) {
+	 BoardLog.logD("BUMP","RESOURCE: " + IvyXml.convertXmlToString(e));
+       }
+      for (Element re : IvyXml.children(e,"DELTA")) {
+	 handleResourceChange(re);
+       }
+    }
+
+}	// end of inner class ResourceCommand
+
+
+
+private class OpenEditorCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      String projname = IvyXml.getAttrString(e,"PROJECT");
+      String filepath = IvyXml.getAttrString(e,"RESOURCEPATH");
+      String type = IvyXml.getAttrString(e,"RESOURCETYPE");
+
+      for (BumpOpenEditorBubbleHandler handler : open_editor_bubble_handlers)
+	 handler.handleOpenEditorBubble(projname, filepath, type);
+    }
+
+}	// end of inner class OpenEditorCommand
+
+
+
+private class EvaluationCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      if (BoardLog.isLogging(LogLevel.DEBUG)) {
+	 BoardLog.logD("BUMP","EVALUATION RESULT: " + IvyXml.convertXmlToString(e));
+       }
+      String bid = IvyXml.getAttrString(e,"BID");
+      String id = IvyXml.getAttrString(e,"ID");
+      if ((bid == null || bid.equals(source_id)) && id != null) {
+	 EvalData ed = eval_handlers.remove(id);
+	 if (ed != null) {
+	    ed.handleResult(e);
+	  }
+       }
+      msg.replyTo("<OK/>");
+    }
+
+}	// end of inner class EvaluationCommand
+
+
+
+private class IgnoreCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e)	{ }
+
+}	// end of inner class IgnoreCommand
+
+
+
+private class ProjectOpenCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      String proj = IvyXml.getAttrString(e,"PROJECT");
+      if (proj != null) handleProjectOpen(proj);
+    }
+
+}	// end of inner class ProjectOpenCommand
+
+
+
+private class StopCommand extends IdeCommandHandler {
+
+   @Override void handle(MintMessage msg,Element e) {
+      BoardLog.logI("BUMP","STOP received from eclipse");
+      // possibly shut down if eclipse is running in foreground
+    }
+
+}	// end of inner class StopCommand
 
 
 
@@ -3405,42 +4288,172 @@ protected class IDEHandler implements MintHandler {
 /*										*/
 /********************************************************************************/
 
-protected static class NameCollector {
+/**
+ *	Queue of name messages for one findAllNames request.  Each message is
+ *	acknowledged as soon as it is queued as long as fewer than NAME_WINDOW
+ *	messages are waiting; beyond that the acknowledgement is held until the
+ *	handler catches up, which makes the back end wait.  When loading all
+ *	names, files the back end reports as unchanged are taken from the name
+ *	cache and the cache is rewritten once the load completes.
+ **/
 
-   private Collection<BumpLocation> result_names;
-   private boolean is_done;
+protected class NameCollector implements Runnable {
 
-   NameCollector() {
-      result_names = new ArrayList<BumpLocation>();
+   private String name_id;
+   private BumpNameHandler name_handler;
+   private LinkedList<Element> name_queue;
+   private LinkedList<MintMessage> pending_acks;
+   private boolean is_done;
+   private boolean is_running;
+   private int name_count;
+   private BumpNameCache name_cache;
+   private String done_epoch;
+
+   NameCollector(String nid,BumpNameHandler hdlr,BumpNameCache cache) {
+      name_id = nid;
+      name_handler = hdlr;
+      name_cache = cache;
+      done_epoch = null;
+      name_queue = new LinkedList<Element>();
+      pending_acks = new LinkedList<MintMessage>();
       is_done = false;
+      is_running = false;
+      name_count = 0;
     }
 
-   synchronized void addNames(Element xml) {
-      int ctr = 0;
-      for (Element fe : IvyXml.children(xml,"FILE")) {
-	 String path = IvyXml.getTextElement(fe,"PATH");
-	 for (Element itm : IvyXml.children(fe,"ITEM")) {
-	    int offset = IvyXml.getAttrInt(itm,"STARTOFFSET");
-	    int length = IvyXml.getAttrInt(itm,"LENGTH");
-	    String pnm = IvyXml.getAttrString(itm,"PROJECT");
-	    BumpLocation bl = new BumpLocation(pnm,path,offset,length,itm);
-	    result_names.add(bl);
-	    ++ctr;
+   synchronized void addNames(MintMessage msg,Element xml) {
+      name_queue.add(xml);
+      if (name_queue.size() <= NAME_WINDOW) msg.replyTo("<OK/>");
+      else pending_acks.add(msg);
+      startProcessing();
+    }
+
+   synchronized int getSize()			{ return name_count; }
+
+   synchronized void noteDone(String epoch) {
+      is_done = true;
+      done_epoch = epoch;
+      startProcessing();
+    }
+
+   private void startProcessing() {
+      if (is_running) return;
+      is_running = true;
+      BoardThreadPool.start(this);
+    }
+
+   @Override public void run() {
+      for ( ; ; ) {
+	 Element xml = null;
+	 synchronized (this) {
+	    if (name_queue.isEmpty()) {
+	       is_running = false;
+	       if (!is_done) return;
+	       is_done = false;
+	     }
+	    else {
+	       xml = name_queue.removeFirst();
+	       while (!pending_acks.isEmpty() && name_queue.size() < NAME_WINDOW) {
+		  pending_acks.removeFirst().replyTo("<OK/>");
+		}
+	     }
+	  }
+	 if (xml == null) {
+	    finishCache();
+	    name_handler.handleNamesDone();
+	    return;
 	  }
+	 deliverNames(getNames(xml));
+       }
+    }
+
+   private void deliverNames(Collection<BumpLocation> locs) {
+      synchronized (this) {
+	 name_count += locs.size();
+       }
+      try {
+	 name_handler.handleNames(locs);
+       }
+      catch (Throwable t) {
+	 BoardLog.logE("BUMP","Problem handling names for " + name_id,t);
+       }
+    }
+
+   private void finishCache() {
+      if (name_cache == null) return;
+
+      // files reported unchanged that were not in the cache must be asked for
+      List<String> missing = name_cache.getMissingFiles();
+      String epoch = done_epoch;
+      if (!missing.isEmpty()) {
+	 BoardLog.logD("BUMP","Requesting names for " + missing.size() + " uncached files");
+	 Element xml = getXmlReply("GETALLNAMES",null,null,getNameFiles(missing),0);
+	 if (IvyXml.isElement(xml,"RESULT")) deliverNames(getNames(xml));
+	 else epoch = null;
+	 if (!name_cache.getMissingFiles().isEmpty()) epoch = null;
+       }
+      name_cache.saveCache(epoch);
+    }
+
+   private Collection<BumpLocation> getNames(Element xml) {
+      List<BumpLocation> rslt = new ArrayList<BumpLocation>();
+      for (Element fe : IvyXml.children(xml,"FILE")) {
+	 if (name_cache != null) name_cache.noteFileNames(fe);
+	 addFileNames(fe,rslt);
+       }
+      for (Element ue : IvyXml.children(xml,"UNCHANGED")) {
+	 String path = IvyXml.getTextElement(ue,"PATH");
+	 if (name_cache == null) continue;
+	 Element fe = name_cache.useFileNames(path);
+	 if (fe != null) addFileNames(fe,rslt);
        }
-      BoardLog.logD("BUMP","Received " + ctr + " Names");
+      BoardLog.logD("BUMP","Received " + rslt.size() + " Names");
       for (Element itm : IvyXml.children(xml,"ITEM")) {
 	 String pnm = IvyXml.getAttrString(itm,"PROJECT");
 	 String pth = IvyXml.getAttrString(itm,"PATH");
 	 BumpLocation bl = new BumpLocation(pnm,pth,0,0,itm);
-	 result_names.add(bl);
-	 // BoardLog.logD("BUMP","Added project name " + bl);
+	 rslt.add(bl);
+       }
+      return rslt;
+    }
+
+   private void addFileNames(Element fe,List<BumpLocation> rslt) {
+      String path = IvyXml.getTextElement(fe,"PATH");
+      for (Element itm : IvyXml.children(fe,"ITEM")) {
+	 int offset = IvyXml.getAttrInt(itm,"STARTOFFSET");
+	 int length = IvyXml.getAttrInt(itm,"LENGTH");
+	 String pnm = IvyXml.getAttrString(itm,"PROJECT");
+	 BumpLocation bl = new BumpLocation(pnm,path,offset,length,itm);
+	 rslt.add(bl);
        }
     }
 
-   int getSize()				{ return result_names.size(); }
+   @Override public String toString()		{ return "BUMP_NameCollector_" + name_id; }
+
+}	// end of inner class NameCollector
 
-   synchronized void noteDone() {
+
+
+/**
+ *	Name handler that gathers all the names for callers that want the
+ *	complete set.
+ **/
+
+private static class NameAccumulator implements BumpNameHandler {
+
+   private Collection<BumpLocation> result_names;
+   private boolean is_done;
+
+   NameAccumulator() {
+      result_names = new ArrayList<BumpLocation>();
+      is_done = false;
+    }
+
+   @Override public synchronized void handleNames(Collection<BumpLocation> names) {
+      result_names.addAll(names);
+    }
+
+   @Override public synchronized void handleNamesDone() {
       is_done = true;
       notifyAll();
     }
@@ -3456,7 +4469,7 @@ protected static class NameCollector {
       return result_names;
     }
 
-}	// end of inner class NameCollector
+}	// end of inner class NameAccumulator
 
 
 
@@ -945,6 +945,27 @@ interface BumpChangeHandler extends EventListener {
 
 
 
+/********************************************************************************/
+/*										*/
+/*	Callbacks for incremental name loading					*/
+/*										*/
+/********************************************************************************/
+
+/**
+ *	Callback that receives the names found by findAllNames as they arrive
+ *	from the back end rather than all at once.  The callbacks are made from
+ *	a single thread in order.
+ **/
+
+interface BumpNameHandler extends EventListener {
+
+   void handleNames(Collection<BumpLocation> names);
+   void handleNamesDone();
+
+}	// end of inner interface BumpNameHandler
+
+
+
 /********************************************************************************/
 /*										*/
 /*	Callbacks for editor requests						*/
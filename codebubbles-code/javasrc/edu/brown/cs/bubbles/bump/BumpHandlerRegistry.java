@@ -0,0 +1,224 @@
+/********************************************************************************/
+/*										*/
+/*		BumpHandlerRegistry.java					*/
+/*										*/
+/*	BUblles Mint Partnership handlers indexed by file			*/
+/*										*/
+/********************************************************************************/
+/*	Copyright 2009 Brown University -- Steven P. Reiss		      */
+/*********************************************************************************
+ *  Copyright 2011, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+/* RCS: $Header$ */
+
+/*********************************************************************************
+ *
+ * $Log$
+ *
+ ********************************************************************************/
+
+
+package edu.brown.cs.bubbles.bump;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+
+/**
+ *	This class holds a set of callbacks that are each associated with a file
+ *	or with all files (a null file).  Handlers are indexed by the canonical
+ *	path of their file so that finding the handlers for a file does not
+ *	depend on how many handlers are registered.
+ **/
+
+class BumpHandlerRegistry<T> {
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Private Storage 							*/
+/*										*/
+/********************************************************************************/
+
+private Map<String,List<T>>	file_handlers;
+private List<T> 		all_handlers;
+private Map<T,File>		handler_files;
+
+private static Map<String,String> canonical_paths = new ConcurrentHashMap<String,String>();
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Constructors								*/
+/*										*/
+/********************************************************************************/
+
+BumpHandlerRegistry()
+{
+   file_handlers = new HashMap<String,List<T>>();
+   all_handlers = new CopyOnWriteArrayList<T>();
+   handler_files = new HashMap<T,File>();
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Registration methods							*/
+/*										*/
+/********************************************************************************/
+
+synchronized void addHandler(File f,T hdlr)
+{
+   removeHandler(hdlr);
+
+   handler_files.put(hdlr,f);
+   if (f == null) {
+      all_handlers.add(hdlr);
+      return;
+    }
+
+   String key = getKey(f);
+   List<T> hdlrs = file_handlers.get(key);
+   if (hdlrs == null) {
+      hdlrs = new CopyOnWriteArrayList<T>();
+      file_handlers.put(key,hdlrs);
+    }
+   hdlrs.add(hdlr);
+}
+
+
+
+synchronized void removeHandler(T hdlr)
+{
+   if (!handler_files.containsKey(hdlr)) return;
+
+   File f = handler_files.remove(hdlr);
+   if (f == null) {
+      all_handlers.remove(hdlr);
+      return;
+    }
+
+   String key = getKey(f);
+   List<T> hdlrs = file_handlers.get(key);
+   if (hdlrs != null) {
+      hdlrs.remove(hdlr);
+      if (hdlrs.isEmpty()) file_handlers.remove(key);
+    }
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Access methods								*/
+/*										*/
+/********************************************************************************/
+
+/**
+ *	Return the handlers for the given file, including those for all files.
+ **/
+
+List<T> getHandlers(File f)
+{
+   List<T> fhdlrs = null;
+   if (f != null) {
+      String key = getKey(f);
+      synchronized (this) {
+	 fhdlrs = file_handlers.get(key);
+       }
+    }
+
+   if (fhdlrs == null || fhdlrs.isEmpty()) return all_handlers;
+
+   List<T> rslt = new ArrayList<T>(all_handlers.size() + fhdlrs.size());
+   rslt.addAll(all_handlers);
+   rslt.addAll(fhdlrs);
+   return rslt;
+}
+
+
+
+/**
+ *	Return all registered handlers.
+ **/
+
+synchronized List<T> getAllHandlers()
+{
+   return new ArrayList<T>(handler_files.keySet());
+}
+
+
+
+/**
+ *	Return the file a handler was registered for, null if it was registered
+ *	for all files.
+ **/
+
+synchronized File getFile(T hdlr)
+{
+   return handler_files.get(hdlr);
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Path methods								*/
+/*										*/
+/********************************************************************************/
+
+static String getKey(File f)
+{
+   String p = f.getPath();
+   String k = canonical_paths.get(p);
+   if (k == null) {
+      try {
+	 k = f.getCanonicalPath();
+       }
+      catch (IOException e) {
+	 k = f.getAbsolutePath();
+       }
+      canonical_paths.put(p,k);
+    }
+   return k;
+}
+
+
+
+/**
+ *	Check if a handler registered for forfile should see an event for file f.
+ **/
+
+static boolean fileMatch(File forfile,File f)
+{
+   if (forfile == null) return true;
+   if (f == null) return false;
+   if (forfile.equals(f)) return true;
+   return getKey(forfile).equals(getKey(f));
+}
+
+
+
+}	// end of class BumpHandlerRegistry
+
+
+
+
+/* end of BumpHandlerRegistry.java */
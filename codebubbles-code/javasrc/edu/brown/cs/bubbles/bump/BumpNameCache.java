@@ -0,0 +1,195 @@
+/********************************************************************************/
+/*										*/
+/*		BumpNameCache.java						*/
+/*										*/
+/*	BUblles Mint Partnership saved names from the last name load		*/
+/*										*/
+/********************************************************************************/
+/*	Copyright 2009 Brown University -- Steven P. Reiss		      */
+/*********************************************************************************
+ *  Copyright 2011, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+/*	RCS: $Header$								*/
+
+/*********************************************************************************
+ *
+ * $Log$
+ *
+ ********************************************************************************/
+
+
+package edu.brown.cs.bubbles.bump;
+
+import edu.brown.cs.bubbles.board.BoardLog;
+
+import edu.brown.cs.ivy.xml.IvyXml;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+import org.w3c.dom.Element;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+
+/**
+ *	Names for each file from the last complete name load along with the
+ *	epoch the back end returned for it.  A later load can send the epoch and
+ *	the back end then just reports files that have not changed; their names
+ *	are taken from here.
+ **/
+
+class BumpNameCache implements BumpConstants {
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Private Storage 							*/
+/*										*/
+/********************************************************************************/
+
+private File		cache_file;
+private String		cache_epoch;
+private Map<String,Element> old_files;
+private Map<String,Element> new_files;
+private List<String>	missing_files;
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Constructors								*/
+/*										*/
+/********************************************************************************/
+
+BumpNameCache(File f)
+{
+   cache_file = f;
+   cache_epoch = null;
+   old_files = new HashMap<String,Element>();
+   new_files = new LinkedHashMap<String,Element>();
+   missing_files = new ArrayList<String>();
+
+   loadCache();
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Access methods								*/
+/*										*/
+/********************************************************************************/
+
+String getEpoch()				{ return cache_epoch; }
+
+
+
+synchronized void noteFileNames(Element fe)
+{
+   String path = IvyXml.getTextElement(fe,"PATH");
+   if (path != null) new_files.put(path,fe);
+}
+
+
+
+/**
+ *	Return the saved names for a file the back end reports as unchanged.
+ *	Files we know nothing about are remembered so they can be requested.
+ **/
+
+synchronized Element useFileNames(String path)
+{
+   Element fe = old_files.remove(path);
+   if (fe != null) new_files.put(path,fe);
+   else if (path != null) missing_files.add(path);
+   return fe;
+}
+
+
+
+synchronized List<String> getMissingFiles()
+{
+   List<String> rslt = new ArrayList<String>(missing_files);
+   missing_files.clear();
+   return rslt;
+}
+
+
+
+/********************************************************************************/
+/*										*/
+/*	Load and save methods							*/
+/*										*/
+/********************************************************************************/
+
+private void loadCache()
+{
+   if (cache_file == null || !cache_file.exists()) return;
+
+   Element xml = IvyXml.loadXmlFromFile(cache_file);
+   if (xml == null) return;
+
+   cache_epoch = IvyXml.getAttrString(xml,"EPOCH");
+   for (Element fe : IvyXml.children(xml,"FILE")) {
+      String path = IvyXml.getTextElement(fe,"PATH");
+      if (path != null) old_files.put(path,fe);
+    }
+
+   BoardLog.logD("BUMP","Loaded " + old_files.size() + " cached name files for " + cache_epoch);
+}
+
+
+
+/**
+ *	Save the names from the load that just finished.  Files not mentioned
+ *	by that load no longer exist and are dropped.
+ **/
+
+synchronized void saveCache(String epoch)
+{
+   old_files.clear();
+
+   if (cache_file == null) return;
+   if (epoch == null) {
+      cache_file.delete();
+      return;
+    }
+
+   try {
+      IvyXmlWriter xw = new IvyXmlWriter(cache_file);
+      xw.begin("NAMECACHE");
+      xw.field("EPOCH",epoch);
+      for (Element fe : new_files.values()) {
+	 xw.writeXml(fe);
+       }
+      xw.end("NAMECACHE");
+      xw.close();
+    }
+   catch (IOException e) {
+      BoardLog.logE("BUMP","Problem saving name cache",e);
+      cache_file.delete();
+    }
+
+   new_files.clear();
+}
+
+
+
+}	// end of class BumpNameCache
+
+
+
+
+/*	end of BumpNameCache.java						*/
@@ -32,7 +32,6 @@ package edu.brown.cs.bubbles.bump;
 
 import edu.brown.cs.bubbles.board.BoardLog;
 
-import edu.brown.cs.ivy.swing.SwingEventListenerList;
 import edu.brown.cs.ivy.xml.IvyXml;
 
 import org.w3c.dom.Element;
@@ -53,8 +52,7 @@ class BumpProblemSet implements BumpConstants {
 /********************************************************************************/
 
 private Map<String,BumpProblemImpl>	current_problems;
-private SwingEventListenerList<BumpProblemHandler> handler_set;
-private Map<BumpProblemHandler,File>	problem_handlers;
+private BumpHandlerRegistry<BumpProblemHandler> problem_handlers;
 private Map<String,Set<BumpProblemImpl>> private_problems;
 
 
@@ -68,8 +66,7 @@ private Map<String,Set<BumpProblemImpl>> private_problems;
 BumpProblemSet()
 {
    current_problems = new HashMap<String,BumpProblemImpl>();
-   problem_handlers = new HashMap<BumpProblemHandler,File>();
-   handler_set = new SwingEventListenerList<BumpProblemHandler>(BumpProblemHandler.class);
+   problem_handlers = new BumpHandlerRegistry<BumpProblemHandler>();
    private_problems = new HashMap<String,Set<BumpProblemImpl>>();
 }
 
@@ -83,20 +80,14 @@ BumpProblemSet()
 
 void addProblemHandler(File f,BumpProblemHandler ph)
 {
-   handler_set.add(ph);
-   synchronized (problem_handlers) {
-      problem_handlers.put(ph,f);
-    }
+   problem_handlers.addHandler(f,ph);
 }
 
 
 
 synchronized void removeProblemHandler(BumpProblemHandler ph)
 {
-   handler_set.remove(ph);
-   synchronized (problem_handlers) {
-      problem_handlers.remove(ph);
-    }
+   problem_handlers.removeHandler(ph);
 }
 
 
@@ -172,12 +163,18 @@ void handleErrors(String proj,File forfile,int eid,Element ep)
 
    if (added == null && deled == null) return;
 
-   for (BumpProblemHandler bph : handler_set) {
-      File f;
-      synchronized (problem_handlers) {
-	 f = problem_handlers.get(bph);
-	 if (f == null && !problem_handlers.containsKey(bph)) continue;
-       }
+   Set<File> files = new HashSet<File>();
+   if (deled != null) {
+      for (BumpProblemImpl bp : deled) files.add(bp.getFile());
+    }
+   if (added != null) {
+      for (BumpProblemImpl bp : added) files.add(bp.getFile());
+    }
+   Set<BumpProblemHandler> hdlrs = new LinkedHashSet<BumpProblemHandler>();
+   for (File pf : files) hdlrs.addAll(problem_handlers.getHandlers(pf));
+
+   for (BumpProblemHandler bph : hdlrs) {
+      File f = problem_handlers.getFile(bph);
       int ct = 0;
       if (deled != null) {
 	 for (BumpProblemImpl bp : deled) {
@@ -219,7 +216,7 @@ void clearProblems(String proj)
     }
 
    if (clear.size() > 0) {
-      for (BumpProblemHandler bph : handler_set) {
+      for (BumpProblemHandler bph : problem_handlers.getAllHandlers()) {
 	 for (BumpProblemImpl bp : clear) {
 	    bph.handleProblemRemoved(bp);
 	  }
@@ -300,8 +297,7 @@ Collection<BumpProblem> getPrivateErrors(String privid)
 
 private boolean fileMatch(File forfile,BumpProblemImpl bp)
 {
-   if (forfile == null) return true;
-   return forfile.equals(bp.getFile());
+   return BumpHandlerRegistry.fileMatch(forfile,bp.getFile());
 }
 
 
@@ -632,6 +632,40 @@ private class CommandHandler implements MintHandler {
    
       String rslt = null;
    
+      if (cmd.equals("BATCH")) rslt = processBatch(xml);
+      else rslt = processCommand(cmd,proj,xml);
+   
+      msg.replyTo(rslt);
+   
+      if (shutdown_mint) {
+         mint_control.shutDown();
+         synchronized (NobaseMain.this) {
+            NobaseMain.this.notifyAll();
+          }
+       }
+    }
+
+   private String processBatch(Element xml) {
+      IvyXmlWriter xw = new IvyXmlWriter();
+      xw.begin("BATCH");
+      for (Element cxml : IvyXml.children(xml,"COMMAND")) {
+         String cmd = IvyXml.getAttrString(cxml,"DO");
+         String proj = IvyXml.getAttrString(cxml,"PROJECT");
+         String rslt = processCommand(cmd,proj,cxml);
+         xw.begin("REPLY");
+         xw.field("INDEX",IvyXml.getAttrInt(cxml,"INDEX"));
+         xw.xmlText(rslt);
+         xw.end("REPLY");
+       }
+      xw.end("BATCH");
+      String rslt = xw.toString();
+      xw.close();
+      return rslt;
+    }
+
+   private String processCommand(String cmd,String proj,Element xml) {
+      String rslt = null;
+   
       try {
          rslt = handleCommand(cmd,proj,xml);
        }
@@ -662,14 +696,7 @@ private class CommandHandler implements MintHandler {
          rslt += "</ERROR>";
        }
    
-      msg.replyTo(rslt);
-   
-      if (shutdown_mint) {
-         mint_control.shutDown();
-         synchronized (NobaseMain.this) {
-            NobaseMain.this.notifyAll();
-          }
-       }
+      return rslt;
     }
 
 }	// end of subclass CommandHandler